@@ -19,8 +19,6 @@
 package icyllis.modernui.mc;
 
 import icyllis.modernui.util.*;
-import io.netty.buffer.ByteBufInputStream;
-import io.netty.buffer.ByteBufOutputStream;
 import io.netty.handler.codec.DecoderException;
 import io.netty.handler.codec.EncoderException;
 import it.unimi.dsi.fastutil.bytes.ByteArrayList;
@@ -34,7 +32,6 @@ import net.minecraft.network.FriendlyByteBuf;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.io.IOException;
 import java.util.*;
 
 /**
@@ -54,8 +51,8 @@ public final class BinaryDataUtils {
      */
     @Nonnull
     public static FriendlyByteBuf writeDataSet(@Nonnull FriendlyByteBuf buf, @Nullable DataSet source) {
-        try (var p = new IOStreamParcel(null, new ByteBufOutputStream(buf))) {
-            p.writeDataSet(source);
+        try {
+            new ByteBufParcel(buf).writeDataSet(source);
         } catch (Exception e) {
             throw new EncoderException(e);
         }
@@ -70,8 +67,8 @@ public final class BinaryDataUtils {
      */
     @Nullable
     public static DataSet readDataSet(@Nonnull FriendlyByteBuf buf, @Nullable ClassLoader loader) {
-        try (var p = new IOStreamParcel(new ByteBufInputStream(buf), null)) {
-            return p.readDataSet(loader);
+        try {
+            return new ByteBufParcel(buf).readDataSet(loader);
         } catch (Exception e) {
             throw new DecoderException(e);
         }
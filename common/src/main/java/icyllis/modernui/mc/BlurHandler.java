@@ -18,13 +18,19 @@
 
 package icyllis.modernui.mc;
 
+import com.mojang.blaze3d.pipeline.RenderTarget;
+import com.mojang.blaze3d.pipeline.TextureTarget;
+import com.mojang.blaze3d.platform.GlStateManager;
+import com.mojang.blaze3d.resource.CrossFrameResourcePool;
 import com.mojang.blaze3d.vertex.VertexConsumer;
 import icyllis.modernui.animation.ColorEvaluator;
 import icyllis.modernui.mc.mixin.AccessGameRenderer;
 import icyllis.modernui.mc.mixin.AccessGuiGraphics;
+import net.minecraft.client.Camera;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.GuiGraphics;
 import net.minecraft.client.gui.screens.Screen;
+import net.minecraft.client.multiplayer.ClientLevel;
 import net.minecraft.client.renderer.*;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.sounds.SoundSource;
@@ -32,12 +38,16 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.Marker;
 import org.apache.logging.log4j.MarkerManager;
 import org.joml.Matrix4f;
+import org.joml.Vector3f;
 import org.lwjgl.glfw.GLFW;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.PrintWriter;
 import java.util.*;
 
+import static org.lwjgl.opengl.GL33C.*;
+
 /**
  * Handling the blur effect of screen background. Client only.
  */
@@ -56,6 +66,7 @@ public enum BlurHandler {
     public static volatile boolean sBlurForVanillaScreens;
     public static volatile boolean sOverrideVanillaBlur;
     public static volatile int sBlurRadius;
+    public static volatile Config.Client.BlurMode sBlurMode = Config.Client.BlurMode.GAUSSIAN;
     public static volatile int sBackgroundDuration; // milliseconds
     public static volatile int[] sBackgroundColor = new int[4];
 
@@ -90,6 +101,28 @@ public enum BlurHandler {
 
     private float mVolumeMultiplier = 1;
 
+    /**
+     * The blurred world image, retained while the world image does not change.
+     */
+    @Nullable
+    private TextureTarget mBackdrop;
+    private boolean mBackdropValid;
+    private float mBackdropRadius;
+    private Config.Client.BlurMode mBackdropMode;
+    @Nullable
+    private ClientLevel mBackdropLevel;
+    private final Vector3f mBackdropCameraPos = new Vector3f();
+    private float mBackdropCameraXRot;
+    private float mBackdropCameraYRot;
+
+    private long mBackdropBlurs;
+    private long mBackdropReuses;
+
+    private final DualFilterBlur mDualFilterBlur = new DualFilterBlur();
+    // GPU cost of each blur mode
+    private final GpuTimer mGaussianTimer = new GpuTimer("Gaussian");
+    private final GpuTimer mDualFilterTimer = new GpuTimer("DualFilter");
+
     /**
      * Use blur shader in game renderer post-processing.
      */
@@ -144,6 +177,7 @@ public enum BlurHandler {
                 mBlurring = false;
             }
             mFadingIn = false;
+            releaseBackdrop();
         }
         mHasScreen = hasScreen;
     }
@@ -246,12 +280,9 @@ public enum BlurHandler {
                     .setColor(30, 31, 34, 255);
         } else {
             if (mBlurring) {
-                PostChain blurEffect = minecraft.getShaderManager().getPostChain(
-                        GAUSSIAN_BLUR, LevelTargetBundle.MAIN_TARGETS);
-                if (blurEffect != null) {
-                    updateRadius(blurEffect, mBlurRadius);
-                    blurEffect.process(minecraft.getMainRenderTarget(),
-                            ((AccessGameRenderer) minecraft.gameRenderer).getResourcePool());
+                // the radius is animating during fade-in
+                if (blurMainTarget(mBlurRadius, !mFadingIn,
+                        ((AccessGameRenderer) minecraft.gameRenderer).getResourcePool())) {
                     minecraft.getMainRenderTarget().bindWrite(false);
                 } else {
                     mBlurring = false;
@@ -279,13 +310,119 @@ public enum BlurHandler {
         // radius is approximately 1.8 times, performance is better
         float radius = minecraft.options.getMenuBackgroundBlurriness() * 1.8f;
         if (radius >= 1.0f) {
-            PostChain blurEffect = minecraft.getShaderManager().getPostChain(
-                    GAUSSIAN_BLUR, LevelTargetBundle.MAIN_TARGETS);
-            if (blurEffect != null) {
-                updateRadius(blurEffect, radius);
-                blurEffect.process(minecraft.getMainRenderTarget(),
-                        ((AccessGameRenderer) gameRenderer).getResourcePool());
+            blurMainTarget(radius, true,
+                    ((AccessGameRenderer) gameRenderer).getResourcePool());
+        }
+    }
+
+    /**
+     * Blurs the main render target, or composites the retained backdrop if the world
+     * image has not changed since it was blurred. The world image is considered static
+     * when the game is paused, and the level, camera, target size and radius are the
+     * same.
+     *
+     * @param cacheable whether the result can be retained, false if radius is animating
+     * @return false if the blur effect is not available
+     */
+    private boolean blurMainTarget(float radius, boolean cacheable,
+                                   @Nonnull CrossFrameResourcePool resourcePool) {
+        RenderTarget mainTarget = minecraft.getMainRenderTarget();
+        cacheable &= minecraft.isPaused();
+        if (cacheable && mBackdropValid && isBackdropUpToDate(mainTarget, radius)) {
+            blitTarget(mBackdrop, mainTarget);
+            mBackdropReuses++;
+            return true;
+        }
+        mBackdropValid = false;
+        if (!processBlur(mainTarget, radius, resourcePool)) {
+            return false;
+        }
+        mBackdropBlurs++;
+        if (cacheable) {
+            if (mBackdrop == null) {
+                mBackdrop = new TextureTarget(mainTarget.width, mainTarget.height, false);
+            } else if (mBackdrop.width != mainTarget.width || mBackdrop.height != mainTarget.height) {
+                mBackdrop.resize(mainTarget.width, mainTarget.height);
             }
+            blitTarget(mainTarget, mBackdrop);
+            Camera camera = minecraft.gameRenderer.getMainCamera();
+            mBackdropRadius = radius;
+            mBackdropMode = sBlurMode;
+            mBackdropLevel = minecraft.level;
+            mBackdropCameraPos.set(camera.getPosition().toVector3f());
+            mBackdropCameraXRot = camera.getXRot();
+            mBackdropCameraYRot = camera.getYRot();
+            mBackdropValid = true;
+        }
+        return true;
+    }
+
+    private boolean processBlur(@Nonnull RenderTarget mainTarget, float radius,
+                                @Nonnull CrossFrameResourcePool resourcePool) {
+        if (sBlurMode == Config.Client.BlurMode.DUAL_FILTER) {
+            mDualFilterTimer.begin();
+            boolean success = mDualFilterBlur.process(mainTarget, radius);
+            mDualFilterTimer.end();
+            if (success) {
+                return true;
+            }
+            // shaders are not available, fallback to gaussian
+        }
+        PostChain blurEffect = minecraft.getShaderManager().getPostChain(
+                GAUSSIAN_BLUR, LevelTargetBundle.MAIN_TARGETS);
+        if (blurEffect == null) {
+            return false;
+        }
+        mGaussianTimer.begin();
+        updateRadius(blurEffect, radius);
+        blurEffect.process(mainTarget, resourcePool);
+        mGaussianTimer.end();
+        return true;
+    }
+
+    private boolean isBackdropUpToDate(@Nonnull RenderTarget mainTarget, float radius) {
+        assert mBackdrop != null;
+        if (mBackdrop.width != mainTarget.width || mBackdrop.height != mainTarget.height ||
+                mBackdropRadius != radius || mBackdropMode != sBlurMode ||
+                mBackdropLevel != minecraft.level) {
+            return false;
+        }
+        Camera camera = minecraft.gameRenderer.getMainCamera();
+        return mBackdropCameraPos.equals(camera.getPosition().toVector3f()) &&
+                mBackdropCameraXRot == camera.getXRot() &&
+                mBackdropCameraYRot == camera.getYRot();
+    }
+
+    private static void blitTarget(@Nonnull RenderTarget src, @Nonnull RenderTarget dst) {
+        GlStateManager._glBindFramebuffer(GL_READ_FRAMEBUFFER, src.frameBufferId);
+        GlStateManager._glBindFramebuffer(GL_DRAW_FRAMEBUFFER, dst.frameBufferId);
+        GlStateManager._glBlitFrameBuffer(0, 0, src.width, src.height,
+                0, 0, dst.width, dst.height, GL_COLOR_BUFFER_BIT, GL_NEAREST);
+        GlStateManager._glBindFramebuffer(GL_FRAMEBUFFER, 0);
+    }
+
+    private void releaseBackdrop() {
+        mBackdropValid = false;
+        mBackdropLevel = null;
+        if (mBackdrop != null) {
+            mBackdrop.destroyBuffers();
+            mBackdrop = null;
+        }
+        mDualFilterBlur.release();
+        // the queries are recreated by the next measurement
+        mGaussianTimer.close();
+        mDualFilterTimer.close();
+    }
+
+    public void dumpInfo(@Nonnull PrintWriter pw) {
+        pw.printf("BlurHandler: Mode=%s, Blurring=%s, Radius=%.1f, Blurs=%d, BackdropReuses=%d, BackdropValid=%s\n",
+                sBlurMode.name(), mBlurring, mBlurRadius, mBackdropBlurs, mBackdropReuses, mBackdropValid);
+        if (sBlurMode == Config.Client.BlurMode.DUAL_FILTER) {
+            int levels = DualFilterBlur.getLevelCount(mBlurRadius);
+            pw.printf("  DualFilter: Levels=%d, Offset=%.3f\n",
+                    levels, DualFilterBlur.getOffset(mBlurRadius, levels));
         }
+        mGaussianTimer.dumpInfo(pw);
+        mDualFilterTimer.dumpInfo(pw);
     }
 }
@@ -0,0 +1,174 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2025 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.mc;
+
+import icyllis.modernui.util.Parcel;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import net.minecraft.network.VarInt;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A parcel that reads and writes directly at the indices of a byte buf, without the
+ * stream dispatch of {@link icyllis.modernui.util.IOStreamParcel}. Strings are encoded
+ * as a VarInt length followed by UTF-8 bytes, and they are written to and decoded from
+ * the buffer without intermediate byte arrays.
+ *
+ * @see BinaryDataUtils
+ */
+public class ByteBufParcel extends Parcel {
+
+    protected final ByteBuf mBuf;
+
+    public ByteBufParcel(@Nonnull ByteBuf buf) {
+        mBuf = buf;
+    }
+
+    @Nonnull
+    public ByteBuf getBuffer() {
+        return mBuf;
+    }
+
+    @Override
+    public void writeBytes(byte[] src, int off, int len) {
+        mBuf.writeBytes(src, off, len);
+    }
+
+    @Override
+    public void writeBoolean(boolean b) {
+        mBuf.writeBoolean(b);
+    }
+
+    @Override
+    public void writeChar(int v) {
+        mBuf.writeChar(v);
+    }
+
+    @Override
+    public void writeByte(int v) {
+        mBuf.writeByte(v);
+    }
+
+    @Override
+    public void writeShort(int v) {
+        mBuf.writeShort(v);
+    }
+
+    @Override
+    public void writeInt(int v) {
+        mBuf.writeInt(v);
+    }
+
+    @Override
+    public void writeLong(long v) {
+        mBuf.writeLong(v);
+    }
+
+    @Override
+    public void writeFloat(float v) {
+        mBuf.writeFloat(v);
+    }
+
+    @Override
+    public void writeDouble(double v) {
+        mBuf.writeDouble(v);
+    }
+
+    /**
+     * Writes a nullable string, the length is encoded as VarInt, 0 means null,
+     * otherwise the byte length plus one.
+     */
+    @Override
+    public void writeString(@Nullable String s) {
+        final ByteBuf buf = mBuf;
+        if (s == null) {
+            buf.writeByte(0);
+            return;
+        }
+        final int len = ByteBufUtil.utf8Bytes(s);
+        VarInt.write(buf, len + 1);
+        ByteBufUtil.reserveAndWriteUtf8(buf, s, len);
+    }
+
+    @Override
+    public void readBytes(byte[] dst, int off, int len) {
+        mBuf.readBytes(dst, off, len);
+    }
+
+    @Override
+    public boolean readBoolean() {
+        return mBuf.readBoolean();
+    }
+
+    @Override
+    public char readChar() {
+        return mBuf.readChar();
+    }
+
+    @Override
+    public byte readByte() {
+        return mBuf.readByte();
+    }
+
+    @Override
+    public short readShort() {
+        return mBuf.readShort();
+    }
+
+    @Override
+    public int readInt() {
+        return mBuf.readInt();
+    }
+
+    @Override
+    public long readLong() {
+        return mBuf.readLong();
+    }
+
+    @Override
+    public float readFloat() {
+        return mBuf.readFloat();
+    }
+
+    @Override
+    public double readDouble() {
+        return mBuf.readDouble();
+    }
+
+    @Nullable
+    @Override
+    public String readString() {
+        final ByteBuf buf = mBuf;
+        final int len = VarInt.read(buf) - 1;
+        if (len < 0) {
+            return null;
+        }
+        if (len > buf.readableBytes()) {
+            throw new IndexOutOfBoundsException("String length " + len + " exceeds " + buf.readableBytes());
+        }
+        final int index = buf.readerIndex();
+        // decodes directly from the backing memory
+        String s = buf.toString(index, len, StandardCharsets.UTF_8);
+        buf.readerIndex(index + len);
+        return s;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2025 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.mc;
+
+import icyllis.modernui.text.TextUtils;
+import org.jetbrains.annotations.ApiStatus;
+
+import javax.annotation.Nonnull;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.function.LongSupplier;
+
+/**
+ * Spreads periodic resource cleanup across frames.
+ * <p>
+ * A cleanup pass runs each task once, in order. Each frame runs at least one task
+ * and then continues with the next tasks until the frame budget is used up, so a
+ * pass may span multiple frames. A pass is started as soon as the period elapsed
+ * on an idle frame (game paused, in menus), otherwise it's delayed until
+ * {@link #MAX_DELAY_FACTOR} periods elapsed.
+ * <p>
+ * This class is not thread-safe, each thread that owns GPU resources should have
+ * its own scheduler.
+ */
+@ApiStatus.Internal
+public final class CleanupScheduler {
+
+    public static final long DEFAULT_PERIOD_NANOS = 20_000_000_000L;
+    public static final int MAX_DELAY_FACTOR = 3;
+
+    /**
+     * Per-frame time budget, in nanoseconds.
+     */
+    public static final long BUSY_FRAME_BUDGET_NANOS = 500_000L;
+    public static final long IDLE_FRAME_BUDGET_NANOS = 4_000_000L;
+
+    private final String mName;
+    private final long mPeriodNanos;
+
+    private final ArrayList<String> mTaskNames = new ArrayList<>();
+    private final ArrayList<LongSupplier> mTasks = new ArrayList<>();
+    private long[] mTaskReclaimed = new long[0];
+    private long[] mTaskNanos = new long[0];
+
+    private long mLastPassNanos;
+    // index of the next task, or -1 if not in a pass
+    private int mNextTask = -1;
+
+    // the current pass
+    private int mPassFrames;
+    private long mPassNanos;
+    private long mPassReclaimed;
+
+    // the last completed pass
+    private int mLastPassFrames;
+    private long mLastPassTime;
+    private long mLastPassReclaimed;
+
+    private long mPasses;
+    private long mTotalReclaimed;
+
+    public CleanupScheduler(@Nonnull String name) {
+        this(name, DEFAULT_PERIOD_NANOS);
+    }
+
+    public CleanupScheduler(@Nonnull String name, long periodNanos) {
+        mName = name;
+        mPeriodNanos = periodNanos;
+    }
+
+    /**
+     * Adds a cleanup task. A task cannot be split, it should do a small amount of work.
+     *
+     * @param name the name used in debug dump
+     * @param task returns the number of bytes reclaimed, measured by the task
+     */
+    public void addTask(@Nonnull String name, @Nonnull LongSupplier task) {
+        mTaskNames.add(name);
+        mTasks.add(task);
+        mTaskReclaimed = new long[mTasks.size()];
+        mTaskNanos = new long[mTasks.size()];
+    }
+
+    /**
+     * Called once per frame on the owner thread.
+     *
+     * @param nowNanos the frame time
+     * @param idle     whether this is an idle frame
+     */
+    public void onFrame(long nowNanos, boolean idle) {
+        if (mTasks.isEmpty()) {
+            return;
+        }
+        if (mNextTask < 0) {
+            if (mLastPassNanos == 0) {
+                // don't clean up on the first frame
+                mLastPassNanos = nowNanos;
+                return;
+            }
+            long elapsed = nowNanos - mLastPassNanos;
+            if (elapsed < mPeriodNanos ||
+                    (!idle && elapsed < mPeriodNanos * MAX_DELAY_FACTOR)) {
+                return;
+            }
+            mNextTask = 0;
+            mPassFrames = 0;
+            mPassNanos = 0;
+            mPassReclaimed = 0;
+        }
+        mPassFrames++;
+        final long budget = idle ? IDLE_FRAME_BUDGET_NANOS : BUSY_FRAME_BUDGET_NANOS;
+        final long frameStart = System.nanoTime();
+        long time;
+        do {
+            final int index = mNextTask;
+            final long start = System.nanoTime();
+            long reclaimed = Math.max(mTasks.get(index).getAsLong(), 0);
+            final long end = System.nanoTime();
+            mTaskReclaimed[index] = reclaimed;
+            mTaskNanos[index] = end - start;
+            mPassReclaimed += reclaimed;
+            time = end - frameStart;
+            if (++mNextTask == mTasks.size()) {
+                mPassNanos += time;
+                finishPass(nowNanos);
+                return;
+            }
+        } while (time < budget);
+        mPassNanos += time;
+    }
+
+    private void finishPass(long nowNanos) {
+        mNextTask = -1;
+        mLastPassNanos = nowNanos;
+        mLastPassFrames = mPassFrames;
+        mLastPassTime = mPassNanos;
+        mLastPassReclaimed = mPassReclaimed;
+        mTotalReclaimed += mPassReclaimed;
+        mPasses++;
+    }
+
+    /**
+     * @return the number of bytes reclaimed by the last completed pass
+     */
+    public long getLastPassReclaimed() {
+        return mLastPassReclaimed;
+    }
+
+    public void dumpInfo(@Nonnull PrintWriter pw) {
+        pw.printf("CleanupScheduler (%s): Passes=%d, TotalReclaimed=%s",
+                mName, mPasses, TextUtils.binaryCompact(mTotalReclaimed));
+        if (mNextTask >= 0) {
+            pw.printf(", InProgress=%d/%d", mNextTask, mTasks.size());
+        }
+        pw.println();
+        pw.printf("  LastPass: Frames=%d, Time=%.3fms, Reclaimed=%s (%d bytes)\n",
+                mLastPassFrames, mLastPassTime / 1e6,
+                TextUtils.binaryCompact(mLastPassReclaimed), mLastPassReclaimed);
+        for (int i = 0; i < mTasks.size(); i++) {
+            pw.printf("  %s: Time=%.3fms, Reclaimed=%s\n",
+                    mTaskNames.get(i), mTaskNanos[i] / 1e6,
+                    TextUtils.binaryCompact(mTaskReclaimed[i]));
+        }
+    }
+}
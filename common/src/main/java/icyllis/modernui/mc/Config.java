@@ -92,6 +92,7 @@ public final class Config {
         public final ConfigItem<Boolean> mOverrideVanillaBlur;
         public final ConfigItem<Integer> mBackgroundDuration;
         public final ConfigItem<Integer> mBlurRadius;
+        public final ConfigItem<BlurMode> mBlurMode;
         public final ConfigItem<List<? extends String>> mBackgroundColor;
         public final ConfigItem<Boolean> mInventoryPause;
         public final ConfigItem<Boolean> mTooltip;
@@ -121,6 +122,7 @@ public final class Config {
         public final ConfigItem<Integer> mFramerateInactive;
         public final ConfigItem<Double> mMasterVolumeInactive;
         public final ConfigItem<Double> mMasterVolumeMinimized;
+        public final ConfigItem<Integer> mUiFrameRate;
         public final ConfigItem<Integer> mScrollbarSize;
         public final ConfigItem<Integer> mTouchSlop;
         public final ConfigItem<Integer> mHoverSlop;
@@ -141,6 +143,7 @@ public final class Config {
         public final ConfigItem<Boolean> mUseColorEmoji;
         public final ConfigItem<Boolean> mLinearMetrics;
         public final ConfigItem<Boolean> mEmojiShortcodes;
+        public final ConfigItem<Integer> mEditBoxUndoLimit;
 
         public WindowMode mLastWindowMode = WindowMode.NORMAL;
 
@@ -150,6 +153,7 @@ public final class Config {
             mOverrideVanillaBlur = get(map, "mOverrideVanillaBlur");
             mBackgroundDuration = get(map, "mBackgroundDuration");
             mBlurRadius = get(map, "mBlurRadius");
+            mBlurMode = get(map, "mBlurMode");
             mBackgroundColor = get(map, "mBackgroundColor");
             mInventoryPause = get(map, "mInventoryPause");
             mTooltip = get(map, "mTooltip");
@@ -179,6 +183,7 @@ public final class Config {
             mFramerateInactive = get(map, "mFramerateInactive");
             mMasterVolumeInactive = get(map, "mMasterVolumeInactive");
             mMasterVolumeMinimized = get(map, "mMasterVolumeMinimized");
+            mUiFrameRate = get(map, "mUiFrameRate");
             mScrollbarSize = get(map, "mScrollbarSize");
             mTouchSlop = get(map, "mTouchSlop");
             mHoverSlop = get(map, "mHoverSlop");
@@ -199,6 +204,7 @@ public final class Config {
             mUseColorEmoji = get(map, "mUseColorEmoji");
             mLinearMetrics = get(map, "mLinearMetrics");
             mEmojiShortcodes = get(map, "mEmojiShortcodes");
+            mEditBoxUndoLimit = get(map, "mEditBoxUndoLimit");
         }
 
         public void reload() {
@@ -208,6 +214,7 @@ public final class Config {
             BlurHandler.sOverrideVanillaBlur = mOverrideVanillaBlur.get();
             BlurHandler.sBackgroundDuration = mBackgroundDuration.get();
             BlurHandler.sBlurRadius = mBlurRadius.get();
+            BlurHandler.sBlurMode = mBlurMode.get();
 
             BlurHandler.sFramerateInactive = mFramerateInactive.get();
             /*BlurHandler.sFramerateMinimized = Math.min(
@@ -219,6 +226,7 @@ public final class Config {
                     mMasterVolumeMinimized.get().floatValue(),
                     BlurHandler.sMasterVolumeInactive
             );
+            FrameScheduler.sTargetFrameRate = mUiFrameRate.get();
 
             List<? extends String> inColors = mBackgroundColor.get();
             int[] resultColors = new int[4];
@@ -369,6 +377,7 @@ public final class Config {
 
             ModernUIClient.sUseColorEmoji = mUseColorEmoji.get();
             ModernUIClient.sEmojiShortcodes = mEmojiShortcodes.get();
+            EditBoxUndoHistory.sMemoryLimit = mEditBoxUndoLimit.get() * 1024;
             ModernUIClient.sFirstFontFamily = mFirstFontFamily.get();
             ModernUIClient.sFallbackFontFamilyList = mFallbackFontFamilyList.get();
             ModernUIClient.sFontRegistrationList = mFontRegistrationList.get();
@@ -457,6 +466,17 @@ public final class Config {
                 return I18n.get("modernui.windowMode." + name().toLowerCase(Locale.ROOT));
             }
         }
+
+        public enum BlurMode {
+            GAUSSIAN,
+            DUAL_FILTER;
+
+            @Nonnull
+            @Override
+            public String toString() {
+                return I18n.get("modernui.blurMode." + name().toLowerCase(Locale.ROOT));
+            }
+        }
     }
 
     public static class Common {
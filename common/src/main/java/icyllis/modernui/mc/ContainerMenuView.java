@@ -19,53 +19,222 @@
 package icyllis.modernui.mc;
 
 import icyllis.arc3d.core.*;
+import icyllis.modernui.annotation.RenderThread;
+import icyllis.modernui.annotation.UiThread;
 import icyllis.modernui.core.Context;
 import icyllis.modernui.graphics.Canvas;
 import icyllis.modernui.graphics.*;
-import icyllis.modernui.view.View;
-import net.minecraft.world.inventory.AbstractContainerMenu;
-import net.minecraft.world.inventory.Slot;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.gui.GuiGraphics;
+import net.minecraft.world.inventory.*;
 import net.minecraft.world.item.ItemStack;
 
 import javax.annotation.Nonnull;
+import java.util.ArrayList;
 
 /**
  * ContainerMenuView can be used to display and interact with a {@link AbstractContainerMenu ContainerMenu}
  * in the view system.
+ * <p>
+ * Slot changes are tracked by comparing the drawn stacks of visible slots periodically,
+ * since client menus don't broadcast changes. The view is invalidated only if a visible
+ * slot changed, and only slots intersecting the visible area are visited,
+ * so the view can be scrolled over containers with hundreds of slots. Item icons are
+ * cached by {@link ItemIconCache}, then unchanged slots are cheap to draw. Animated
+ * items are not cached, they are rendered directly every game frame through the
+ * surface of this view.
  */
 //TODO WIP
-public class ContainerMenuView extends View implements CustomDrawable {
+public class ContainerMenuView extends MinecraftSurfaceView implements CustomDrawable {
+
+    private static final AnimatedItem[] NO_ANIMATED_ITEMS = new AnimatedItem[0];
+
+    // interval to check changes
+    private static final long CHECK_INTERVAL = 50;
 
     private AbstractContainerMenu mContainerMenu;
     private final int mItemSize;
 
+    // slot indices sorted by top, and the tops in the same order
+    private int[] mSlotOrder = IntArrays.EMPTY_ARRAY;
+    private int[] mSlotTops = IntArrays.EMPTY_ARRAY;
+    private int mContentHeight;
+
+    // the stacks and counts last drawn, indexed by slot index
+    private ItemStack[] mDrawnItems = new ItemStack[0];
+    private int[] mDrawnCounts = IntArrays.EMPTY_ARRAY;
+
+    private final Runnable mCheckChanges = this::checkChanges;
+
+    // UI thread -> render thread, the animated items of the last draw
+    private volatile AnimatedItem[] mAnimatedItems = NO_ANIMATED_ITEMS;
+    private final ArrayList<AnimatedItem> mTmpAnimatedItems = new ArrayList<>();
+
     public ContainerMenuView(Context context) {
         super(context);
+        setWillNotDraw(false);
         mItemSize = dp(32);
+        setRenderer(new AnimatedItemRenderer());
     }
 
+    @UiThread
     public void setContainerMenu(AbstractContainerMenu containerMenu) {
+        if (mContainerMenu == containerMenu) {
+            return;
+        }
         mContainerMenu = containerMenu;
+        if (containerMenu != null) {
+            buildSlotIndex(containerMenu);
+        } else {
+            mSlotOrder = IntArrays.EMPTY_ARRAY;
+            mSlotTops = IntArrays.EMPTY_ARRAY;
+            mDrawnItems = new ItemStack[0];
+            mDrawnCounts = IntArrays.EMPTY_ARRAY;
+            mContentHeight = 0;
+            mAnimatedItems = NO_ANIMATED_ITEMS;
+        }
         invalidate();
     }
 
+    // slots don't move after the menu is created
+    private void buildSlotIndex(@Nonnull AbstractContainerMenu menu) {
+        final int count = menu.slots.size();
+        final int[] tops = new int[count];
+        final int[] order = new int[count];
+        int contentHeight = 0;
+        for (int i = 0; i < count; i++) {
+            tops[i] = getSlotTop(menu.slots.get(i));
+            order[i] = i;
+            contentHeight = Math.max(contentHeight, tops[i] + mItemSize);
+        }
+        IntArrays.quickSort(order, (a, b) -> Integer.compare(tops[a], tops[b]));
+        final int[] sortedTops = new int[count];
+        for (int i = 0; i < count; i++) {
+            sortedTops[i] = tops[order[i]];
+        }
+        mSlotOrder = order;
+        mSlotTops = sortedTops;
+        mDrawnItems = new ItemStack[count];
+        mDrawnCounts = new int[count];
+        mContentHeight = contentHeight;
+    }
+
+    private int getSlotTop(@Nonnull Slot slot) {
+        // item is drawn centered at the slot pos
+        return dp(slot.y * 2) - mItemSize / 2;
+    }
+
+    // first position in slot order that may intersect the visible area
+    private int getFirstVisible() {
+        // tops are sorted, binary search the first slot whose bottom is below the scroll pos
+        final int target = getScrollY() - mItemSize;
+        int low = 0, high = mSlotTops.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mSlotTops[mid] <= target) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    @UiThread
+    private void checkChanges() {
+        if (!isAttachedToWindow()) {
+            return;
+        }
+        var menu = mContainerMenu;
+        if (menu != null) {
+            // changes are not broadcast on client side, compare with the drawn stacks
+            final int bottom = getScrollY() + getHeight();
+            for (int i = getFirstVisible(); i < mSlotOrder.length && mSlotTops[i] < bottom; i++) {
+                int index = mSlotOrder[i];
+                Slot slot = menu.slots.get(index);
+                ItemStack item = slot.isActive() ? slot.getItem() : ItemStack.EMPTY;
+                if (isChanged(index, item)) {
+                    invalidate();
+                    break;
+                }
+            }
+        }
+        postDelayed(mCheckChanges, CHECK_INTERVAL);
+    }
+
+    private boolean isChanged(int index, @Nonnull ItemStack item) {
+        ItemStack drawn = mDrawnItems[index];
+        if (drawn == null) {
+            return !item.isEmpty();
+        }
+        // stacks are replaced on sync, only count is modified in place
+        return drawn != item || mDrawnCounts[index] != item.getCount();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        postDelayed(mCheckChanges, CHECK_INTERVAL);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        removeCallbacks(mCheckChanges);
+        mAnimatedItems = NO_ANIMATED_ITEMS;
+    }
+
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
     }
 
+    @Override
+    protected int computeVerticalScrollRange() {
+        return Math.max(mContentHeight, getHeight());
+    }
+
     @Override
     protected void onDraw(@Nonnull Canvas canvas) {
         var menu = mContainerMenu;
         if (menu == null) {
             return;
         }
-        for (int i = 0; i < menu.slots.size(); ++i) {
-            Slot slot = menu.slots.get(i);
-            if (slot.isActive()) {
+        // visit slots intersecting the visible area only
+        final int bottom = getScrollY() + getHeight();
+        final int first = getFirstVisible();
+        int end = first;
+        while (end < mSlotOrder.length && mSlotTops[end] < bottom) {
+            end++;
+        }
+        final ItemIconCache cache = ItemIconCache.getInstance();
+        // visible icons must not evict each other
+        cache.ensureCapacity(mItemSize, end - first);
+        final ArrayList<AnimatedItem> animatedItems = mTmpAnimatedItems;
+        for (int i = first; i < end; i++) {
+            int index = mSlotOrder[i];
+            Slot slot = menu.slots.get(index);
+            ItemStack item = slot.isActive() ? slot.getItem() : ItemStack.EMPTY;
+            mDrawnItems[index] = item;
+            mDrawnCounts[index] = item.getCount();
+            if (item.isEmpty()) {
+                continue;
+            }
+            if (cache.isAnimated(item)) {
+                // relative to the surface
+                int x = dp(slot.x * 2);
+                int y = dp(slot.y * 2);
+                animatedItems.add(new AnimatedItem(item,
+                        x - getScrollX(), y - getScrollY(), x + y * getWidth()));
+            } else {
                 drawSlot(canvas, slot);
             }
         }
+        mAnimatedItems = animatedItems.isEmpty()
+                ? NO_ANIMATED_ITEMS
+                : animatedItems.toArray(NO_ANIMATED_ITEMS);
+        animatedItems.clear();
     }
 
     protected void drawSlot(@Nonnull Canvas canvas, @Nonnull Slot slot) {
@@ -90,4 +259,42 @@ public class ContainerMenuView extends View implements CustomDrawable {
     public RectF getBounds() {
         return null;
     }
+
+    private record AnimatedItem(ItemStack item, int x, int y, int seed) {
+    }
+
+    // renders animated items directly, their cached icons would be stale
+    private final class AnimatedItemRenderer implements Renderer {
+
+        @Override
+        public void onSurfaceChanged(int width, int height) {
+        }
+
+        @RenderThread
+        @Override
+        public void onDraw(@Nonnull GuiGraphics gr, int mouseX, int mouseY, float deltaTick,
+                           double guiScale, float alpha) {
+            final AnimatedItem[] items = mAnimatedItems;
+            if (items.length == 0) {
+                return;
+            }
+            // slots do not overlap, stream all the geometry and draw once per render type
+            final StreamBufferSource bufferSource = ItemIconCache.getInstance().getBufferSource();
+            final GuiGraphics itemGr = new GuiGraphics(Minecraft.getInstance(), bufferSource);
+            // items are 16x16 in GUI scaled coordinates
+            final float scale = (float) (mItemSize / guiScale / 16);
+            final float half = mItemSize * 0.5f;
+            for (AnimatedItem item : items) {
+                itemGr.pose().pushPose();
+                itemGr.pose().translate((float) ((item.x() - half) / guiScale),
+                        (float) ((item.y() - half) / guiScale), 0);
+                itemGr.pose().scale(scale, scale, 1);
+                itemGr.renderItem(item.item(), 0, 0, item.seed());
+                itemGr.pose().popPose();
+            }
+            // draw before the scissor is disabled
+            itemGr.flush();
+            bufferSource.endFrame();
+        }
+    }
 }
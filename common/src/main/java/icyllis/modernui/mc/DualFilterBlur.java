@@ -0,0 +1,172 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2025 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.mc;
+
+import com.mojang.blaze3d.pipeline.RenderTarget;
+import com.mojang.blaze3d.pipeline.TextureTarget;
+import com.mojang.blaze3d.systems.RenderSystem;
+import com.mojang.blaze3d.vertex.*;
+import icyllis.modernui.annotation.RenderThread;
+import net.minecraft.client.renderer.CompiledShaderProgram;
+import net.minecraft.client.renderer.ShaderDefines;
+import net.minecraft.client.renderer.ShaderProgram;
+import org.jetbrains.annotations.ApiStatus;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+
+import static org.lwjgl.opengl.GL33C.*;
+
+/**
+ * Multi-resolution blur with the dual filter (a Kawase blur variant). The image is
+ * progressively downsampled to half size per level and then upsampled back, each
+ * pass takes 5 or 8 bilinear taps, so the cost is about 1/3 of a full-screen pass
+ * per level regardless of the radius.
+ * <p>
+ * The radius is defined the same way as the gaussian blur, sigma = radius / 2. It's
+ * mapped to the number of levels and a sampling offset that give approximately the
+ * same visual strength.
+ */
+@ApiStatus.Internal
+@RenderThread
+public final class DualFilterBlur {
+
+    public static final ShaderProgram SHADER_DOWN = new ShaderProgram(
+            ModernUIMod.location("core/dual_filter_down"),
+            DefaultVertexFormat.BLIT_SCREEN,
+            ShaderDefines.EMPTY);
+    public static final ShaderProgram SHADER_UP = new ShaderProgram(
+            ModernUIMod.location("core/dual_filter_up"),
+            DefaultVertexFormat.BLIT_SCREEN,
+            ShaderDefines.EMPTY);
+
+    public static final int MAX_LEVELS = 6;
+
+    // levels[i] is 1/2^(i+1) of the source size
+    private final ArrayList<TextureTarget> mLevels = new ArrayList<>();
+
+    /**
+     * Computes the number of levels for the given gaussian radius.
+     */
+    public static int getLevelCount(float radius) {
+        int levels = 32 - Integer.numberOfLeadingZeros(Math.max((int) Math.ceil(radius) - 1, 1)) - 1;
+        return Math.max(1, Math.min(MAX_LEVELS, levels));
+    }
+
+    /**
+     * Computes the sampling offset for the given gaussian radius and number of levels,
+     * so that offset * 2^(levels+1) is approximately the radius.
+     */
+    public static float getOffset(float radius, int levels) {
+        return Math.max(0.5f, Math.min(2.0f, radius / (1 << (levels + 1))));
+    }
+
+    /**
+     * Blurs the given target in place.
+     *
+     * @return false if the shaders are not available
+     */
+    public boolean process(@Nonnull RenderTarget target, float radius) {
+        int levels = getLevelCount(radius);
+        // stop when the image becomes too small
+        while (levels > 1 && (target.width >> levels == 0 || target.height >> levels == 0)) {
+            levels--;
+        }
+        float offset = getOffset(radius, levels);
+        ensureLevels(target, levels);
+
+        // restored after the passes, the caller may render with either state
+        final boolean blend = glIsEnabled(GL_BLEND);
+        final boolean depthTest = glIsEnabled(GL_DEPTH_TEST);
+        RenderSystem.disableBlend();
+        RenderSystem.disableDepthTest();
+        boolean success = true;
+        RenderTarget src = target;
+        for (int i = 0; success && i < levels; i++) {
+            RenderTarget dst = mLevels.get(i);
+            success = pass(SHADER_DOWN, src, dst, offset);
+            src = dst;
+        }
+        for (int i = levels - 2; success && i >= -1; i--) {
+            RenderTarget dst = i >= 0 ? mLevels.get(i) : target;
+            success = pass(SHADER_UP, src, dst, offset);
+            src = dst;
+        }
+        // Minecraft samples the main target with nearest filter
+        target.setFilterMode(GL_NEAREST);
+        if (blend) {
+            RenderSystem.enableBlend();
+        }
+        if (depthTest) {
+            RenderSystem.enableDepthTest();
+        }
+        return success;
+    }
+
+    private void ensureLevels(@Nonnull RenderTarget target, int levels) {
+        for (int i = 0; i < levels; i++) {
+            int width = Math.max(1, target.width >> (i + 1));
+            int height = Math.max(1, target.height >> (i + 1));
+            if (i == mLevels.size()) {
+                TextureTarget level = new TextureTarget(width, height, false);
+                level.setFilterMode(GL_LINEAR);
+                mLevels.add(level);
+            } else {
+                TextureTarget level = mLevels.get(i);
+                if (level.width != width || level.height != height) {
+                    level.resize(width, height);
+                    level.setFilterMode(GL_LINEAR);
+                }
+            }
+        }
+    }
+
+    private static boolean pass(@Nonnull ShaderProgram program,
+                                @Nonnull RenderTarget src, @Nonnull RenderTarget dst,
+                                float offset) {
+        CompiledShaderProgram shader = RenderSystem.setShader(program);
+        if (shader == null) {
+            return false;
+        }
+        // sample between texels, bilinear filtering takes the average of four texels
+        src.setFilterMode(GL_LINEAR);
+        dst.bindWrite(true);
+        shader.bindSampler("InSampler", src.getColorTextureId());
+        shader.safeGetUniform("u_TexelOffset")
+                .set(0.5f * offset / src.width, 0.5f * offset / src.height);
+        BufferBuilder bufferBuilder = RenderSystem.renderThreadTesselator()
+                .begin(VertexFormat.Mode.QUADS, DefaultVertexFormat.BLIT_SCREEN);
+        bufferBuilder.addVertex(0.0F, 0.0F, 0.0F);
+        bufferBuilder.addVertex(1.0F, 0.0F, 0.0F);
+        bufferBuilder.addVertex(1.0F, 1.0F, 0.0F);
+        bufferBuilder.addVertex(0.0F, 1.0F, 0.0F);
+        BufferUploader.drawWithShader(bufferBuilder.buildOrThrow());
+        return true;
+    }
+
+    /**
+     * Releases the intermediate targets.
+     */
+    public void release() {
+        for (TextureTarget level : mLevels) {
+            level.destroyBuffers();
+        }
+        mLevels.clear();
+    }
+}
@@ -25,13 +25,21 @@ import net.minecraft.client.gui.components.EditBox;
 
 import javax.annotation.Nonnull;
 
+/**
+ * A single edit stored as a delta, the text in [start, start + oldText.length) was
+ * replaced by newText.
+ */
 public class EditBoxEditAction extends UndoOperation<EditBox> {
 
+    // estimated shallow size of this object, two strings and the owning undo state
+    private static final int MEMORY_OVERHEAD = 96;
+
     private final boolean mIsInsert;
+    private final boolean mIsDelete;
 
-    private final String mOldText;
+    private String mOldText;
     private String mNewText;
-    private final int mStart;
+    private int mStart;
 
     private final int mOldCursorPos;
     private int mNewCursorPos;
@@ -42,6 +50,7 @@ public class EditBoxEditAction extends UndoOperation<EditBox> {
         mOldText = oldText;
         mNewText = newText;
         mIsInsert = !mNewText.isEmpty() && mOldText.isEmpty();
+        mIsDelete = mNewText.isEmpty() && !mOldText.isEmpty();
         mStart = start;
         mOldCursorPos = cursor;
         mNewCursorPos = start + mNewText.length();
@@ -103,7 +112,12 @@ public class EditBoxEditAction extends UndoOperation<EditBox> {
         // NO DATA
     }
 
-    public boolean mergeInsertWith(EditBoxEditAction edit) {
+    /**
+     * Merges a subsequent adjacent insertion or deletion of the same kind into this.
+     *
+     * @return true if merged
+     */
+    public boolean mergeWith(EditBoxEditAction edit) {
         if (mIsInsert && edit.mIsInsert) {
             if (mStart + mNewText.length() != edit.mStart) {
                 return false;
@@ -112,9 +126,30 @@ public class EditBoxEditAction extends UndoOperation<EditBox> {
             mNewCursorPos = edit.mNewCursorPos;
             return true;
         }
+        if (mIsDelete && edit.mIsDelete) {
+            if (edit.mStart + edit.mOldText.length() == mStart) {
+                // backspace
+                mOldText = edit.mOldText + mOldText;
+                mStart = edit.mStart;
+            } else if (edit.mStart == mStart) {
+                // forward delete
+                mOldText += edit.mOldText;
+            } else {
+                return false;
+            }
+            mNewCursorPos = mStart;
+            return true;
+        }
         return false;
     }
 
+    /**
+     * @return the estimated memory usage in bytes
+     */
+    public int getMemorySize() {
+        return MEMORY_OVERHEAD + ((mOldText.length() + mNewText.length()) << 1);
+    }
+
     @Override
     public String toString() {
         return "EditBoxEditAction{" +
@@ -0,0 +1,157 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2025 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.mc;
+
+import icyllis.modernui.core.UndoManager;
+import icyllis.modernui.core.UndoOwner;
+import org.jetbrains.annotations.ApiStatus;
+
+import javax.annotation.Nonnull;
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * The undo history of an EditBox, bounded by the estimated memory of its edits.
+ * <p>
+ * Each undo state holds exactly one {@link EditBoxEditAction}, so the operations are
+ * mirrored here in order to account their memory. When the limit is exceeded, the
+ * oldest undo states are forgotten first, the latest edit is always retained.
+ */
+@ApiStatus.Internal
+public final class EditBoxUndoHistory {
+
+    public static final int MEMORY_LIMIT_MIN = 16 * 1024;
+    public static final int MEMORY_LIMIT_MAX = 64 * 1024 * 1024;
+
+    public static volatile int sMemoryLimit = 256 * 1024;
+
+    // histories that have edits, for debug
+    private static final Set<EditBoxUndoHistory> sHistories =
+            Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    private final UndoManager mUndoManager = new UndoManager();
+    private final Object mOwnerData;
+    private UndoOwner[] mOwners;
+
+    // undo operations followed by redo operations, oldest first
+    private final ArrayDeque<EditBoxEditAction> mOperations = new ArrayDeque<>();
+    private long mMemorySize;
+    private long mEvictedCount;
+
+    public EditBoxUndoHistory(@Nonnull Object ownerData) {
+        mOwnerData = ownerData;
+    }
+
+    @Nonnull
+    public UndoManager getUndoManager() {
+        return mUndoManager;
+    }
+
+    @Nonnull
+    public UndoOwner getOwner() {
+        return getOwners()[0];
+    }
+
+    @Nonnull
+    public UndoOwner[] getOwners() {
+        if (mOwners == null) {
+            mOwners = new UndoOwner[]{mUndoManager.getOwner("EditBox", mOwnerData)};
+        }
+        return mOwners;
+    }
+
+    /**
+     * Adds an edit as a new undo state, or merges it into the last edit.
+     *
+     * @param merge whether to try merging into the last edit
+     */
+    public void addEdit(@Nonnull EditBoxEditAction edit, boolean merge) {
+        final UndoManager mgr = mUndoManager;
+        final UndoOwner[] owners = getOwners();
+        mgr.beginUpdate("addEdit");
+        EditBoxEditAction lastEdit = mgr.getLastOperation(
+                EditBoxEditAction.class,
+                owners[0],
+                UndoManager.MERGE_MODE_UNIQUE
+        );
+        if (lastEdit != null && merge) {
+            int oldSize = lastEdit.getMemorySize();
+            if (lastEdit.mergeWith(edit)) {
+                mgr.endUpdate();
+                mMemorySize += lastEdit.getMemorySize() - oldSize;
+                trim(owners);
+                return;
+            }
+        }
+        // a new state discards all redo states
+        for (int i = mgr.countRedos(owners); i > 0 && !mOperations.isEmpty(); i--) {
+            mMemorySize -= mOperations.removeLast().getMemorySize();
+        }
+        if (lastEdit != null) {
+            mgr.commitState(owners[0]);
+        }
+        mgr.addOperation(edit, UndoManager.MERGE_MODE_NONE);
+        mgr.endUpdate();
+        mOperations.addLast(edit);
+        mMemorySize += edit.getMemorySize();
+        if (mOperations.size() == 1) {
+            sHistories.add(this);
+        }
+        trim(owners);
+    }
+
+    private void trim(@Nonnull UndoOwner[] owners) {
+        final UndoManager mgr = mUndoManager;
+        // the undo manager may also forget states by its history size
+        final int count = mgr.countUndos(owners) + mgr.countRedos(owners);
+        while (mOperations.size() > count) {
+            mMemorySize -= mOperations.removeFirst().getMemorySize();
+        }
+        final int limit = sMemoryLimit;
+        while (mMemorySize > limit && mgr.countUndos(owners) > 1) {
+            mgr.forgetUndos(owners, 1);
+            mMemorySize -= mOperations.removeFirst().getMemorySize();
+            mEvictedCount++;
+        }
+    }
+
+    public long getMemorySize() {
+        return mMemorySize;
+    }
+
+    public static void dumpInfo(@Nonnull PrintWriter pw) {
+        int histories = 0;
+        long operations = 0;
+        long memorySize = 0;
+        long maxMemorySize = 0;
+        long evicted = 0;
+        synchronized (sHistories) {
+            for (EditBoxUndoHistory history : sHistories) {
+                histories++;
+                operations += history.mOperations.size();
+                memorySize += history.mMemorySize;
+                maxMemorySize = Math.max(maxMemorySize, history.mMemorySize);
+                evicted += history.mEvictedCount;
+            }
+        }
+        pw.printf("EditBoxUndoHistory: Histories=%d, Operations=%d, Memory=%d bytes, " +
+                        "MaxPerBox=%d bytes, Evicted=%d, Limit=%d bytes\n",
+                histories, operations, memorySize, maxMemorySize, evicted, sMemoryLimit);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2025 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.mc;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Unmodifiable;
+
+import javax.annotation.Nonnull;
+import java.util.*;
+
+/**
+ * A sorted index over emoji shortcodes (with colons) for case-insensitive prefix
+ * queries. A query is two binary searches, and the result is a view of the matching
+ * slice, so nothing is copied or filtered per query.
+ * <p>
+ * This is immutable and built when resources are loaded.
+ *
+ * @see FontResourceManager#getEmojiShortcodeIndex()
+ */
+@ApiStatus.Internal
+public final class EmojiShortcodeIndex {
+
+    public static final EmojiShortcodeIndex EMPTY = new EmojiShortcodeIndex(new String[0], new String[0]);
+
+    // lower case keys in ascending order
+    private final String[] mKeys;
+    // original shortcodes, in the same order as keys
+    private final List<String> mShortcodes;
+
+    private EmojiShortcodeIndex(String[] keys, String[] shortcodes) {
+        mKeys = keys;
+        mShortcodes = Collections.unmodifiableList(Arrays.asList(shortcodes));
+    }
+
+    /**
+     * Builds an index from shortcodes.
+     *
+     * @param shortcodes shortcodes with colons, e.g. :cheese:
+     */
+    @Nonnull
+    public static EmojiShortcodeIndex build(@Nonnull Collection<String> shortcodes) {
+        if (shortcodes.isEmpty()) {
+            return EMPTY;
+        }
+        String[] sorted = shortcodes.toArray(new String[0]);
+        // ties are broken by the original string to be deterministic
+        Arrays.sort(sorted, Comparator.comparing((String s) -> s.toLowerCase(Locale.ROOT))
+                .thenComparing(Comparator.naturalOrder()));
+        String[] keys = new String[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            // toLowerCase returns the same instance if nothing changed
+            keys[i] = sorted[i].toLowerCase(Locale.ROOT);
+        }
+        return new EmojiShortcodeIndex(keys, sorted);
+    }
+
+    public int size() {
+        return mKeys.length;
+    }
+
+    /**
+     * Returns all shortcodes starting with the given prefix, ignoring case, in
+     * alphabetical order.
+     *
+     * @param prefix the prefix, e.g. :che
+     * @return a view of the matched shortcodes
+     */
+    @Nonnull
+    @Unmodifiable
+    public List<String> getByPrefix(@Nonnull String prefix) {
+        String key = prefix.toLowerCase(Locale.ROOT);
+        int from = lowerBound(key);
+        int to = from;
+        if (from < mKeys.length && mKeys[from].startsWith(key)) {
+            // the first key greater than all keys starting with the prefix
+            to = lowerBound(key + Character.MAX_VALUE);
+        }
+        return mShortcodes.subList(from, to);
+    }
+
+    // index of the first key not less than the given key
+    private int lowerBound(@Nonnull String key) {
+        int low = 0;
+        int high = mKeys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mKeys[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2025 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.mc;
+
+import org.jetbrains.annotations.ApiStatus;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * A trie over emoji shortcodes (with colons), used to replace shortcodes in text with
+ * a single left-to-right scan. Every shortcode starts with a colon and has no colons
+ * in between, so there is at most one match at each position, and a failed match only
+ * costs up to the longest shortcode.
+ * <p>
+ * This is immutable and built when resources are loaded.
+ *
+ * @see FontResourceManager#getEmojiShortcodeMatcher()
+ */
+@ApiStatus.Internal
+public final class EmojiShortcodeMatcher {
+
+    public static final EmojiShortcodeMatcher EMPTY = new EmojiShortcodeMatcher(new Node(), 0);
+
+    private final Node mRoot;
+    private final int mMaxLength;
+
+    private EmojiShortcodeMatcher(Node root, int maxLength) {
+        mRoot = root;
+        mMaxLength = maxLength;
+    }
+
+    /**
+     * Builds a matcher from shortcodes to emoji sequences.
+     *
+     * @param map shortcodes with colons, e.g. :cheese:
+     */
+    @Nonnull
+    public static EmojiShortcodeMatcher build(@Nonnull Map<String, String> map) {
+        if (map.isEmpty()) {
+            return EMPTY;
+        }
+        var root = new Builder();
+        int maxLength = 0;
+        for (var e : map.entrySet()) {
+            String key = e.getKey();
+            Builder node = root;
+            for (int i = 0; i < key.length(); i++) {
+                node = node.children.computeIfAbsent(key.charAt(i), $ -> new Builder());
+            }
+            node.value = e.getValue();
+            maxLength = Math.max(maxLength, key.length());
+        }
+        return new EmojiShortcodeMatcher(root.freeze(0), maxLength);
+    }
+
+    /**
+     * @return the length of the longest shortcode, including colons
+     */
+    public int getMaxLength() {
+        return mMaxLength;
+    }
+
+    /**
+     * Finds the shortcode starting at the given index.
+     *
+     * @param text  the text
+     * @param start the index of the opening colon
+     * @param limit the exclusive end index to search
+     * @return the end index of the shortcode (exclusive), or -1 if not found
+     */
+    public int match(@Nonnull CharSequence text, int start, int limit) {
+        Node node = find(text, start, limit);
+        return node != null ? start + node.depth : -1;
+    }
+
+    @Nullable
+    private Node find(@Nonnull CharSequence text, int start, int limit) {
+        Node node = mRoot;
+        for (int i = start; i < limit; i++) {
+            node = node.get(text.charAt(i));
+            if (node == null) {
+                return null;
+            }
+            if (node.value != null) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Replaces all the shortcodes in the given range of text, scanning from left to right.
+     *
+     * @param text the text
+     * @param from the start index, inclusive
+     * @param to   the end index, exclusive
+     * @return the replacement covering the first to the last matched shortcode,
+     * or null if there is no shortcode in the range
+     */
+    @Nullable
+    public Replacement replace(@Nonnull CharSequence text, int from, int to) {
+        StringBuilder sb = null;
+        int first = -1;
+        int last = from;
+        for (int i = from; i < to; ) {
+            if (text.charAt(i) == ':') {
+                Node node = find(text, i, to);
+                if (node != null) {
+                    if (sb == null) {
+                        sb = new StringBuilder();
+                        first = i;
+                    } else {
+                        sb.append(text, last, i);
+                    }
+                    sb.append(node.value);
+                    last = i = i + node.depth;
+                    continue;
+                }
+            }
+            i++;
+        }
+        return sb != null ? new Replacement(first, last, sb.toString()) : null;
+    }
+
+    /**
+     * The range [start, end) of the original text to be replaced by text.
+     */
+    public record Replacement(int start, int end, @Nonnull String text) {
+    }
+
+    private static final class Node {
+
+        private static final char[] NO_KEYS = {};
+        private static final Node[] NO_CHILDREN = {};
+
+        // sorted
+        char[] keys = NO_KEYS;
+        Node[] children = NO_CHILDREN;
+        String value;
+        // length of the key to this node
+        int depth;
+
+        @Nullable
+        Node get(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+    }
+
+    private static final class Builder {
+
+        final TreeMap<Character, Builder> children = new TreeMap<>();
+        String value;
+
+        Node freeze(int depth) {
+            Node node = new Node();
+            node.value = value;
+            node.depth = depth;
+            int n = children.size();
+            if (n > 0) {
+                node.keys = new char[n];
+                node.children = new Node[n];
+                int i = 0;
+                for (var e : children.entrySet()) {
+                    node.keys[i] = e.getKey();
+                    node.children[i] = e.getValue().freeze(depth + 1);
+                    i++;
+                }
+            }
+            return node;
+        }
+    }
+}
@@ -72,7 +72,8 @@ public class FontResourceManager implements PreparableReloadListener {
      * Shortcodes to Emoji char sequences.
      */
     protected final HashMap<String, String> mEmojiShortcodes = new HashMap<>();
-    protected final HashMap<Character, List<String>> mPrefixedEmojiShortcodes = new HashMap<>();
+    protected volatile EmojiShortcodeIndex mEmojiShortcodeIndex = EmojiShortcodeIndex.EMPTY;
+    protected volatile EmojiShortcodeMatcher mEmojiShortcodeMatcher = EmojiShortcodeMatcher.EMPTY;
 
     protected FontResourceManager() {
     }
@@ -147,7 +148,8 @@ public class FontResourceManager implements PreparableReloadListener {
     public static class LoadResults {
         public volatile EmojiFont mEmojiFont;
         public volatile Map<String, String> mEmojiShortcodes = Collections.emptyMap();
-        public volatile Map<Character, List<String>> mPrefixedEmojiShortcodes = Collections.emptyMap();
+        public volatile EmojiShortcodeIndex mEmojiShortcodeIndex = EmojiShortcodeIndex.EMPTY;
+        public volatile EmojiShortcodeMatcher mEmojiShortcodeMatcher = EmojiShortcodeMatcher.EMPTY;
     }
 
     // SYNC
@@ -156,8 +158,8 @@ public class FontResourceManager implements PreparableReloadListener {
         mEmojiFont = results.mEmojiFont;
         mEmojiShortcodes.clear();
         mEmojiShortcodes.putAll(results.mEmojiShortcodes);
-        mPrefixedEmojiShortcodes.clear();
-        mPrefixedEmojiShortcodes.putAll(results.mPrefixedEmojiShortcodes);
+        mEmojiShortcodeIndex = results.mEmojiShortcodeIndex;
+        mEmojiShortcodeMatcher = results.mEmojiShortcodeMatcher;
         // reload the whole engine
         try {
             ModernUIClient.getInstance().reloadTypeface();
@@ -242,7 +244,6 @@ public class FontResourceManager implements PreparableReloadListener {
     protected static void loadShortcodes(@Nonnull ResourceManager resources,
                                          @Nonnull LoadResults results) {
         final var map = new HashMap<String, String>();
-        final var prefixedMap = new HashMap<Character, HashSet<String>>();
         try (var reader = resources.openAsReader(ModernUIMod.location("emoji_data.json"))) {
             for (var entry : new Gson().fromJson(reader, JsonArray.class)) {
                 var row = entry.getAsJsonArray();
@@ -252,9 +253,6 @@ public class FontResourceManager implements PreparableReloadListener {
                 for (int i = 0; i < shortcodes.size(); i++) {
                     String sc = shortcodes.get(i).getAsString();
                     String key = ":" + sc + ":";
-                    char prefix = Character.toLowerCase(sc.charAt(0));
-                    prefixedMap.computeIfAbsent(prefix, $ -> new HashSet<>())
-                            .add(key);
                     if (i == 0) {
                         map.put(key, sequence);
                     } else {
@@ -268,13 +266,8 @@ public class FontResourceManager implements PreparableReloadListener {
         LOGGER.info(GlyphManager.MARKER, "Scanned emoji shortcodes: {}",
                 map.size());
         results.mEmojiShortcodes = map;
-        final var finalPrefixedMap = new HashMap<Character, List<String>>();
-        for (var e : prefixedMap.entrySet()) {
-            var list = new ArrayList<>(e.getValue());
-            list.sort(null);
-            finalPrefixedMap.put(e.getKey(), Collections.unmodifiableList(list));
-        }
-        results.mPrefixedEmojiShortcodes = finalPrefixedMap;
+        results.mEmojiShortcodeMatcher = EmojiShortcodeMatcher.build(map);
+        results.mEmojiShortcodeIndex = EmojiShortcodeIndex.build(map.keySet());
     }
 
     // ASYNC
@@ -297,10 +290,29 @@ public class FontResourceManager implements PreparableReloadListener {
         return mEmojiShortcodes.get(shortcode);
     }
 
+    /**
+     * @return the matcher to replace shortcodes in text
+     */
+    @Nonnull
+    public EmojiShortcodeMatcher getEmojiShortcodeMatcher() {
+        return mEmojiShortcodeMatcher;
+    }
+
+    /**
+     * @return the index to search shortcodes by prefix
+     */
+    @Nonnull
+    public EmojiShortcodeIndex getEmojiShortcodeIndex() {
+        return mEmojiShortcodeIndex;
+    }
+
+    /**
+     * Returns shortcodes (with colons) whose first letter is the given char, ignoring case.
+     */
     @Nonnull
     @Unmodifiable
     public List<String> getEmojiShortcodes(char prefix) {
-        return mPrefixedEmojiShortcodes.getOrDefault(Character.toLowerCase(prefix), Collections.emptyList());
+        return mEmojiShortcodeIndex.getByPrefix(":" + prefix);
     }
 
     static class EmojiData {
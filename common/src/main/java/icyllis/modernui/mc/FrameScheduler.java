@@ -0,0 +1,167 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2025 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.mc;
+
+import icyllis.modernui.annotation.RenderThread;
+import icyllis.modernui.annotation.UiThread;
+import org.jetbrains.annotations.ApiStatus;
+
+import javax.annotation.Nonnull;
+import java.io.PrintWriter;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces UI frames recorded on UI thread and consumed on render thread.
+ * <p>
+ * UI frames are only recorded when the view hierarchy is invalidated, otherwise
+ * the render thread keeps compositing the last UI layer without a new Recording.
+ * By default (target frame rate is 0), the UI thread waits for the render thread
+ * to consume every frame, so UI records at most one frame per game frame. With a
+ * target frame rate, UI thread records at most that many frames per second, and
+ * it no longer waits for the render thread unless {@link #MAX_PENDING_FRAMES} are
+ * in flight, so a heavily loaded game does not stall UI animations and input.
+ * Frames that are executed together with a later frame in the same game frame are
+ * never visible, and are reported as dropped.
+ */
+@ApiStatus.Internal
+public final class FrameScheduler {
+
+    /**
+     * The max number of Recordings that are recorded but not yet consumed by the
+     * render thread. Recordings are never discarded since they may contain uploads
+     * that later Recordings depend on.
+     */
+    public static final int MAX_PENDING_FRAMES = 3;
+
+    /**
+     * Target frame rate of UI, 0 = synchronized with the game.
+     */
+    public static volatile int sTargetFrameRate;
+
+    // UI thread
+    private long mRecordStartNanos;
+    private long mNextFrameNanos;
+
+    // statistics, each written by either UI thread or render thread, and read by any
+    // thread, a single writer makes increments on volatile fields safe
+    private volatile long mLastRecordNanos;
+    private volatile long mLastSubmitNanos;
+    private volatile long mRecordedFrames;
+    private volatile long mSubmittedFrames;
+    private volatile long mDroppedFrames;
+    private volatile long mIdleFrames;
+    private volatile long mTotalRecordNanos;
+    private volatile long mTotalSubmitNanos;
+    private volatile long mSubmitCount;
+
+    FrameScheduler() {
+    }
+
+    /**
+     * @return true if UI frames are synchronized with game frames
+     */
+    public boolean isSynchronized() {
+        return sTargetFrameRate <= 0;
+    }
+
+    @UiThread
+    void onRecordStart() {
+        mRecordStartNanos = System.nanoTime();
+    }
+
+    @UiThread
+    void onRecordEnd() {
+        long time = System.nanoTime() - mRecordStartNanos;
+        mLastRecordNanos = time;
+        mTotalRecordNanos += time;
+        mRecordedFrames++;
+    }
+
+    /**
+     * Waits for the next frame slot on UI thread, if a target frame rate is set.
+     */
+    @UiThread
+    void waitForNextFrame() {
+        final int frameRate = sTargetFrameRate;
+        if (frameRate <= 0) {
+            mNextFrameNanos = 0;
+            return;
+        }
+        final long interval = 1_000_000_000L / frameRate;
+        long now = System.nanoTime();
+        long next = mNextFrameNanos + interval;
+        if (next - now > interval) {
+            // target changed or clock skipped
+            next = now + interval;
+        }
+        if (next > now) {
+            LockSupport.parkNanos(next - now);
+            mNextFrameNanos = next;
+        } else {
+            // missed the slot, don't try to catch up
+            mNextFrameNanos = now;
+        }
+    }
+
+    /**
+     * Called on render thread when the pending frames are consumed.
+     *
+     * @param frames     the number of Recordings executed in this game frame
+     * @param submitTime time spent on adding and submitting the Recordings
+     */
+    @RenderThread
+    void onFramesSubmitted(int frames, long submitTime) {
+        if (frames == 0) {
+            mIdleFrames++;
+            return;
+        }
+        mLastSubmitNanos = submitTime;
+        mTotalSubmitNanos += submitTime;
+        mSubmitCount++;
+        mSubmittedFrames += frames;
+        // only the last one is visible
+        mDroppedFrames += frames - 1;
+    }
+
+    public long getLastRecordNanos() {
+        return mLastRecordNanos;
+    }
+
+    public long getLastSubmitNanos() {
+        return mLastSubmitNanos;
+    }
+
+    public long getDroppedFrames() {
+        return mDroppedFrames;
+    }
+
+    public void dumpInfo(@Nonnull PrintWriter pw) {
+        long recorded = mRecordedFrames;
+        long submitted = mSubmittedFrames;
+        long submitCount = mSubmitCount;
+        pw.printf("FrameScheduler: Target=%s, Recorded=%d, Submitted=%d, Dropped=%d, Reused=%d\n",
+                sTargetFrameRate > 0 ? sTargetFrameRate + "fps" : "Sync",
+                recorded, submitted, mDroppedFrames, mIdleFrames);
+        pw.printf("  RecordTime: Last=%.3fms, Average=%.3fms; SubmitTime: Last=%.3fms, Average=%.3fms\n",
+                mLastRecordNanos / 1e6,
+                recorded > 0 ? mTotalRecordNanos / 1e6 / recorded : 0.0,
+                mLastSubmitNanos / 1e6,
+                submitCount > 0 ? mTotalSubmitNanos / 1e6 / submitCount : 0.0);
+    }
+}
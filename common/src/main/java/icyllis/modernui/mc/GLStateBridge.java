@@ -0,0 +1,165 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2025 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.mc;
+
+import icyllis.modernui.annotation.RenderThread;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.MarkerManager;
+import org.jetbrains.annotations.ApiStatus;
+
+import javax.annotation.Nonnull;
+import java.io.PrintWriter;
+
+import static icyllis.modernui.mc.ModernUIMod.LOGGER;
+import static org.lwjgl.opengl.GL33C.*;
+
+/**
+ * Bridges the OpenGL state shared by Arc3D's GLDevice and Blaze3D's RenderSystem.
+ * <p>
+ * Blaze3D does not cache the vertex array and program bindings, they are tracked
+ * here by MixinGlStateManager, so that the UI draw can restore them without glGet,
+ * which forces a driver synchronization on some drivers.
+ * <p>
+ * Arc3D changes GL state without notifying Blaze3D. When it executed no Recording in
+ * a frame, the raw GL state still matches the state cached by RenderSystem, and the
+ * raw GL part of the reset is skipped.
+ * <p>
+ * When validation is enabled, the tracked bindings are compared with the real GL
+ * state and every mismatch is logged, see {@link ModernUIClient#BOOTSTRAP_VALIDATE_GL_STATE}.
+ */
+@ApiStatus.Internal
+@RenderThread
+public final class GLStateBridge {
+
+    private static final Marker MARKER = MarkerManager.getMarker("GLStateBridge");
+
+    // the bindings made by Blaze3D, updated by MixinGlStateManager
+    private static int sVertexArray;
+    private static int sProgram;
+
+    static volatile boolean sValidate;
+
+    private long mFrames;
+    private long mQueriesSaved;
+    private long mResetCallsSkipped;
+    private long mValidationErrors;
+
+    GLStateBridge() {
+    }
+
+    /**
+     * Called when Blaze3D binds a vertex array, hook method, DO NOT CALL.
+     */
+    public static void onBindVertexArray(int array) {
+        sVertexArray = array;
+    }
+
+    /**
+     * Called when Blaze3D uses a program, hook method, DO NOT CALL.
+     */
+    public static void onUseProgram(int program) {
+        sProgram = program;
+    }
+
+    /**
+     * Called before Arc3D executes Recordings, the bindings returned by
+     * {@link #getVertexArray()} and {@link #getProgram()} are valid until
+     * the next Blaze3D draw.
+     */
+    void beginSubmit() {
+        if (sValidate) {
+            int vertexArray = glGetInteger(GL_VERTEX_ARRAY_BINDING);
+            int program = glGetInteger(GL_CURRENT_PROGRAM);
+            if (vertexArray != sVertexArray) {
+                reportMismatch("vertex array", sVertexArray, vertexArray);
+                // trust the real state, the binding was changed bypassing GlStateManager
+                sVertexArray = vertexArray;
+            }
+            if (program != sProgram) {
+                reportMismatch("program", sProgram, program);
+                sProgram = program;
+            }
+        } else {
+            mQueriesSaved += 2;
+        }
+    }
+
+    int getVertexArray() {
+        return sVertexArray;
+    }
+
+    int getProgram() {
+        return sProgram;
+    }
+
+    /**
+     * Called when the raw GL reset is skipped.
+     *
+     * @param calls the number of GL calls that the reset would have made
+     */
+    void skipReset(int calls) {
+        mResetCallsSkipped += calls;
+    }
+
+    /**
+     * Called at the end of a UI frame, after Blaze3D state has been reset.
+     */
+    void endFrame() {
+        mFrames++;
+        if (sValidate) {
+            if (glGetInteger(GL_VERTEX_ARRAY_BINDING) != sVertexArray) {
+                reportMismatch("vertex array", sVertexArray, glGetInteger(GL_VERTEX_ARRAY_BINDING));
+            }
+            if (glGetInteger(GL_CURRENT_PROGRAM) != sProgram) {
+                reportMismatch("program", sProgram, glGetInteger(GL_CURRENT_PROGRAM));
+            }
+            for (int i = 0; i <= 3; i++) {
+                int sampler = glGetIntegeri(GL_SAMPLER_BINDING, i);
+                if (sampler != 0) {
+                    reportMismatch("sampler binding " + i, 0, sampler);
+                }
+            }
+            checkCapability("stencil test", GL_STENCIL_TEST, false);
+            checkCapability("scissor test", GL_SCISSOR_TEST, false);
+            checkCapability("depth test", GL_DEPTH_TEST, false);
+            int blendEquation = glGetInteger(GL_BLEND_EQUATION_RGB);
+            if (blendEquation != GL_FUNC_ADD) {
+                reportMismatch("blend equation", GL_FUNC_ADD, blendEquation);
+            }
+        }
+    }
+
+    private void checkCapability(String name, int cap, boolean expected) {
+        boolean actual = glIsEnabled(cap);
+        if (actual != expected) {
+            reportMismatch(name, expected ? 1 : 0, actual ? 1 : 0);
+        }
+    }
+
+    private void reportMismatch(String name, int expected, int actual) {
+        mValidationErrors++;
+        LOGGER.warn(MARKER, "Untracked GL state change of {}, expected {}, actual {}",
+                name, expected, actual);
+    }
+
+    public void dumpInfo(@Nonnull PrintWriter pw) {
+        pw.printf("GLStateBridge: Frames=%d, QueriesSaved=%d, ResetCallsSkipped=%d, Validate=%s, Errors=%d\n",
+                mFrames, mQueriesSaved, mResetCallsSkipped, sValidate, mValidationErrors);
+    }
+}
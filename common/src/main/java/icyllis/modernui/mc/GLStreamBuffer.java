@@ -0,0 +1,231 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2025 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.mc;
+
+import com.mojang.blaze3d.platform.GlStateManager;
+import icyllis.modernui.annotation.RenderThread;
+import org.jetbrains.annotations.ApiStatus;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL44C;
+import org.lwjgl.system.MemoryUtil;
+
+import javax.annotation.Nonnull;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+import static org.lwjgl.opengl.GL33C.*;
+
+/**
+ * A fixed-size GPU ring buffer for streaming vertex or index data.
+ * <p>
+ * Data is appended at the head and never reallocates or orphans the buffer. The
+ * buffer is persistently mapped if buffer storage is supported (GL 4.4 or
+ * ARB_buffer_storage), otherwise each write maps its own range unsynchronized.
+ * Ranges written in a frame are protected by a fence, and a write waits only for
+ * the fences whose ranges it's going to overwrite.
+ */
+@ApiStatus.Internal
+@RenderThread
+public final class GLStreamBuffer implements AutoCloseable {
+
+    private final int mTarget;
+    private final int mCapacity;
+    private final boolean mPersistent;
+
+    private int mBuffer;
+    // persistently mapped address, or NULL
+    private long mMappedAddress;
+
+    private int mHead;
+    // start of the range written since the last fence
+    private int mSegmentStart;
+
+    private final ArrayDeque<Fence> mFences = new ArrayDeque<>();
+
+    // statistics
+    private long mBytesWritten;
+    private long mWraps;
+    private long mFenceWaits;
+
+    /**
+     * Creates the buffer and binds it. The element array buffer binding is part of the
+     * vertex array state, so the owner's vertex array must be bound before creating an
+     * index buffer.
+     *
+     * @param target   GL_ARRAY_BUFFER or GL_ELEMENT_ARRAY_BUFFER, used for binding
+     * @param capacity the size in bytes
+     */
+    public GLStreamBuffer(int target, int capacity) {
+        mTarget = target;
+        mCapacity = capacity;
+        mBuffer = GlStateManager._glGenBuffers();
+        bind();
+        if (GL.getCapabilities().glBufferStorage != MemoryUtil.NULL) {
+            final int flags = GL_MAP_WRITE_BIT | GL44C.GL_MAP_PERSISTENT_BIT | GL44C.GL_MAP_COHERENT_BIT;
+            GL44C.glBufferStorage(target, capacity, flags);
+            // if mapping failed, fall back to mapping ranges, the storage allows that
+            mMappedAddress = nglMapBufferRange(target, 0, capacity, flags);
+        } else {
+            glBufferData(target, capacity, GL_STREAM_DRAW);
+        }
+        mPersistent = mMappedAddress != MemoryUtil.NULL;
+    }
+
+    public int getBuffer() {
+        return mBuffer;
+    }
+
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    public void bind() {
+        GlStateManager._glBindBuffer(mTarget, mBuffer);
+    }
+
+    /**
+     * Allocates a range at the head, waiting for the GPU if the range is still in use.
+     *
+     * @param size      the size in bytes
+     * @param alignment the alignment of the returned offset, it can be non-power-of-two
+     * @return the offset, or -1 if the size exceeds the capacity
+     */
+    public int allocate(int size, int alignment) {
+        if (size > mCapacity) {
+            return -1;
+        }
+        int offset = mHead;
+        int rem = offset % alignment;
+        if (rem != 0) {
+            offset += alignment - rem;
+        }
+        if (offset + size > mCapacity) {
+            // the current segment may be read by previous draws
+            fence();
+            mWraps++;
+            offset = 0;
+            mSegmentStart = 0;
+        }
+        waitForRange(offset, offset + size);
+        mHead = offset + size;
+        return offset;
+    }
+
+    /**
+     * Releases the last range returned by {@link #allocate(int, int)} that has not
+     * been written, e.g. the allocation of another buffer for the same draw failed.
+     *
+     * @param offset the offset of the range
+     */
+    public void rollback(int offset) {
+        // the offset is never before the segment start, even if the head wrapped around
+        mHead = offset;
+    }
+
+    /**
+     * Writes data to a range returned by {@link #allocate(int, int)}. The buffer must
+     * be bound if it's not persistently mapped.
+     */
+    public void write(int offset, @Nonnull ByteBuffer data) {
+        int size = data.remaining();
+        if (mPersistent) {
+            MemoryUtil.memCopy(MemoryUtil.memAddress(data), mMappedAddress + offset, size);
+        } else {
+            long address = nglMapBufferRange(mTarget, offset, size,
+                    GL_MAP_WRITE_BIT | GL_MAP_UNSYNCHRONIZED_BIT | GL_MAP_INVALIDATE_RANGE_BIT);
+            if (address == MemoryUtil.NULL) {
+                return;
+            }
+            MemoryUtil.memCopy(MemoryUtil.memAddress(data), address, size);
+            glUnmapBuffer(mTarget);
+        }
+        mBytesWritten += size;
+    }
+
+    /**
+     * Protects the range written since the last fence, called after the draws that
+     * read the range have been issued.
+     */
+    public void fence() {
+        if (mHead == mSegmentStart) {
+            return;
+        }
+        long sync = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        mFences.addLast(new Fence(sync, mSegmentStart, mHead));
+        mSegmentStart = mHead;
+    }
+
+    private void waitForRange(int start, int end) {
+        // fences are signaled in order, find the newest overlapped one
+        Fence newest = null;
+        for (Fence fence : mFences) {
+            if (fence.start < end && start < fence.end) {
+                newest = fence;
+            }
+        }
+        if (newest == null) {
+            return;
+        }
+        Fence fence;
+        do {
+            fence = mFences.removeFirst();
+            if (fence == newest) {
+                int status = glClientWaitSync(fence.sync, 0, 0);
+                if (status == GL_TIMEOUT_EXPIRED) {
+                    mFenceWaits++;
+                    // never overwrite a range that may still be read, however long it takes
+                    do {
+                        status = glClientWaitSync(fence.sync, GL_SYNC_FLUSH_COMMANDS_BIT, 1_000_000_000L);
+                    } while (status == GL_TIMEOUT_EXPIRED);
+                }
+                if (status == GL_WAIT_FAILED) {
+                    // the sync object is unusable, drain the pipeline instead
+                    glFinish();
+                }
+            }
+            glDeleteSync(fence.sync);
+        } while (fence != newest);
+    }
+
+    public void dumpInfo(@Nonnull PrintWriter pw, @Nonnull String name) {
+        pw.printf("  %s: Capacity=%d, Persistent=%s, Written=%d, Wraps=%d, FenceWaits=%d, InFlight=%d\n",
+                name, mCapacity, mPersistent, mBytesWritten, mWraps, mFenceWaits, mFences.size());
+    }
+
+    @Override
+    public void close() {
+        for (Fence fence : mFences) {
+            glDeleteSync(fence.sync);
+        }
+        mFences.clear();
+        if (mBuffer != 0) {
+            if (mPersistent) {
+                bind();
+                glUnmapBuffer(mTarget);
+            }
+            GlStateManager._glDeleteBuffers(mBuffer);
+            mBuffer = 0;
+            mMappedAddress = MemoryUtil.NULL;
+        }
+    }
+
+    private record Fence(long sync, int start, int end) {
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2025 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.mc;
+
+import icyllis.modernui.annotation.RenderThread;
+import org.jetbrains.annotations.ApiStatus;
+
+import javax.annotation.Nonnull;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+import static org.lwjgl.opengl.GL33C.*;
+
+/**
+ * Measures GPU time of a section of commands with timestamp queries, results are
+ * collected a few frames later without stalling. Timestamps are used instead of
+ * GL_TIME_ELAPSED, since elapsed time queries cannot be nested with Minecraft's
+ * own timer queries.
+ */
+@ApiStatus.Internal
+@RenderThread
+public final class GpuTimer implements AutoCloseable {
+
+    // max number of sections in flight
+    private static final int LATENCY = 4;
+
+    private final String mName;
+
+    private int[] mQueries;
+    private final boolean[] mPending = new boolean[LATENCY];
+    private int mIndex;
+
+    private long mLastNanos;
+    private long mTotalNanos;
+    private long mSamples;
+
+    public GpuTimer(@Nonnull String name) {
+        mName = name;
+    }
+
+    public void begin() {
+        collect();
+        if (mQueries == null) {
+            mQueries = new int[LATENCY * 2];
+            glGenQueries(mQueries);
+        }
+        // if the GPU is too far behind, the old result is dropped
+        mPending[mIndex] = false;
+        glQueryCounter(mQueries[mIndex << 1], GL_TIMESTAMP);
+    }
+
+    public void end() {
+        glQueryCounter(mQueries[(mIndex << 1) + 1], GL_TIMESTAMP);
+        mPending[mIndex] = true;
+        mIndex = (mIndex + 1) % LATENCY;
+    }
+
+    private void collect() {
+        if (mQueries == null) {
+            return;
+        }
+        for (int i = 0; i < LATENCY; i++) {
+            if (!mPending[i]) {
+                continue;
+            }
+            int endQuery = mQueries[(i << 1) + 1];
+            if (glGetQueryObjecti(endQuery, GL_QUERY_RESULT_AVAILABLE) == GL_FALSE) {
+                continue;
+            }
+            long start = glGetQueryObjecti64(mQueries[i << 1], GL_QUERY_RESULT);
+            long end = glGetQueryObjecti64(endQuery, GL_QUERY_RESULT);
+            mPending[i] = false;
+            mLastNanos = end - start;
+            mTotalNanos += mLastNanos;
+            mSamples++;
+        }
+    }
+
+    public long getLastNanos() {
+        return mLastNanos;
+    }
+
+    public void dumpInfo(@Nonnull PrintWriter pw) {
+        pw.printf("  %s GPU Time: Last=%.3fms, Average=%.3fms, Samples=%d\n",
+                mName, mLastNanos / 1e6,
+                mSamples > 0 ? mTotalNanos / 1e6 / mSamples : 0.0, mSamples);
+    }
+
+    @Override
+    public void close() {
+        if (mQueries != null) {
+            glDeleteQueries(mQueries);
+            mQueries = null;
+            Arrays.fill(mPending, false);
+        }
+    }
+}
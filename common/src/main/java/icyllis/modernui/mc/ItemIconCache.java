@@ -0,0 +1,624 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2025 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.mc;
+
+import com.mojang.blaze3d.ProjectionType;
+import com.mojang.blaze3d.pipeline.RenderTarget;
+import com.mojang.blaze3d.pipeline.TextureTarget;
+import com.mojang.blaze3d.platform.Lighting;
+import com.mojang.blaze3d.systems.RenderSystem;
+import icyllis.arc3d.granite.GraniteImage;
+import icyllis.arc3d.opengl.GLTexture;
+import icyllis.modernui.annotation.RenderThread;
+import icyllis.modernui.annotation.UiThread;
+import icyllis.modernui.core.Core;
+import icyllis.modernui.core.Handler;
+import icyllis.modernui.graphics.*;
+import icyllis.modernui.text.TextUtils;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.gui.GuiGraphics;
+import net.minecraft.world.item.*;
+import org.jetbrains.annotations.ApiStatus;
+import org.joml.Matrix4f;
+import org.joml.Matrix4fStack;
+import org.lwjgl.system.MemoryUtil;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.PrintWriter;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.lwjgl.opengl.GL33C.*;
+
+/**
+ * Caches item icons rendered by Minecraft item renderer, so that they can be drawn
+ * as textured quads on a Modern UI canvas.
+ * <p>
+ * Each distinct (item, components, size) is rendered once on render thread into an
+ * off-screen target, then blitted into a page of an icon atlas, the pixels never leave
+ * video memory. Icon sizes are rounded up to power of two cells from {@link #MIN_CELL_SIZE}
+ * to {@link #MAX_CELL_SIZE}, and each cell size has its own pages, which are evicted in
+ * LRU order when full. The number of pages grows with the number of icons visible at
+ * the same time, see {@link #ensureCapacity(float, int)}.
+ * <p>
+ * Animated items (enchantment glint, clocks, compasses...) opt out of the cache, since
+ * a cached icon would be a stale snapshot. Nothing is drawn for them, they should be
+ * rendered directly through a {@link MinecraftSurfaceView}, as {@link ContainerMenuView}
+ * does. All icons are invalidated on resource reload.
+ */
+@ApiStatus.Internal
+public final class ItemIconCache {
+
+    public static final int MIN_CELL_SIZE = 16;
+    public static final int MAX_CELL_SIZE = 128;
+    public static final int PAGE_SIZE = 512;
+    /**
+     * The initial max number of pages for each cell size, each page takes 1MB of
+     * video memory.
+     */
+    public static final int DEFAULT_PAGES_PER_SIZE = 2;
+    /**
+     * The limit of pages for each cell size, see {@link #ensureCapacity(float, int)}.
+     */
+    public static final int MAX_PAGES_PER_SIZE = 16;
+
+    /**
+     * The max number of icons rendered per game frame.
+     */
+    public static final int MAX_RENDERS_PER_FRAME = 32;
+
+    private static final int STATE_PENDING = 0;
+    private static final int STATE_RENDERED = 1;
+    private static final int STATE_FAILED = 2;
+
+    private static final ItemIconCache sInstance = new ItemIconCache();
+
+    // UI thread
+    // cell size index -> size class
+    private final SizeClass[] mSizeClasses;
+    private final Rect mTmpSrc = new Rect();
+    private final RectF mTmpDst = new RectF();
+    private int mGeneration;
+
+    private final Set<Item> mAnimatedItems = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    // UI thread -> render thread
+    private final ConcurrentLinkedQueue<Request> mRequests = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Page> mRetiredPages = new ConcurrentLinkedQueue<>();
+    private volatile int mInvalidGeneration;
+
+    // render thread
+    private TextureTarget mScratchTarget;
+    private StreamBufferSource mBufferSource;
+    private int mCopyFramebuffer;
+
+    // statistics
+    private long mHits;
+    private long mMisses;
+    private long mEvictions;
+    private volatile long mRenders;
+    private volatile long mCopies;
+    private volatile long mFailures;
+
+    private ItemIconCache() {
+        int count = Integer.numberOfTrailingZeros(MAX_CELL_SIZE) - Integer.numberOfTrailingZeros(MIN_CELL_SIZE) + 1;
+        mSizeClasses = new SizeClass[count];
+        for (int i = 0; i < count; i++) {
+            mSizeClasses[i] = new SizeClass(MIN_CELL_SIZE << i);
+        }
+        mAnimatedItems.add(Items.CLOCK);
+        mAnimatedItems.add(Items.COMPASS);
+        mAnimatedItems.add(Items.RECOVERY_COMPASS);
+    }
+
+    public static ItemIconCache getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Marks an item as animated, its icon will not be cached.
+     * Items with enchantment glint are always animated.
+     */
+    public void addAnimatedItem(@Nonnull Item item) {
+        synchronized (mAnimatedItems) {
+            mAnimatedItems.add(item);
+        }
+    }
+
+    /**
+     * Returns whether the item should be rendered directly every frame instead of
+     * being drawn from the cache.
+     */
+    public boolean isAnimated(@Nonnull ItemStack item) {
+        if (item.hasFoil()) {
+            return true;
+        }
+        synchronized (mAnimatedItems) {
+            return mAnimatedItems.contains(item.getItem());
+        }
+    }
+
+    @Nonnull
+    private SizeClass getSizeClass(float size) {
+        int cellSize = Math.max(MIN_CELL_SIZE, Math.min(MAX_CELL_SIZE,
+                Integer.highestOneBit(Math.max((int) Math.ceil(size) - 1, 1)) << 1));
+        return mSizeClasses[Integer.numberOfTrailingZeros(cellSize) -
+                Integer.numberOfTrailingZeros(MIN_CELL_SIZE)];
+    }
+
+    /**
+     * Ensures that the given number of icons of the given size can be cached at the
+     * same time, so that icons visible at the same time don't evict each other.
+     * Views should call this with the number of visible slots before drawing them,
+     * the capacity is reset when the icons are invalidated.
+     *
+     * @param size  the size in pixels
+     * @param count the number of icons visible at the same time
+     */
+    @UiThread
+    public void ensureCapacity(float size, int count) {
+        if (size <= 0 || count <= 0) {
+            return;
+        }
+        SizeClass sc = getSizeClass(size);
+        // one more page for the icons scrolled in and out
+        int pages = Math.min(MAX_PAGES_PER_SIZE,
+                (count + sc.mCellsPerPage - 1) / sc.mCellsPerPage + 1);
+        sc.mMaxPages = Math.max(sc.mMaxPages, pages);
+    }
+
+    /**
+     * Draws an item icon, the icon will be rendered in subsequent frames if it's not
+     * cached, and nothing is drawn for the current frame. Nothing is drawn for animated
+     * items, see {@link #isAnimated(ItemStack)}.
+     *
+     * @param item the item stack to draw
+     * @param x    the center x pos
+     * @param y    the center y pos
+     * @param size the size in pixels
+     * @param seed the random seed for item model
+     */
+    @UiThread
+    public void drawItem(@Nonnull Canvas canvas, @Nonnull ItemStack item,
+                         float x, float y, float size, int seed) {
+        if (item.isEmpty() || size <= 0 || isAnimated(item)) {
+            return;
+        }
+        SizeClass sc = getSizeClass(size);
+
+        Entry entry = sc.mEntries.get(new Key(item, ItemStack.hashItemAndComponents(item)));
+        if (entry == null) {
+            mMisses++;
+            entry = sc.allocate(item);
+            if (entry == null) {
+                return;
+            }
+            request(sc, entry, seed);
+        } else {
+            mHits++;
+        }
+        if (entry.mState != STATE_RENDERED) {
+            // not yet rendered, or failed until invalidated
+            return;
+        }
+        Page page = sc.mPages.get(entry.mCell >> 16);
+        int cellSize = sc.mCellSize;
+        int cell = entry.mCell & 0xFFFF;
+        int cellsPerRow = PAGE_SIZE / cellSize;
+        int left = (cell % cellsPerRow) * cellSize;
+        int top = (cell / cellsPerRow) * cellSize;
+        mTmpSrc.set(left, top, left + cellSize, top + cellSize);
+        float half = size * 0.5f;
+        mTmpDst.set(x - half, y - half, x + half, y + half);
+        canvas.drawImage(page.mImage, mTmpSrc, mTmpDst, null);
+    }
+
+    @UiThread
+    private void request(@Nonnull SizeClass sc, @Nonnull Entry entry, int seed) {
+        int cellSize = sc.mCellSize;
+        int cell = entry.mCell & 0xFFFF;
+        int cellsPerRow = PAGE_SIZE / cellSize;
+        Request request = new Request(entry.mKey.stack(), cellSize, seed, entry, mGeneration,
+                sc.mPages.get(entry.mCell >> 16),
+                (cell % cellsPerRow) * cellSize, (cell / cellsPerRow) * cellSize);
+        entry.mRequest = request;
+        mRequests.add(request);
+    }
+
+    /**
+     * Invalidates all the icons, can be called from any thread. The scratch target
+     * and stream buffers are also released if this is called on render thread,
+     * they will be recreated by the next render.
+     */
+    public void invalidate() {
+        Handler handler = Core.getUiHandlerAsync();
+        if (handler != null) {
+            handler.post(this::clear);
+        }
+        if (Core.isOnRenderThread()) {
+            releaseScratch();
+        }
+    }
+
+    @RenderThread
+    private void releaseScratch() {
+        if (mScratchTarget != null) {
+            mScratchTarget.destroyBuffers();
+            mScratchTarget = null;
+        }
+        if (mBufferSource != null) {
+            mBufferSource.close();
+            mBufferSource = null;
+        }
+        if (mCopyFramebuffer != 0) {
+            glDeleteFramebuffers(mCopyFramebuffer);
+            mCopyFramebuffer = 0;
+        }
+    }
+
+    /**
+     * Returns the buffer source shared by icon rendering and the items rendered
+     * directly on a {@link MinecraftSurfaceView}, it's recreated after invalidation.
+     * Draw order between render types is not preserved, see {@link StreamBufferSource}.
+     */
+    @RenderThread
+    @Nonnull
+    public StreamBufferSource getBufferSource() {
+        if (mBufferSource == null) {
+            mBufferSource = new StreamBufferSource();
+        }
+        return mBufferSource;
+    }
+
+    @UiThread
+    private void clear() {
+        mInvalidGeneration = ++mGeneration;
+        for (SizeClass sc : mSizeClasses) {
+            sc.clear();
+        }
+    }
+
+    /**
+     * Renders pending icons, called on render thread before UI frame is composited.
+     * Minecraft main target will be bound after this method returns.
+     */
+    @RenderThread
+    public void renderPending(@Nonnull Minecraft minecraft) {
+        // pages are closed here, they may be the destination of a blit
+        Page retired;
+        while ((retired = mRetiredPages.poll()) != null) {
+            retired.close();
+        }
+        if (mRequests.isEmpty()) {
+            return;
+        }
+        final int invalidGeneration = mInvalidGeneration;
+        final ArrayList<Request> batch = new ArrayList<>();
+        // shelf packing into the scratch target
+        int shelfX = 0, shelfY = 0, shelfHeight = 0;
+        Request request;
+        while (batch.size() < MAX_RENDERS_PER_FRAME && (request = mRequests.peek()) != null) {
+            if (request.mGeneration < invalidGeneration) {
+                mRequests.poll();
+                continue;
+            }
+            // a page is instantiated when the UI frame that created it is executed,
+            // keep the request until then
+            GLTexture texture = request.mPage.getTexture();
+            if (texture == null) {
+                break;
+            }
+            int cellSize = request.mCellSize;
+            if (shelfX + cellSize > PAGE_SIZE) {
+                shelfX = 0;
+                shelfY += shelfHeight;
+                shelfHeight = 0;
+            }
+            if (shelfY + cellSize > PAGE_SIZE) {
+                break;
+            }
+            mRequests.poll();
+            request.mTexture = texture;
+            request.mScratchX = shelfX;
+            request.mScratchY = shelfY;
+            shelfX += cellSize;
+            shelfHeight = Math.max(shelfHeight, cellSize);
+            batch.add(request);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        if (mScratchTarget == null) {
+            mScratchTarget = new TextureTarget(PAGE_SIZE, PAGE_SIZE, true);
+            mCopyFramebuffer = glGenFramebuffers();
+        }
+        // icons do not overlap, so grouping by render type is fine
+        StreamBufferSource bufferSource = getBufferSource();
+        RenderTarget target = mScratchTarget;
+        target.setClearColor(0, 0, 0, 0);
+        target.clear();
+        target.bindWrite(true);
+
+        RenderSystem.backupProjectionMatrix();
+        RenderSystem.setProjectionMatrix(new Matrix4f().setOrtho(0, PAGE_SIZE, PAGE_SIZE, 0,
+                1000, 21000), ProjectionType.ORTHOGRAPHIC);
+        Matrix4fStack mvs = RenderSystem.getModelViewStack();
+        mvs.pushMatrix();
+        mvs.translation(0, 0, -11000);
+        Lighting.setupFor3DItems();
+
+        boolean success = false;
+        try {
+            GuiGraphics gr = new GuiGraphics(minecraft, bufferSource);
+            for (Request r : batch) {
+                float scale = r.mCellSize / 16f;
+                gr.pose().pushPose();
+                gr.pose().translate(r.mScratchX, r.mScratchY, 0);
+                gr.pose().scale(scale, scale, 1);
+                gr.renderItem(r.mStack, 0, 0, r.mSeed);
+                gr.pose().popPose();
+            }
+            gr.flush();
+            bufferSource.endFrame();
+            mRenders += batch.size();
+
+            // blit into the pages, the scratch target is bottom-up and pages are top-down,
+            // so the rows are flipped by the blit
+            RenderSystem.disableScissor();
+            glBindFramebuffer(GL_READ_FRAMEBUFFER, target.frameBufferId);
+            glBindFramebuffer(GL_DRAW_FRAMEBUFFER, mCopyFramebuffer);
+            int attached = 0;
+            for (Request r : batch) {
+                int texture = r.mTexture.getHandle();
+                if (texture != attached) {
+                    glFramebufferTexture2D(GL_DRAW_FRAMEBUFFER, GL_COLOR_ATTACHMENT0,
+                            GL_TEXTURE_2D, texture, 0);
+                    attached = texture;
+                }
+                int srcBottom = PAGE_SIZE - r.mScratchY - r.mCellSize;
+                glBlitFramebuffer(r.mScratchX, srcBottom,
+                        r.mScratchX + r.mCellSize, srcBottom + r.mCellSize,
+                        r.mDstX, r.mDstY + r.mCellSize,
+                        r.mDstX + r.mCellSize, r.mDstY,
+                        GL_COLOR_BUFFER_BIT, GL_NEAREST);
+            }
+            glFramebufferTexture2D(GL_DRAW_FRAMEBUFFER, GL_COLOR_ATTACHMENT0,
+                    GL_TEXTURE_2D, 0, 0);
+            mCopies += batch.size();
+            success = true;
+        } finally {
+            mvs.popMatrix();
+            RenderSystem.restoreProjectionMatrix();
+            minecraft.getMainRenderTarget().bindWrite(true);
+            if (!success) {
+                mFailures += batch.size();
+            }
+            // the requests must be cleared even if rendering threw
+            final boolean rendered = success;
+            Handler handler = Core.getUiHandlerAsync();
+            if (handler != null) {
+                handler.post(() -> onRendered(batch, rendered));
+            }
+        }
+    }
+
+    @UiThread
+    private void onRendered(@Nonnull ArrayList<Request> batch, boolean rendered) {
+        boolean changed = false;
+        for (Request r : batch) {
+            Entry entry = r.mEntry;
+            if (r.mGeneration != mGeneration || entry.mRequest != r) {
+                // evicted or invalidated
+                continue;
+            }
+            entry.mRequest = null;
+            if (rendered) {
+                entry.mState = STATE_RENDERED;
+                changed = true;
+            } else {
+                // not requested again until evicted or invalidated
+                entry.mState = STATE_FAILED;
+            }
+        }
+        if (changed) {
+            UIManager.getInstance().getDecorView().invalidate();
+        }
+    }
+
+    public void dumpInfo(@Nonnull PrintWriter pw) {
+        int entries = 0, pages = 0;
+        for (SizeClass sc : mSizeClasses) {
+            entries += sc.mEntries.size();
+            pages += sc.mPages.size();
+        }
+        pw.printf("ItemIconCache: Icons=%d, Pages=%d, Memory=%s, Hits=%d, Misses=%d, Evictions=%d, " +
+                        "Renders=%d, Copies=%d, Failures=%d\n",
+                entries, pages, TextUtils.binaryCompact((long) pages * PAGE_SIZE * PAGE_SIZE * 4),
+                mHits, mMisses, mEvictions, mRenders, mCopies, mFailures);
+        StreamBufferSource bufferSource = mBufferSource;
+        if (bufferSource != null) {
+            bufferSource.dumpInfo(pw);
+        }
+    }
+
+    /**
+     * Identifies an icon within a size class. The lookup key references the given
+     * stack, the stored key references a copy.
+     */
+    private record Key(ItemStack stack, int hash) {
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key key && hash == key.hash &&
+                    ItemStack.isSameItemSameComponents(stack, key.stack);
+        }
+    }
+
+    private static final class Entry {
+
+        final Key mKey;
+        // page index << 16 | cell index
+        int mCell;
+        int mState = STATE_PENDING;
+        // in-flight request, or null
+        Request mRequest;
+
+        Entry(Key key, int cell) {
+            mKey = key;
+            mCell = cell;
+        }
+    }
+
+    private static final class Request {
+
+        final ItemStack mStack;
+        final int mCellSize;
+        final int mSeed;
+        final Entry mEntry;
+        final int mGeneration;
+        // the destination cell
+        final Page mPage;
+        final int mDstX;
+        final int mDstY;
+
+        // render thread
+        GLTexture mTexture;
+        int mScratchX;
+        int mScratchY;
+
+        Request(ItemStack stack, int cellSize, int seed, Entry entry, int generation,
+                Page page, int dstX, int dstY) {
+            mStack = stack;
+            mCellSize = cellSize;
+            mSeed = seed;
+            mEntry = entry;
+            mGeneration = generation;
+            mPage = page;
+            mDstX = dstX;
+            mDstY = dstY;
+        }
+    }
+
+    private static final class Page {
+
+        // the cells are written by blits on render thread
+        final Image mImage;
+
+        private Page(Image image) {
+            mImage = image;
+        }
+
+        @Nullable
+        static Page create() {
+            // cleared once, never uploaded again
+            Bitmap pixels = Bitmap.createBitmap(PAGE_SIZE, PAGE_SIZE, Bitmap.Format.RGBA_8888);
+            MemoryUtil.memSet(pixels.getAddress(), 0, (long) pixels.getRowBytes() * PAGE_SIZE);
+            Image image = Image.createTextureFromBitmap(pixels);
+            pixels.close();
+            return image != null ? new Page(image) : null;
+        }
+
+        /**
+         * Returns the backing texture, or null if it's not instantiated yet.
+         */
+        @RenderThread
+        @Nullable
+        GLTexture getTexture() {
+            if (mImage.getNativeImage() instanceof GraniteImage image &&
+                    image.getImageViewProxy().getImage() instanceof GLTexture texture) {
+                return texture;
+            }
+            return null;
+        }
+
+        @RenderThread
+        void close() {
+            mImage.close();
+        }
+    }
+
+    private final class SizeClass {
+
+        final int mCellSize;
+        final int mCellsPerPage;
+        final ArrayList<Page> mPages = new ArrayList<>();
+        // access order is the LRU order
+        final LinkedHashMap<Key, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+        int mNextCell;
+        int mMaxPages = DEFAULT_PAGES_PER_SIZE;
+
+        SizeClass(int cellSize) {
+            mCellSize = cellSize;
+            int cellsPerRow = PAGE_SIZE / cellSize;
+            mCellsPerPage = cellsPerRow * cellsPerRow;
+        }
+
+        @Nullable
+        Entry allocate(@Nonnull ItemStack item) {
+            int cell;
+            int capacity = mPages.size() * mCellsPerPage;
+            if (mNextCell < capacity) {
+                cell = mNextCell++;
+            } else if (mPages.size() < mMaxPages) {
+                Page page = Page.create();
+                if (page == null) {
+                    return null;
+                }
+                mPages.add(page);
+                cell = mNextCell++;
+            } else {
+                // evict the least recently used
+                Iterator<Entry> it = mEntries.values().iterator();
+                if (!it.hasNext()) {
+                    return null;
+                }
+                Entry eldest = it.next();
+                it.remove();
+                eldest.mRequest = null;
+                mEvictions++;
+                int c = eldest.mCell;
+                cell = (c >> 16) * mCellsPerPage + (c & 0xFFFF);
+            }
+            ItemStack copy = item.copyWithCount(1);
+            Key key = new Key(copy, ItemStack.hashItemAndComponents(copy));
+            Entry entry = new Entry(key,
+                    (cell / mCellsPerPage) << 16 | (cell % mCellsPerPage));
+            mEntries.put(key, entry);
+            return entry;
+        }
+
+        void clear() {
+            for (Entry entry : mEntries.values()) {
+                entry.mRequest = null;
+            }
+            mEntries.clear();
+            mRetiredPages.addAll(mPages);
+            mPages.clear();
+            mNextCell = 0;
+            mMaxPages = DEFAULT_PAGES_PER_SIZE;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2025 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.mc;
+
+import io.netty.buffer.ByteBuf;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A message to be sent through a {@link MessageChannel}, the data is written to a
+ * pooled buffer. After calling a send method, you should not touch the buffer anymore.
+ *
+ * @see MessageChannel#buffer(int)
+ */
+public class MessageBuffer extends FriendlyByteBuf {
+
+    protected final MessageChannel<?> mChannel;
+
+    protected MessageBuffer(@Nonnull MessageChannel<?> channel, @Nonnull ByteBuf source) {
+        super(source);
+        mChannel = channel;
+    }
+
+    /**
+     * Send the message to server.
+     * <p>
+     * This is the only method to be called on the client. Message data cannot exceed 1 MiB,
+     * large messages are sent in fragments.
+     */
+    public void sendToServer() {
+        mChannel.sendToServer(this);
+    }
+
+    /**
+     * Send the message to a player.
+     * <p>
+     * Message data cannot exceed 16 MiB, large messages are sent in fragments.
+     *
+     * @param player the player
+     */
+    public void sendToPlayer(@Nonnull ServerPlayer player) {
+        mChannel.sendToPlayer(player, this);
+    }
+
+    /**
+     * Send the message to all specific players.
+     *
+     * @param players players on server
+     */
+    @SuppressWarnings("unchecked")
+    public void sendToPlayers(@Nonnull Iterable<? extends Player> players) {
+        mChannel.sendToPlayers((Iterable<? extends ServerPlayer>) players, this);
+    }
+
+    /**
+     * Send the message to all players on the server.
+     */
+    public void sendToAll(@Nonnull MinecraftServer server) {
+        mChannel.sendToPlayers(server.getPlayerList().getPlayers(), this);
+    }
+
+    /**
+     * Send the message to all players in the specified dimension.
+     *
+     * @param dimension dimension that players in
+     */
+    public void sendToDimension(@Nonnull MinecraftServer server, @Nonnull ResourceKey<Level> dimension) {
+        List<ServerPlayer> players = new ArrayList<>();
+        for (ServerPlayer player : server.getPlayerList().getPlayers()) {
+            if (player.level().dimension() == dimension) {
+                players.add(player);
+            }
+        }
+        mChannel.sendToPlayers(players, this);
+    }
+
+    /**
+     * Send the message to all players nearby a point with specified radius in specified dimension.
+     *
+     * @param excluded  the player excluded from broadcasting
+     * @param x         target point x
+     * @param y         target point y
+     * @param z         target point z
+     * @param radius    radius to target point
+     * @param dimension dimension that target players in
+     */
+    public void sendToNear(@Nonnull MinecraftServer server, @Nullable Player excluded,
+                           double x, double y, double z, double radius,
+                           @Nonnull ResourceKey<Level> dimension) {
+        List<ServerPlayer> players = new ArrayList<>();
+        for (ServerPlayer player : server.getPlayerList().getPlayers()) {
+            if (player != excluded && player.level().dimension() == dimension &&
+                    player.distanceToSqr(x, y, z) < radius * radius) {
+                players.add(player);
+            }
+        }
+        mChannel.sendToPlayers(players, this);
+    }
+
+    /**
+     * Send the message to all players tracking the chunk where the specified entity is
+     * located.
+     *
+     * @param entity the entity is tracking
+     */
+    public void sendToTrackingEntity(@Nonnull Entity entity) {
+        mChannel.sendToPlayers(getTrackingPlayers(entity), this);
+    }
+
+    /**
+     * Send the message to all players tracking the chunk where the specified entity is
+     * located, and also send the message to the entity if it is a player.
+     *
+     * @param entity the entity is tracking
+     */
+    public void sendToTrackingAndSelf(@Nonnull Entity entity) {
+        List<ServerPlayer> players = getTrackingPlayers(entity);
+        if (entity instanceof ServerPlayer self && !players.contains(self)) {
+            players = new ArrayList<>(players);
+            players.add(self);
+        }
+        mChannel.sendToPlayers(players, this);
+    }
+
+    /**
+     * Send the message to all players who are tracking the specified chunk.
+     *
+     * @param level the server level
+     * @param pos   the chunk pos
+     */
+    public void sendToTrackingChunk(@Nonnull ServerLevel level, @Nonnull ChunkPos pos) {
+        mChannel.sendToPlayers(level.getChunkSource().chunkMap.getPlayers(pos, false), this);
+    }
+
+    @Nonnull
+    private static List<ServerPlayer> getTrackingPlayers(@Nonnull Entity entity) {
+        return ((ServerLevel) entity.level()).getChunkSource().chunkMap
+                .getPlayers(entity.chunkPosition(), false);
+    }
+}
@@ -0,0 +1,800 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2025 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.mc;
+
+import com.mojang.authlib.GameProfile;
+import io.netty.buffer.*;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.VarInt;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.util.thread.BlockableEventLoop;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.*;
+
+import static icyllis.modernui.mc.ModernUIMod.LOGGER;
+
+/**
+ * A plugin message channel that batches indexed messages, loader independent.
+ * <p>
+ * Messages sent to the same connection in a tick are coalesced into one custom
+ * payload, which is sent at the end of the tick, or on {@link #flush(ServerPlayer)}.
+ * Each message is a frame of [VarInt length][unsigned short index][body] in the
+ * payload. Message buffers are pooled direct buffers, while frames are written
+ * straight into an unpooled heap buffer that is sent as the payload, since the
+ * ownership of the payload is transferred to the network stack and it may not be
+ * released.
+ * <p>
+ * A message that does not fit into a payload, or is larger than the compression
+ * threshold, is sent as a transfer of sequence-numbered fragments, each in its own
+ * payload, optionally deflated. The receiver reassembles at most one transfer per
+ * connection, bounded by {@link #MAX_CLIENTBOUND_MESSAGE} or {@link #MAX_SERVERBOUND_MESSAGE},
+ * and the total size of serverbound transfers in progress is also bounded.
+ * <p>
+ * Messages between the integrated server and its owner's client are passed as is,
+ * without framing or copying.
+ * <p>
+ * The loader provides the transport by implementing {@link #sendPayload(ServerPlayer, FriendlyByteBuf)},
+ * calls {@link #receive(FriendlyByteBuf, ServerPlayer, BlockableEventLoop, Object)} for received
+ * payloads, and calls {@link #flushAllServer()} and {@link #flushAllClient()} at the end of ticks.
+ * This class is side-neutral, anything that needs the client is done through
+ * {@link #getClientLooper()} and {@link #getLocalServer()}, which the loader implements
+ * in client-only code.
+ *
+ * @param <C> the loader specific context of received payloads
+ */
+public abstract class MessageChannel<C> {
+
+    /**
+     * Max payload size of server-to-client custom payloads.
+     */
+    public static final int MAX_CLIENTBOUND_PAYLOAD = 1_043_200;
+    /**
+     * Max payload size of client-to-server custom payloads.
+     */
+    public static final int MAX_SERVERBOUND_PAYLOAD = 32_600;
+
+    /**
+     * Max size of a server-to-client message, sent in fragments if necessary.
+     */
+    public static final int MAX_CLIENTBOUND_MESSAGE = 16 << 20;
+    /**
+     * Max size of a client-to-server message, sent in fragments if necessary.
+     */
+    public static final int MAX_SERVERBOUND_MESSAGE = 1 << 20;
+    // max total size of serverbound transfers in progress of all channels
+    private static final int MAX_SERVERBOUND_REASSEMBLY = 16 << 20;
+
+    // the first byte of payloads
+    private static final int TYPE_BATCH = 0;
+    private static final int TYPE_FRAGMENT = 1;
+
+    private static final int FLAG_DEFLATED = 0x1;
+
+    private static final AtomicLong sServerboundReassembly = new AtomicLong();
+
+    private static final List<MessageChannel<?>> sChannels = new CopyOnWriteArrayList<>();
+
+    protected final ResourceLocation mName;
+
+    // pending messages to clients, locked
+    private final IdentityHashMap<ServerPlayer, Batch> mServerBatches = new IdentityHashMap<>();
+    // pending messages to the server, locked
+    private final Batch mClientBatch = new Batch();
+
+    // transfers in progress, keyed by the sender, or this for the server, locked
+    private final HashMap<Object, Transfer> mTransfers = new HashMap<>();
+
+    // messages not smaller than this are deflated, or -1 to disable
+    private volatile int mCompressionThreshold = -1;
+
+    private final Metrics mMetrics = new Metrics();
+
+    protected MessageChannel(@Nonnull ResourceLocation name) {
+        mName = name;
+        sChannels.add(this);
+    }
+
+    @Nonnull
+    public ResourceLocation getName() {
+        return mName;
+    }
+
+    /**
+     * Sets the minimum size of messages to be deflated. This is disabled by default,
+     * since Minecraft already compresses packets on remote connections, enable it only
+     * if the data is highly compressible and the message would otherwise be split into
+     * many fragments.
+     *
+     * @param threshold the threshold in bytes, or -1 to disable
+     */
+    public void setCompressionThreshold(int threshold) {
+        mCompressionThreshold = threshold;
+    }
+
+    /**
+     * Allocates a pooled buffer to write indexed message data. The message index is
+     * used to identify the type of message, which also affects your network protocol.
+     *
+     * @param index the message index used on the reception side, ranged from 0 to 65535
+     * @return a byte buf to write the message body
+     */
+    @Nonnull
+    public MessageBuffer buffer(int index) {
+        assert (index >= 0 && index <= 0xFFFF);
+        MessageBuffer buffer = newBuffer(PooledByteBufAllocator.DEFAULT.directBuffer());
+        buffer.writeShort(index);
+        return buffer;
+    }
+
+    @Nonnull
+    protected MessageBuffer newBuffer(@Nonnull ByteBuf source) {
+        return new MessageBuffer(this, source);
+    }
+
+    /**
+     * Sends the message to the server, this takes the ownership of the message.
+     * Called on client side.
+     */
+    public void sendToServer(@Nonnull ByteBuf message) {
+        synchronized (mClientBatch) {
+            if (getLocalServer() != null) {
+                mClientBatch.addLocal(message);
+                return;
+            }
+            try {
+                append(mClientBatch, null, message, MAX_SERVERBOUND_PAYLOAD);
+            } finally {
+                message.release();
+            }
+        }
+    }
+
+    /**
+     * Sends the message to the given players, this takes the ownership of the message.
+     * Called on server side.
+     */
+    public void sendToPlayers(@Nonnull Iterable<? extends ServerPlayer> players, @Nonnull ByteBuf message) {
+        try {
+            synchronized (mServerBatches) {
+                for (ServerPlayer player : players) {
+                    enqueue(player, message);
+                }
+            }
+        } finally {
+            message.release();
+        }
+    }
+
+    /**
+     * Sends the message to the given player, this takes the ownership of the message.
+     * Called on server side.
+     */
+    public void sendToPlayer(@Nonnull ServerPlayer player, @Nonnull ByteBuf message) {
+        sendToPlayers(Collections.singletonList(player), message);
+    }
+
+    private void enqueue(@Nonnull ServerPlayer player, @Nonnull ByteBuf message) {
+        Batch batch = mServerBatches.computeIfAbsent(player, __ -> new Batch());
+        if (player.server.isSingleplayerOwner(player.getGameProfile())) {
+            batch.addLocal(message.retainedDuplicate());
+        } else {
+            append(batch, player, message, MAX_CLIENTBOUND_PAYLOAD);
+        }
+    }
+
+    private void append(@Nonnull Batch batch, @Nullable ServerPlayer player,
+                        @Nonnull ByteBuf message, int maxPayload) {
+        final int length = message.readableBytes();
+        final int maxMessage = player != null ? MAX_CLIENTBOUND_MESSAGE : MAX_SERVERBOUND_MESSAGE;
+        if (length > maxMessage) {
+            throw new IllegalArgumentException("Message size " + length + " exceeds " + maxMessage);
+        }
+        mMetrics.mMessagesSent.increment();
+        final int frameSize = VarInt.getByteSize(length) + length;
+        final int threshold = mCompressionThreshold;
+        if (1 + frameSize > maxPayload || (threshold >= 0 && length >= threshold)) {
+            // keep the order of messages
+            if (batch.mBuffer != null) {
+                sendBatch(batch, player);
+            }
+            sendTransfer(player, message, maxPayload, threshold >= 0 && length >= threshold);
+            return;
+        }
+        if (batch.mBuffer != null && batch.mBuffer.readableBytes() + frameSize > maxPayload) {
+            sendBatch(batch, player);
+        }
+        if (batch.mBuffer == null) {
+            // this becomes the payload, it grows up to the max payload size
+            batch.mBuffer = Unpooled.buffer(Math.min(Math.max(1 + frameSize, 256), maxPayload), maxPayload);
+            batch.mBuffer.writeByte(TYPE_BATCH);
+        }
+        writeFrame(batch.mBuffer, message);
+    }
+
+    private void sendBatch(@Nonnull Batch batch, @Nullable ServerPlayer player) {
+        ByteBuf payload = batch.mBuffer;
+        batch.mBuffer = null;
+        send(player, payload);
+    }
+
+    private void send(@Nullable ServerPlayer player, @Nonnull ByteBuf payload) {
+        mMetrics.mPayloadsSent.increment();
+        mMetrics.mBytesSent.add(payload.readableBytes());
+        sendPayload(player, new FriendlyByteBuf(payload));
+    }
+
+    /*
+     * Fragment payload: [byte TYPE_FRAGMENT][VarInt sequence]
+     * and the first fragment: [byte flags][VarInt transfer size][VarInt message size]
+     * followed by the data.
+     */
+    private void sendTransfer(@Nullable ServerPlayer player, @Nonnull ByteBuf message,
+                              int maxPayload, boolean compress) {
+        final int length = message.readableBytes();
+        ByteBuf data = message;
+        int flags = 0;
+        if (compress) {
+            ByteBuf deflated = deflate(message);
+            if (deflated != null) {
+                data = deflated;
+                flags |= FLAG_DEFLATED;
+                mMetrics.mDeflatedMessages.increment();
+                mMetrics.mBytesBeforeDeflation.add(length);
+                mMetrics.mBytesAfterDeflation.add(deflated.readableBytes());
+            }
+        }
+        try {
+            final int total = data.readableBytes();
+            int offset = 0;
+            int sequence = 0;
+            do {
+                int header = 1 + VarInt.getByteSize(sequence);
+                if (sequence == 0) {
+                    header += 1 + VarInt.getByteSize(total) + VarInt.getByteSize(length);
+                }
+                int size = Math.min(total - offset, maxPayload - header);
+                ByteBuf payload = Unpooled.buffer(header + size, header + size);
+                payload.writeByte(TYPE_FRAGMENT);
+                VarInt.write(payload, sequence);
+                if (sequence == 0) {
+                    payload.writeByte(flags);
+                    VarInt.write(payload, total);
+                    VarInt.write(payload, length);
+                }
+                payload.writeBytes(data, data.readerIndex() + offset, size);
+                offset += size;
+                sequence++;
+                mMetrics.mFragmentsSent.increment();
+                send(player, payload);
+            } while (offset < total);
+        } finally {
+            if (data != message) {
+                data.release();
+            }
+        }
+    }
+
+    /**
+     * Sends pending messages to the given player immediately, use this if the messages
+     * must arrive before vanilla packets sent later in this tick.
+     */
+    public void flush(@Nonnull ServerPlayer player) {
+        synchronized (mServerBatches) {
+            Batch batch = mServerBatches.remove(player);
+            if (batch != null) {
+                flush(batch, player);
+            }
+        }
+    }
+
+    /**
+     * Sends pending messages to all players.
+     */
+    public void flushServer() {
+        cleanupTransfers();
+        synchronized (mServerBatches) {
+            if (mServerBatches.isEmpty()) {
+                return;
+            }
+            for (var it = mServerBatches.entrySet().iterator(); it.hasNext(); ) {
+                var e = it.next();
+                it.remove();
+                flush(e.getValue(), e.getKey());
+            }
+        }
+    }
+
+    private void flush(@Nonnull Batch batch, @Nonnull ServerPlayer player) {
+        if (player.hasDisconnected()) {
+            batch.release();
+            return;
+        }
+        if (batch.mBuffer != null) {
+            sendBatch(batch, player);
+        }
+        if (batch.mLocal != null) {
+            dispatchLocalClient(batch.mLocal);
+            batch.mLocal = null;
+        }
+    }
+
+    /**
+     * Sends pending messages to the server.
+     */
+    public void flushClient() {
+        synchronized (mClientBatch) {
+            if (mClientBatch.isEmpty()) {
+                return;
+            }
+            if (getClientLooper() == null) {
+                // disconnected
+                mClientBatch.release();
+                return;
+            }
+            if (mClientBatch.mBuffer != null) {
+                sendBatch(mClientBatch, null);
+            }
+            if (mClientBatch.mLocal != null) {
+                dispatchLocalServer(mClientBatch.mLocal);
+                mClientBatch.mLocal = null;
+            }
+        }
+    }
+
+    /**
+     * Called at the end of server ticks.
+     */
+    public static void flushAllServer() {
+        for (MessageChannel<?> channel : sChannels) {
+            channel.flushServer();
+        }
+    }
+
+    /**
+     * Called at the end of client ticks.
+     */
+    public static void flushAllClient() {
+        for (MessageChannel<?> channel : sChannels) {
+            channel.flushClient();
+        }
+    }
+
+    // server thread, the client handler only consumes the payload
+    private void dispatchLocalClient(@Nonnull List<ByteBuf> messages) {
+        final BlockableEventLoop<?> looper = getClientLooper();
+        for (ByteBuf message : messages) {
+            if (looper != null) {
+                dispatch(new FriendlyByteBuf(message), null, looper, null);
+            } else {
+                message.release();
+            }
+        }
+    }
+
+    // client thread, find the owner on the server thread
+    private void dispatchLocalServer(@Nonnull List<ByteBuf> messages) {
+        final MinecraftServer server = getLocalServer();
+        if (server == null) {
+            messages.forEach(ByteBuf::release);
+            return;
+        }
+        server.execute(() -> {
+            GameProfile owner = server.getSingleplayerProfile();
+            ServerPlayer player = owner != null ? server.getPlayerList().getPlayer(owner.getId()) : null;
+            for (ByteBuf message : messages) {
+                if (player != null) {
+                    dispatch(new FriendlyByteBuf(message), player, server, null);
+                } else {
+                    message.release();
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the client event loop if the client is connected to a server, called on
+     * client side, or on the integrated server thread. The loader implements this in
+     * client-only code, it's never called on dedicated servers.
+     *
+     * @return the client event loop, or null if disconnected
+     */
+    @Nullable
+    protected abstract BlockableEventLoop<?> getClientLooper();
+
+    /**
+     * Returns the integrated server if the client is connected to it, called on client
+     * side. The loader implements this in client-only code, it's never called on
+     * dedicated servers.
+     *
+     * @return the integrated server, or null if connected to a remote server
+     */
+    @Nullable
+    protected abstract MinecraftServer getLocalServer();
+
+    /**
+     * Handles a received payload, called by the loader.
+     *
+     * @param payload the payload, it's not released by this method
+     * @param sender  the sender on server side, or null on client side
+     * @param looper  the game event loop
+     * @param source  the loader specific context, passed to handlers
+     */
+    protected final void receive(@Nonnull FriendlyByteBuf payload, @Nullable ServerPlayer sender,
+                                 @Nonnull BlockableEventLoop<?> looper, @Nullable C source) {
+        mMetrics.mPayloadsReceived.increment();
+        mMetrics.mBytesReceived.add(payload.readableBytes());
+        if (!payload.isReadable()) {
+            return;
+        }
+        final int type = payload.readUnsignedByte();
+        if (type == TYPE_FRAGMENT) {
+            receiveFragment(payload, sender, looper, source);
+            return;
+        }
+        if (type != TYPE_BATCH) {
+            LOGGER.warn("Received unknown payload type {} on channel {}", type, mName);
+            return;
+        }
+        while (payload.isReadable()) {
+            final int length = VarInt.read(payload);
+            final int start = payload.readerIndex();
+            if (length > payload.readableBytes()) {
+                LOGGER.warn("Received malformed message on channel {}", mName);
+                return;
+            }
+            payload.readerIndex(start + length);
+            // retained, so handlers can retain it in the same way as the whole payload
+            dispatch(new FriendlyByteBuf(payload.retainedSlice(start, length)), sender, looper, source);
+        }
+    }
+
+    private void receiveFragment(@Nonnull ByteBuf payload, @Nullable ServerPlayer sender,
+                                 @Nonnull BlockableEventLoop<?> looper, @Nullable C source) {
+        mMetrics.mFragmentsReceived.increment();
+        final Object key = sender != null ? sender : this;
+        final int sequence = VarInt.read(payload);
+        final Transfer transfer;
+        synchronized (mTransfers) {
+            if (sequence == 0) {
+                dropTransfer(key);
+                final int flags = payload.readUnsignedByte();
+                final int total = VarInt.read(payload);
+                final int length = VarInt.read(payload);
+                final int maxMessage = sender != null ? MAX_SERVERBOUND_MESSAGE : MAX_CLIENTBOUND_MESSAGE;
+                if (total < 0 || length < 0 || total > maxMessage || length > maxMessage ||
+                        ((flags & FLAG_DEFLATED) == 0 && total != length)) {
+                    LOGGER.warn("Received oversized transfer on channel {}", mName);
+                    mMetrics.mTransfersDropped.increment();
+                    return;
+                }
+                if (sender != null &&
+                        sServerboundReassembly.addAndGet(total) > MAX_SERVERBOUND_REASSEMBLY) {
+                    sServerboundReassembly.addAndGet(-total);
+                    mMetrics.mTransfersDropped.increment();
+                    return;
+                }
+                mTransfers.put(key, new Transfer(flags, total, length, sender != null));
+            }
+            transfer = mTransfers.get(key);
+            if (transfer == null) {
+                // the first fragment was dropped
+                return;
+            }
+            if (transfer.mNextSequence != sequence ||
+                    payload.readableBytes() > transfer.mData.writableBytes()) {
+                LOGGER.warn("Received out-of-order fragment on channel {}", mName);
+                dropTransfer(key);
+                mMetrics.mTransfersDropped.increment();
+                return;
+            }
+            transfer.mData.writeBytes(payload);
+            transfer.mNextSequence++;
+            if (transfer.mData.isWritable()) {
+                return;
+            }
+            mTransfers.remove(key);
+            transfer.release();
+        }
+        ByteBuf message = transfer.mData;
+        if ((transfer.mFlags & FLAG_DEFLATED) != 0) {
+            message = inflate(transfer.mData, transfer.mLength);
+            if (message == null) {
+                LOGGER.warn("Received corrupted transfer on channel {}", mName);
+                mMetrics.mTransfersDropped.increment();
+                return;
+            }
+        }
+        mMetrics.mTransfersCompleted.increment();
+        dispatch(new FriendlyByteBuf(message), sender, looper, source);
+    }
+
+    // locked
+    private void dropTransfer(@Nonnull Object key) {
+        Transfer transfer = mTransfers.remove(key);
+        if (transfer != null) {
+            transfer.release();
+        }
+    }
+
+    // called on server thread, drops transfers of disconnected players
+    private void cleanupTransfers() {
+        synchronized (mTransfers) {
+            if (mTransfers.isEmpty()) {
+                return;
+            }
+            for (var it = mTransfers.entrySet().iterator(); it.hasNext(); ) {
+                var e = it.next();
+                if (e.getKey() instanceof ServerPlayer player && player.hasDisconnected()) {
+                    it.remove();
+                    e.getValue().release();
+                    mMetrics.mTransfersDropped.increment();
+                }
+            }
+        }
+    }
+
+    @Nullable
+    private static ByteBuf deflate(@Nonnull ByteBuf src) {
+        final int length = src.readableBytes();
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        ByteBuf dst = Unpooled.buffer(length, length);
+        try {
+            deflater.setInput(src.nioBuffer());
+            deflater.finish();
+            while (!deflater.finished()) {
+                if (!dst.isWritable()) {
+                    // not compressible
+                    dst.release();
+                    return null;
+                }
+                ByteBuffer out = dst.nioBuffer(dst.writerIndex(), dst.writableBytes());
+                dst.writerIndex(dst.writerIndex() + deflater.deflate(out));
+            }
+            return dst;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Nullable
+    private static ByteBuf inflate(@Nonnull ByteBuf src, int length) {
+        final Inflater inflater = new Inflater();
+        ByteBuf dst = Unpooled.buffer(length, length);
+        try {
+            inflater.setInput(src.nioBuffer());
+            while (!inflater.finished()) {
+                if (!dst.isWritable()) {
+                    return null;
+                }
+                ByteBuffer out = dst.nioBuffer(dst.writerIndex(), dst.writableBytes());
+                int n = inflater.inflate(out);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    return null;
+                }
+                dst.writerIndex(dst.writerIndex() + n);
+            }
+            return dst.isWritable() ? null : dst;
+        } catch (DataFormatException e) {
+            return null;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // this takes the ownership of the message
+    private void dispatch(@Nonnull FriendlyByteBuf message, @Nullable ServerPlayer sender,
+                          @Nonnull BlockableEventLoop<?> looper, @Nullable C source) {
+        mMetrics.mMessagesReceived.increment();
+        try {
+            final int index = message.readUnsignedShort();
+            if (sender == null) {
+                handleClientMessage(index, message, source, looper);
+            } else {
+                dispatchServerMessage(index, message, sender, source, looper);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to handle message on channel {}", mName, e);
+        } finally {
+            message.release();
+        }
+    }
+
+    /**
+     * Callback for handling a server-to-client network message.
+     * <p>
+     * This method may be invoked on the network thread, you need to consume the payload
+     * and then process it further through thread scheduling. In addition to consuming,
+     * you can also retain the payload to prevent it from being released after this
+     * method call. In the latter case, you must manually release the payload.
+     *
+     * @param index   the message index
+     * @param payload the message body
+     * @param source  the network event source, or null if the message is passed
+     *                from the integrated server without the network
+     * @param looper  the game event loop
+     */
+    protected void handleClientMessage(int index,
+                                       @Nonnull FriendlyByteBuf payload,
+                                       @Nullable C source,
+                                       @Nonnull BlockableEventLoop<?> looper) {
+    }
+
+    /**
+     * Callback for handling a client-to-server network message.
+     * <p>
+     * This method may be invoked on the network thread, you need to consume the payload
+     * and then process it further through thread scheduling. In addition to consuming,
+     * you can also retain the payload to prevent it from being released after this
+     * method call. In the latter case, you must manually release the payload.
+     * <p>
+     * You should do safety check with player before making changes to the game world.
+     * Any player who can join the server may hack the protocol to send packets.
+     * Do not trust any player UUID that requests permissions in the packet payload.
+     *
+     * @param index   the message index
+     * @param payload the message body
+     * @param player  the sender
+     * @param looper  the game event loop
+     */
+    protected void handleServerMessage(int index,
+                                       @Nonnull FriendlyByteBuf payload,
+                                       @Nonnull ServerPlayer player,
+                                       @Nonnull BlockableEventLoop<?> looper) {
+    }
+
+    /**
+     * Dispatches a client-to-server message with the loader specific context, the
+     * loader may override this to call its legacy callback. The default implementation
+     * calls {@link #handleServerMessage(int, FriendlyByteBuf, ServerPlayer, BlockableEventLoop)}.
+     *
+     * @param source the loader specific context, or null if the message is passed
+     *               from the integrated server client without the network
+     */
+    protected void dispatchServerMessage(int index,
+                                         @Nonnull FriendlyByteBuf payload,
+                                         @Nonnull ServerPlayer player,
+                                         @Nullable C source,
+                                         @Nonnull BlockableEventLoop<?> looper) {
+        handleServerMessage(index, payload, player, looper);
+    }
+
+    /**
+     * Sends a custom payload with the channel name, implemented by the loader.
+     *
+     * @param player  the target player, or null to send to the server
+     * @param payload the payload, the ownership is transferred
+     */
+    protected abstract void sendPayload(@Nullable ServerPlayer player, @Nonnull FriendlyByteBuf payload);
+
+    /**
+     * Writes a message as a frame to the batch, the message is not consumed.
+     */
+    public static void writeFrame(@Nonnull ByteBuf batch, @Nonnull ByteBuf message) {
+        final int length = message.readableBytes();
+        VarInt.write(batch, length);
+        batch.writeBytes(message, message.readerIndex(), length);
+    }
+
+    public void dumpInfo(@Nonnull PrintWriter pw) {
+        final Metrics m = mMetrics;
+        pw.printf("  %s: Sent: Messages=%d, Payloads=%d, Bytes=%d, Fragments=%d; " +
+                        "Received: Messages=%d, Payloads=%d, Bytes=%d, Fragments=%d; " +
+                        "Transfers: Completed=%d, Dropped=%d; " +
+                        "Deflation: Messages=%d, Before=%d, After=%d\n",
+                mName, m.mMessagesSent.sum(), m.mPayloadsSent.sum(), m.mBytesSent.sum(),
+                m.mFragmentsSent.sum(),
+                m.mMessagesReceived.sum(), m.mPayloadsReceived.sum(), m.mBytesReceived.sum(),
+                m.mFragmentsReceived.sum(),
+                m.mTransfersCompleted.sum(), m.mTransfersDropped.sum(),
+                m.mDeflatedMessages.sum(), m.mBytesBeforeDeflation.sum(), m.mBytesAfterDeflation.sum());
+    }
+
+    public static void dumpAll(@Nonnull PrintWriter pw) {
+        pw.printf("MessageChannel: Channels=%d, ServerboundReassembly=%d bytes\n",
+                sChannels.size(), sServerboundReassembly.get());
+        for (MessageChannel<?> channel : sChannels) {
+            channel.dumpInfo(pw);
+        }
+    }
+
+    private static final class Metrics {
+
+        final LongAdder mMessagesSent = new LongAdder();
+        final LongAdder mPayloadsSent = new LongAdder();
+        final LongAdder mBytesSent = new LongAdder();
+        final LongAdder mFragmentsSent = new LongAdder();
+        final LongAdder mMessagesReceived = new LongAdder();
+        final LongAdder mPayloadsReceived = new LongAdder();
+        final LongAdder mBytesReceived = new LongAdder();
+        final LongAdder mFragmentsReceived = new LongAdder();
+        final LongAdder mTransfersCompleted = new LongAdder();
+        final LongAdder mTransfersDropped = new LongAdder();
+        final LongAdder mDeflatedMessages = new LongAdder();
+        final LongAdder mBytesBeforeDeflation = new LongAdder();
+        final LongAdder mBytesAfterDeflation = new LongAdder();
+    }
+
+    private static final class Transfer {
+
+        final int mFlags;
+        final int mLength;
+        final boolean mServerbound;
+        // heap buffer of the transfer size, not pooled since it may be abandoned
+        final ByteBuf mData;
+        int mNextSequence;
+        boolean mReleased;
+
+        Transfer(int flags, int total, int length, boolean serverbound) {
+            mFlags = flags;
+            mLength = length;
+            mServerbound = serverbound;
+            mData = Unpooled.buffer(total, total);
+        }
+
+        // releases the reservation, the data is released by the caller if needed
+        void release() {
+            if (!mReleased) {
+                mReleased = true;
+                if (mServerbound) {
+                    sServerboundReassembly.addAndGet(-mData.capacity());
+                }
+            }
+        }
+    }
+
+    private static final class Batch {
+
+        // framed messages, the payload to send
+        ByteBuf mBuffer;
+        // messages to the local side
+        ArrayList<ByteBuf> mLocal;
+
+        void addLocal(@Nonnull ByteBuf message) {
+            if (mLocal == null) {
+                mLocal = new ArrayList<>();
+            }
+            mLocal.add(message);
+        }
+
+        boolean isEmpty() {
+            return mBuffer == null && mLocal == null;
+        }
+
+        void release() {
+            if (mBuffer != null) {
+                mBuffer.release();
+                mBuffer = null;
+            }
+            if (mLocal != null) {
+                mLocal.forEach(ByteBuf::release);
+                mLocal = null;
+            }
+        }
+    }
+}
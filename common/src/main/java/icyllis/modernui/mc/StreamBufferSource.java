@@ -0,0 +1,246 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2025 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.mc;
+
+import com.mojang.blaze3d.platform.GlStateManager;
+import com.mojang.blaze3d.systems.RenderSystem;
+import com.mojang.blaze3d.vertex.*;
+import icyllis.modernui.annotation.RenderThread;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.CompiledShaderProgram;
+import net.minecraft.client.renderer.MultiBufferSource;
+import net.minecraft.client.renderer.RenderType;
+import org.jetbrains.annotations.ApiStatus;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static org.lwjgl.opengl.GL33C.*;
+
+/**
+ * A buffer source that streams geometry through {@link GLStreamBuffer} ring buffers
+ * instead of uploading each batch to a vertex buffer with glBufferData.
+ * <p>
+ * Geometry is grouped by render type until {@link #endBatch()}, so the draw order
+ * between render types is not preserved, only use this when that does not matter,
+ * e.g. the objects do not overlap. Each batch is appended to the ring buffer aligned
+ * to its vertex size and drawn with a base vertex, so all the render types share the
+ * same buffers and a sequential index buffer. Call {@link #endFrame()} after the
+ * last batch of a frame to fence the ranges read by the draws.
+ * <p>
+ * The instance of {@link ItemIconCache#getBufferSource()} streams both the icons
+ * rendered into the atlas and the items that {@link ContainerMenuView} renders
+ * directly on its surface every frame.
+ */
+@ApiStatus.Internal
+@RenderThread
+public class StreamBufferSource extends MultiBufferSource.BufferSource implements AutoCloseable {
+
+    public static final int VERTEX_BUFFER_SIZE = 4 << 20;
+    public static final int INDEX_BUFFER_SIZE = 1 << 20;
+
+    // reused across frames, they only grow
+    private final HashMap<RenderType, ByteBufferBuilder> mBuffers = new HashMap<>();
+    private final LinkedHashMap<RenderType, BufferBuilder> mBuilders = new LinkedHashMap<>();
+    private final ByteBufferBuilder mSortBuffer = new ByteBufferBuilder(1536);
+    // required by the super class, but never used since getBuffer() is overridden
+    private final ByteBufferBuilder mSharedBuffer;
+
+    private int mVertexArray;
+    private GLStreamBuffer mVertexBuffer;
+    private GLStreamBuffer mIndexBuffer;
+    @Nullable
+    private VertexFormat mBoundFormat;
+
+    private long mDraws;
+    private long mFallbacks;
+
+    public StreamBufferSource() {
+        this(new ByteBufferBuilder(256));
+    }
+
+    private StreamBufferSource(@Nonnull ByteBufferBuilder sharedBuffer) {
+        super(sharedBuffer, new LinkedHashMap<>());
+        mSharedBuffer = sharedBuffer;
+    }
+
+    @Nonnull
+    @Override
+    public VertexConsumer getBuffer(@Nonnull RenderType type) {
+        BufferBuilder builder = mBuilders.get(type);
+        if (builder == null) {
+            ByteBufferBuilder buffer = mBuffers.computeIfAbsent(type,
+                    t -> new ByteBufferBuilder(t.bufferSize()));
+            builder = new BufferBuilder(buffer, type.mode(), type.format());
+            mBuilders.put(type, builder);
+        }
+        return builder;
+    }
+
+    @Override
+    public void endLastBatch() {
+    }
+
+    @Override
+    public void endBatch() {
+        if (mBuilders.isEmpty()) {
+            return;
+        }
+        for (var it = mBuilders.entrySet().iterator(); it.hasNext(); ) {
+            var e = it.next();
+            it.remove();
+            draw(e.getKey(), e.getValue());
+        }
+        GlStateManager._glBindVertexArray(0);
+        BufferUploader.invalidate();
+    }
+
+    @Override
+    public void endBatch(@Nonnull RenderType type) {
+        BufferBuilder builder = mBuilders.remove(type);
+        if (builder != null) {
+            draw(type, builder);
+            GlStateManager._glBindVertexArray(0);
+            BufferUploader.invalidate();
+        }
+    }
+
+    /**
+     * Fences the ranges written in this frame, called after the last {@link #endBatch()}.
+     */
+    public void endFrame() {
+        if (mVertexBuffer != null) {
+            mVertexBuffer.fence();
+            mIndexBuffer.fence();
+        }
+    }
+
+    private void ensureBuffers() {
+        if (mVertexArray == 0) {
+            mVertexArray = GlStateManager._glGenVertexArrays();
+            GlStateManager._glBindVertexArray(mVertexArray);
+            mVertexBuffer = new GLStreamBuffer(GL_ARRAY_BUFFER, VERTEX_BUFFER_SIZE);
+            mIndexBuffer = new GLStreamBuffer(GL_ELEMENT_ARRAY_BUFFER, INDEX_BUFFER_SIZE);
+        } else {
+            GlStateManager._glBindVertexArray(mVertexArray);
+        }
+    }
+
+    private void draw(@Nonnull RenderType type, @Nonnull BufferBuilder builder) {
+        MeshData mesh = builder.build();
+        if (mesh == null) {
+            return;
+        }
+        if (type.sortOnUpload()) {
+            mesh.sortQuads(mSortBuffer, RenderSystem.getProjectionType().vertexSorting());
+        }
+        MeshData.DrawState state = mesh.drawState();
+        VertexFormat format = state.format();
+        ByteBuffer vertices = mesh.vertexBuffer();
+        ByteBuffer indices = mesh.indexBuffer();
+
+        ensureBuffers();
+        int vertexOffset = mVertexBuffer.allocate(vertices.remaining(), format.getVertexSize());
+        int indexOffset = vertexOffset >= 0 && indices != null
+                ? mIndexBuffer.allocate(indices.remaining(), state.indexType().bytes)
+                : 0;
+        if (vertexOffset < 0 || indexOffset < 0) {
+            if (vertexOffset >= 0) {
+                // nothing was written, give the range back
+                mVertexBuffer.rollback(vertexOffset);
+            }
+            // too large, use the default path
+            mFallbacks++;
+            GlStateManager._glBindVertexArray(0);
+            BufferUploader.invalidate();
+            type.draw(mesh);
+            return;
+        }
+
+        try (mesh) {
+            mVertexBuffer.bind();
+            mVertexBuffer.write(vertexOffset, vertices);
+            if (mBoundFormat != format) {
+                if (mBoundFormat != null) {
+                    mBoundFormat.clearBufferState();
+                }
+                format.setupBufferState();
+                mBoundFormat = format;
+            }
+
+            type.setupRenderState();
+            CompiledShaderProgram shader = RenderSystem.getShader();
+            if (shader != null) {
+                // setup state may bind other vertex arrays
+                GlStateManager._glBindVertexArray(mVertexArray);
+                final int indexType;
+                if (indices != null) {
+                    mIndexBuffer.bind();
+                    mIndexBuffer.write(indexOffset, indices);
+                    indexType = state.indexType().asGLType;
+                } else {
+                    RenderSystem.AutoStorageIndexBuffer sequential = RenderSystem.getSequentialBuffer(state.mode());
+                    sequential.bind(state.indexCount());
+                    indexType = sequential.type().asGLType;
+                }
+                shader.setDefaultUniforms(state.mode(), RenderSystem.getModelViewMatrix(),
+                        RenderSystem.getProjectionMatrix(), Minecraft.getInstance().getWindow());
+                shader.apply();
+                glDrawElementsBaseVertex(state.mode().asGLMode, state.indexCount(), indexType,
+                        indexOffset, vertexOffset / format.getVertexSize());
+                shader.clear();
+                mDraws++;
+            }
+            type.clearRenderState();
+        }
+    }
+
+    public void dumpInfo(@Nonnull PrintWriter pw) {
+        pw.printf("StreamBufferSource: Draws=%d, Fallbacks=%d, RenderTypes=%d\n",
+                mDraws, mFallbacks, mBuffers.size());
+        if (mVertexBuffer != null) {
+            mVertexBuffer.dumpInfo(pw, "VertexBuffer");
+            mIndexBuffer.dumpInfo(pw, "IndexBuffer");
+        }
+    }
+
+    @Override
+    public void close() {
+        mBuilders.clear();
+        for (ByteBufferBuilder buffer : mBuffers.values()) {
+            buffer.close();
+        }
+        mBuffers.clear();
+        mSortBuffer.close();
+        mSharedBuffer.close();
+        if (mVertexArray != 0) {
+            GlStateManager._glBindVertexArray(mVertexArray);
+            mIndexBuffer.close();
+            mVertexBuffer.close();
+            GlStateManager._glBindVertexArray(0);
+            GlStateManager._glDeleteVertexArrays(mVertexArray);
+            mVertexArray = 0;
+            mBoundFormat = null;
+            BufferUploader.invalidate();
+        }
+    }
+}
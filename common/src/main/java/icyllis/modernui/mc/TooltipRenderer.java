@@ -18,8 +18,10 @@
 
 package icyllis.modernui.mc;
 
+import com.mojang.blaze3d.buffers.BufferUsage;
 import com.mojang.blaze3d.shaders.AbstractUniform;
 import com.mojang.blaze3d.systems.RenderSystem;
+import com.mojang.blaze3d.vertex.*;
 import icyllis.arc3d.core.MathUtil;
 import icyllis.modernui.graphics.Color;
 import icyllis.modernui.mc.mixin.AccessClientTextTooltip;
@@ -109,6 +111,20 @@ public final class TooltipRenderer implements ScrollController.IListener {
     // true to use spectrum colors
     private boolean mUseSpectrum;
 
+    // widths and heights of components of the current tooltip
+    private int[] mComponentWidths = new int[16];
+    private int[] mComponentHeights = new int[16];
+
+    // cached rounded background, the geometry is re-uploaded only if size changed,
+    // and the uniforms are set only if changed, render thread only
+    private CompiledShaderProgram mBackgroundShader;
+    private final AbstractUniform[] mBackgroundUniforms = new AbstractUniform[6];
+    private final float[] mBackgroundPushData = new float[24];
+    private final float[] mWorkPushData = new float[24];
+    private VertexBuffer mBackgroundVertexBuffer;
+    private float mBackgroundExtentX;
+    private float mBackgroundExtentY;
+
     public TooltipRenderer() {
     }
 
@@ -506,13 +522,12 @@ public final class TooltipRenderer implements ScrollController.IListener {
         }
     }
 
-    void chooseBorderColor(int corner, AbstractUniform uniform) {
+    void chooseBorderColor(int corner, float[] dst, int offset) {
         int color = chooseBorderColor(corner);
-        int a = (color >>> 24);
-        int r = ((color >> 16) & 0xff);
-        int g = ((color >> 8) & 0xff);
-        int b = (color & 0xff);
-        uniform.set(r / 255f, g / 255f, b / 255f, a / 255f);
+        dst[offset] = ((color >> 16) & 0xff) / 255f;
+        dst[offset + 1] = ((color >> 8) & 0xff) / 255f;
+        dst[offset + 2] = (color & 0xff) / 255f;
+        dst[offset + 3] = (color >>> 24) / 255f;
     }
 
     public void drawTooltip(@Nonnull ItemStack itemStack, @Nonnull GuiGraphics gr,
@@ -527,22 +542,35 @@ public final class TooltipRenderer implements ScrollController.IListener {
             computeWorkingColor(itemStack);
         }
 
+        // measure each component once per frame
+        if (mComponentWidths.length < list.size()) {
+            int newSize = Math.max(list.size(), mComponentWidths.length << 1);
+            mComponentWidths = new int[newSize];
+            mComponentHeights = new int[newSize];
+        }
+        final int[] widths = mComponentWidths;
+        final int[] heights = mComponentHeights;
+        for (int i = 0; i < list.size(); i++) {
+            ClientTooltipComponent component = list.get(i);
+            widths[i] = component.getWidth(font);
+            heights[i] = component.getHeight(font);
+        }
+
         int tooltipWidth;
         int tooltipHeight;
         boolean titleGap = false;
         int titleBreakHeight = 0;
         if (list.size() == 1) {
-            ClientTooltipComponent component = list.get(0);
-            tooltipWidth = component.getWidth(font);
-            tooltipHeight = component.getHeight(font) - TITLE_GAP;
+            tooltipWidth = widths[0];
+            tooltipHeight = heights[0] - TITLE_GAP;
         } else {
             tooltipWidth = 0;
             tooltipHeight = 0;
             Style singleStyle = null;
             for (int i = 0; i < list.size(); i++) {
                 ClientTooltipComponent component = list.get(i);
-                tooltipWidth = Math.max(tooltipWidth, component.getWidth(font));
-                int componentHeight = component.getHeight(font);
+                tooltipWidth = Math.max(tooltipWidth, widths[i]);
+                int componentHeight = heights[i];
                 tooltipHeight += componentHeight;
                 if (i == 0) {
                     titleBreakHeight = componentHeight;
@@ -692,19 +720,20 @@ public final class TooltipRenderer implements ScrollController.IListener {
             TooltipRenderUtil.renderTooltipBackground(gr, drawX, drawY,
                     tooltipWidth, tooltipHeight, 0, tooltipStyle);
         }
+        // all lines go into the same buffer source, then submitted by one flush
         for (int i = 0; i < list.size(); i++) {
             ClientTooltipComponent component = list.get(i);
             if (titleGap && i == 0 && sCenterTitle) {
-                component.renderText(font, drawX + (tooltipWidth - component.getWidth(font)) / 2, drawY, pose, source);
+                component.renderText(font, drawX + (tooltipWidth - widths[i]) / 2, drawY, pose, source);
             } else if (mLayoutRTL) {
-                component.renderText(font, drawX + tooltipWidth - component.getWidth(font), drawY, pose, source);
+                component.renderText(font, drawX + tooltipWidth - widths[i], drawY, pose, source);
             } else {
                 component.renderText(font, drawX, drawY, pose, source);
             }
             if (titleGap && i == 0) {
                 drawY += TITLE_GAP;
             }
-            drawY += component.getHeight(font);
+            drawY += heights[i];
         }
         gr.flush();
 
@@ -713,14 +742,14 @@ public final class TooltipRenderer implements ScrollController.IListener {
         for (int i = 0; i < list.size(); i++) {
             ClientTooltipComponent component = list.get(i);
             if (mLayoutRTL) {
-                component.renderImage(font, drawX + tooltipWidth - component.getWidth(font), drawY, tooltipWidth, tooltipHeight, gr);
+                component.renderImage(font, drawX + tooltipWidth - widths[i], drawY, tooltipWidth, tooltipHeight, gr);
             } else {
                 component.renderImage(font, drawX, drawY, tooltipWidth, tooltipHeight, gr);
             }
             if (titleGap && i == 0) {
                 drawY += TITLE_GAP;
             }
-            drawY += component.getHeight(font);
+            drawY += heights[i];
         }
         gr.pose().popPose();
     }
@@ -741,8 +770,19 @@ public final class TooltipRenderer implements ScrollController.IListener {
         if (shader == null) {
             return;
         }
-        shader.safeGetUniform("u_PushData0")
-                .set(sizeX, sizeY, sCornerRadius, sBorderWidth / 2f);
+        if (shader != mBackgroundShader) {
+            // first use or reloaded
+            mBackgroundShader = shader;
+            for (int i = 0; i < 6; i++) {
+                mBackgroundUniforms[i] = shader.safeGetUniform("u_PushData" + i);
+            }
+            Arrays.fill(mBackgroundPushData, Float.NaN);
+        }
+        final float[] data = mWorkPushData;
+        data[0] = sizeX;
+        data[1] = sizeY;
+        data[2] = sCornerRadius;
+        data[3] = sBorderWidth / 2f;
         float rainbowOffset = 0;
         if (mUseSpectrum) {
             rainbowOffset = 1;
@@ -754,31 +794,59 @@ public final class TooltipRenderer implements ScrollController.IListener {
                 rainbowOffset = -rainbowOffset;
             }
         }
-        shader.safeGetUniform("u_PushData1")
-                .set(sShadowAlpha, 1.25f / shadowRadius, (sFillColor[0] >>> 24) / 255f, rainbowOffset);
+        data[4] = sShadowAlpha;
+        data[5] = 1.25f / shadowRadius;
+        data[6] = (sFillColor[0] >>> 24) / 255f;
+        data[7] = rainbowOffset;
         if (rainbowOffset == 0) {
-            chooseBorderColor(0, shader.safeGetUniform("u_PushData2"));
-            chooseBorderColor(1, shader.safeGetUniform("u_PushData3"));
-            chooseBorderColor(3, shader.safeGetUniform("u_PushData4"));
-            chooseBorderColor(2, shader.safeGetUniform("u_PushData5"));
+            chooseBorderColor(0, data, 8);
+            chooseBorderColor(1, data, 12);
+            chooseBorderColor(3, data, 16);
+            chooseBorderColor(2, data, 20);
+        } else {
+            // border colors are unused
+            System.arraycopy(mBackgroundPushData, 8, data, 8, 16);
+        }
+        for (int i = 0; i < 6; i++) {
+            int offset = i << 2;
+            if (!Arrays.equals(data, offset, offset + 4, mBackgroundPushData, offset, offset + 4)) {
+                mBackgroundUniforms[i].set(data[offset], data[offset + 1], data[offset + 2], data[offset + 3]);
+                System.arraycopy(data, offset, mBackgroundPushData, offset, 4);
+            }
         }
 
-        var buffer = ((AccessGuiGraphics) gr).getBufferSource().getBuffer(GuiRenderType.tooltip());
-
-        // we expect local coordinates, concat pose with model view
-        RenderSystem.getModelViewStack().pushMatrix();
-        RenderSystem.getModelViewStack().mul(pose);
-        RenderSystem.getModelViewStack().translate(centerX, centerY, 0);
         // estimate the draw bounds, half stroke width + 0.5 AA bloat + shadow spread
         float extent = sBorderWidth / 2f + 0.5f + shadowRadius * 1.2f;
         float extentX = sizeX + extent;
         float extentY = sizeY + extent;
-        buffer.addVertex(extentX, extentY, 0);
-        buffer.addVertex(extentX, -extentY, 0);
-        buffer.addVertex(-extentX, -extentY, 0);
-        buffer.addVertex(-extentX, extentY, 0);
+        VertexBuffer vertexBuffer = mBackgroundVertexBuffer;
+        if (vertexBuffer == null) {
+            vertexBuffer = mBackgroundVertexBuffer = new VertexBuffer(BufferUsage.STATIC_WRITE);
+            mBackgroundExtentX = Float.NaN;
+        }
+        vertexBuffer.bind();
+        if (extentX != mBackgroundExtentX || extentY != mBackgroundExtentY) {
+            // local coordinates centered at the tooltip
+            BufferBuilder builder = Tesselator.getInstance().begin(VertexFormat.Mode.QUADS,
+                    DefaultVertexFormat.POSITION);
+            builder.addVertex(extentX, extentY, 0);
+            builder.addVertex(extentX, -extentY, 0);
+            builder.addVertex(-extentX, -extentY, 0);
+            builder.addVertex(-extentX, extentY, 0);
+            vertexBuffer.upload(builder.buildOrThrow());
+            mBackgroundExtentX = extentX;
+            mBackgroundExtentY = extentY;
+        }
 
-        gr.flush();
+        // we expect local coordinates, concat pose with model view
+        RenderSystem.getModelViewStack().pushMatrix();
+        RenderSystem.getModelViewStack().mul(pose);
+        RenderSystem.getModelViewStack().translate(centerX, centerY, 0);
+        GuiRenderType.TOOLTIP.setupRenderState();
+        vertexBuffer.drawWithShader(RenderSystem.getModelViewMatrix(),
+                RenderSystem.getProjectionMatrix(), shader);
+        GuiRenderType.TOOLTIP.clearRenderState();
+        VertexBuffer.unbind();
         RenderSystem.getModelViewStack().popMatrix();
 
         if (titleGap && sTitleBreak) {
@@ -787,6 +855,7 @@ public final class TooltipRenderer implements ScrollController.IListener {
                     tooltipX + tooltipWidth, tooltipY + titleBreakHeight + 0.5f,
                     0.08f, // lift it up by 0.08
                     0xE0C8C8C8, 0xE0C8C8C8, 0xE0C8C8C8, 0xE0C8C8C8);
+            gr.flush();
         }
     }
 
@@ -841,6 +910,8 @@ public final class TooltipRenderer implements ScrollController.IListener {
         fillGrad(gr, pose, left, top, left + 1, bottom, 0,
                 chooseBorderColor(0), chooseBorderColor(0),
                 chooseBorderColor(3), chooseBorderColor(3));
+        // all quads above in one draw
+        gr.flush();
     }
 
     private static void fillGrad(GuiGraphics gr, Matrix4f pose,
@@ -864,7 +935,5 @@ public final class TooltipRenderer implements ScrollController.IListener {
         color = colorLL;
         buffer.addVertex(pose, left, bottom, z)
                 .setColor(color);
-
-        gr.flush();
     }
 }
@@ -66,7 +66,6 @@ import net.minecraft.sounds.SoundEvents;
 import net.minecraft.world.inventory.AbstractContainerMenu;
 import net.minecraft.world.item.ItemStack;
 import org.apache.commons.io.output.StringBuilderWriter;
-import org.apache.commons.lang3.tuple.Pair;
 import org.apache.logging.log4j.Marker;
 import org.apache.logging.log4j.MarkerManager;
 import org.jetbrains.annotations.ApiStatus;
@@ -148,7 +147,10 @@ public abstract class UIManager implements LifecycleOwner {
     protected boolean mNoRender = false;
     protected boolean mClearNextMainTarget = false;
     protected boolean mAlwaysClearMainTarget = false;
-    private long mLastPurgeNanos;
+    private final CleanupScheduler mCleanupScheduler = new CleanupScheduler("Render");
+    private final GLStateBridge mStateBridge = new GLStateBridge();
+    private final FrameScheduler mFrameScheduler = new FrameScheduler();
+    private final ArrayList<Recording> mFrameTasks = new ArrayList<>(FrameScheduler.MAX_PENDING_FRAMES);
 
     protected final TooltipRenderer mTooltipRenderer = new TooltipRenderer();
 
@@ -196,6 +198,19 @@ public abstract class UIManager implements LifecycleOwner {
         // integrated with Minecraft
         AudioManager.getInstance().initialize(/*integrated*/ true);
 
+        mCleanupScheduler.addTask("ImmediateContext", () -> {
+            var context = Core.requireImmediateContext();
+            long bytes = context.getCurrentBudgetedBytes();
+            context.performDeferredCleanup(120_000);
+            return bytes - context.getCurrentBudgetedBytes();
+        });
+        mCleanupScheduler.addTask("FontAtlas",
+                () -> GlyphManager.getInstance().compactAtlas(GlyphManager.ATLAS_FONT));
+        mCleanupScheduler.addTask("EmojiAtlas",
+                () -> GlyphManager.getInstance().compactAtlas(GlyphManager.ATLAS_EMOJI));
+        mCleanupScheduler.addTask("BitmapAtlas",
+                () -> GlyphManager.getInstance().compactAtlas(GlyphManager.ATLAS_BITMAP));
+
         mRunning = true;
     }
 
@@ -208,6 +223,9 @@ public abstract class UIManager implements LifecycleOwner {
         Objects.requireNonNull(sInstance);
         Core.requireImmediateContext();
         BufferUploader.invalidate();
+        GLStateBridge.sValidate = Boolean.parseBoolean(
+                ModernUIClient.getBootstrapProperty(ModernUIClient.BOOTSTRAP_VALIDATE_GL_STATE)
+        );
         LOGGER.info(MARKER, "UI renderer initialized");
     }
 
@@ -243,6 +261,7 @@ public abstract class UIManager implements LifecycleOwner {
             }
             break;
         }
+        mRoot.discardFrameTasks();
         mRoot.mSurface = RefCnt.move(mRoot.mSurface);
         Core.requireUiRecordingContext().unref();
         LOGGER.debug(MARKER, "Quited UI thread");
@@ -814,6 +833,17 @@ public abstract class UIManager implements LifecycleOwner {
 
         GlyphManager.getInstance().dumpInfo(pw);
 
+        mStateBridge.dumpInfo(pw);
+        ItemIconCache.getInstance().dumpInfo(pw);
+        EditBoxUndoHistory.dumpInfo(pw);
+        MessageChannel.dumpAll(pw);
+        BlurHandler.INSTANCE.dumpInfo(pw);
+        mFrameScheduler.dumpInfo(pw);
+        mCleanupScheduler.dumpInfo(pw);
+        if (mRoot != null) {
+            mRoot.mCleanupScheduler.dumpInfo(pw);
+        }
+
         MuiModApi.dispatchOnDebugDump(pw);
     }
 
@@ -867,65 +897,80 @@ public abstract class UIManager implements LifecycleOwner {
             return;
         }
 
-        int oldVertexArray = 0;
-        int oldProgram = 0;
-
+        // render item icons requested by the previous UI frames
+        ItemIconCache.getInstance().renderPending(minecraft);
 
         @RawPtr
         ImmediateContext context = Core.requireImmediateContext();
 
-        var frameTask = mRoot.swapFrameTask();
-        @SharedPtr
-        Recording recording = frameTask.getLeft();
+        final ArrayList<@SharedPtr Recording> recordings = mFrameTasks;
         @SharedPtr
-        ImageViewProxy surface = frameTask.getRight();
+        ImageViewProxy surface = mRoot.swapFrameTasks(recordings);
 
-        if (recording != null) {
-            oldVertexArray = GL33C.glGetInteger(GL33C.GL_VERTEX_ARRAY_BINDING);
-            oldProgram = GL33C.glGetInteger(GL33C.GL_CURRENT_PROGRAM);
+        final int frames = recordings.size();
+        final boolean submit = frames > 0;
+        final GLStateBridge stateBridge = mStateBridge;
+        if (submit) {
+            stateBridge.beginSubmit();
+        }
+
+        final long submitStart = submit ? System.nanoTime() : 0;
+        // execute in order, a Recording may depend on uploads of the previous ones
+        for (int i = 0; i < frames; i++) {
+            @SharedPtr
+            Recording recording = recordings.get(i);
             boolean added = context.addTask(recording);
             recording.close();
             if (!added) {
                 LOGGER.error("Failed to add draw commands");
             }
         }
+        recordings.clear();
 
         ((GLDevice) context.getDevice()).flushRenderCalls();
 
-        if (recording != null) {
+        if (submit) {
             context.submit();
             GL33C.glBindFramebuffer(GL33C.GL_FRAMEBUFFER, minecraft.getMainRenderTarget().frameBufferId);
-            GL33C.glBindVertexArray(oldVertexArray);
-            GL33C.glUseProgram(oldProgram);
+            GL33C.glBindVertexArray(stateBridge.getVertexArray());
+            GL33C.glUseProgram(stateBridge.getProgram());
+            mFrameScheduler.onFramesSubmitted(frames, System.nanoTime() - submitStart);
         } else {
             context.checkForFinishedWork();
+            mFrameScheduler.onFramesSubmitted(0, 0);
         }
 
         BufferUploader.invalidate();
 
-        // force changing Blaze3D state
-        for (int i = 0; i <= 3; i++) {
-            GL33C.glBindSampler(i, 0);
+        // force changing Blaze3D state, raw GL calls are only needed if Arc3D
+        // has executed a Recording, otherwise cached setters are enough
+        if (submit) {
+            for (int i = 0; i <= 3; i++) {
+                GL33C.glBindSampler(i, 0);
+            }
+            GL33C.glDisable(GL33C.GL_STENCIL_TEST);
+            GL33C.glDisable(GL33C.GL_SCISSOR_TEST);
+            GL33C.glBlendFuncSeparate(GL33C.GL_SRC_ALPHA, GL33C.GL_ONE_MINUS_SRC_ALPHA, GL33C.GL_ONE, GL33C.GL_ZERO);
+            GL33C.glEnable(GL33C.GL_BLEND);
+            GL33C.glBlendEquation(GL33C.GL_FUNC_ADD);
+            GL33C.glDisable(GL33C.GL_DEPTH_TEST);
+            GL33C.glDepthFunc(GL33C.GL_LEQUAL);
+            GL33C.glDepthMask(true);
+        } else {
+            stateBridge.skipReset(12);
         }
-        GL33C.glDisable(GL33C.GL_STENCIL_TEST);
         RenderSystem.disableScissor();
-        GL33C.glDisable(GL33C.GL_SCISSOR_TEST);
         RenderSystem.defaultBlendFunc();
-        GL33C.glBlendFuncSeparate(GL33C.GL_SRC_ALPHA, GL33C.GL_ONE_MINUS_SRC_ALPHA, GL33C.GL_ONE, GL33C.GL_ZERO);
         RenderSystem.enableBlend();
-        GL33C.glEnable(GL33C.GL_BLEND);
         RenderSystem.blendEquation(GL33C.GL_FUNC_ADD);
-        GL33C.glBlendEquation(GL33C.GL_FUNC_ADD);
         RenderSystem.disableDepthTest();
-        GL33C.glDisable(GL33C.GL_DEPTH_TEST);
         RenderSystem.depthFunc(GL33C.GL_LEQUAL);
-        GL33C.glDepthFunc(GL33C.GL_LEQUAL);
         RenderSystem.depthMask(true);
-        GL33C.glDepthMask(true);
         for (int i = 3; i >= 0; i--) {
             RenderSystem.activeTexture(GL33C.GL_TEXTURE0 + i);
             RenderSystem.bindTexture(0);
         }
+        // deferred render calls may have changed the active texture unit
         GL33C.glActiveTexture(GL33C.GL_TEXTURE0);
         RenderSystem.disableCull();
         RenderSystem.lineWidth(1);
@@ -967,6 +1012,7 @@ public abstract class UIManager implements LifecycleOwner {
         }
         RenderSystem.defaultBlendFunc();
         RefCnt.move(surface);
+        stateBridge.endFrame();
 
         if (gr != null) {
             for (var handler : mRoot.mRawDrawHandlers) {
@@ -1102,12 +1148,8 @@ public abstract class UIManager implements LifecycleOwner {
         } else {
             // phase=end
             // main thread
-            var context = Core.requireImmediateContext();
-            if (mFrameTimeNanos - mLastPurgeNanos >= 20_000_000_000L) {
-                mLastPurgeNanos = mFrameTimeNanos;
-                context.performDeferredCleanup(120_000);
-                GlyphManager.getInstance().compact();
-            }
+            mCleanupScheduler.onFrame(mFrameTimeNanos, minecraft.isPaused() ||
+                    minecraft.level == null || minecraft.screen != null);
             if (!minecraft.isRunning() && mRunning) {
                 mRunning = false;
                 mRoot.mHandler.post(this::finish);
@@ -1177,13 +1219,24 @@ public abstract class UIManager implements LifecycleOwner {
         MenuHelper mContextMenuHelper;
 
         GraniteSurface mSurface;
-        Recording mLastFrameTask;
+        // recorded but not yet consumed by render thread, guarded by mRenderLock
+        final ArrayDeque<@SharedPtr Recording> mPendingFrameTasks =
+                new ArrayDeque<>(FrameScheduler.MAX_PENDING_FRAMES);
 
-        private long mLastPurgeNanos;
+        final CleanupScheduler mCleanupScheduler = new CleanupScheduler("UI");
 
         ArrayList<MinecraftDrawHandler.Operation> mPendingRawDrawHandlerOperations = new ArrayList<>();
         ArrayList<MinecraftDrawHandler> mRawDrawHandlers = new ArrayList<>();
 
+        ViewRootImpl() {
+            mCleanupScheduler.addTask("RecordingContext", () -> {
+                var context = Core.requireUiRecordingContext();
+                long bytes = context.getCurrentBudgetedBytes();
+                context.performDeferredCleanup(120_000);
+                return bytes - context.getCurrentBudgetedBytes();
+            });
+        }
+
         @Override
         protected boolean dispatchTouchEvent(MotionEvent event) {
             if (mScreen != null && event.getAction() == MotionEvent.ACTION_DOWN) {
@@ -1249,6 +1302,7 @@ public abstract class UIManager implements LifecycleOwner {
 
         @Override
         protected Canvas beginDrawLocked(int width, int height) {
+            mFrameScheduler.onRecordStart();
             synchronized (mRenderLock) {
                 if (mSurface == null ||
                         mSurface.getWidth() != width ||
@@ -1276,27 +1330,27 @@ public abstract class UIManager implements LifecycleOwner {
         @Override
         protected void endDrawLocked(@Nonnull Canvas canvas) {
             canvas.restoreToCount(1);
+            @SharedPtr
             Recording task = Core.requireUiRecordingContext().snap();
+            mFrameScheduler.onRecordEnd();
             synchronized (mRenderLock) {
-                if (mLastFrameTask != null) {
-                    mLastFrameTask.close();
+                if (task != null) {
+                    mPendingFrameTasks.add(task);
                 }
-                mLastFrameTask = task;
+                // synchronized with game: wait until this frame is consumed,
+                // otherwise only wait when too many frames are in flight
+                final int maxPending = mFrameScheduler.isSynchronized()
+                        ? 0 : FrameScheduler.MAX_PENDING_FRAMES - 1;
                 try {
-                    mRenderLock.wait();
+                    while (mPendingFrameTasks.size() > maxPending && mRunning) {
+                        mRenderLock.wait(100);
+                    }
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
                 }
-                if (mLastFrameTask != null) {
-                    mLastFrameTask.close();
-                }
-                mLastFrameTask = null;
-            }
-            var context = Core.requireUiRecordingContext();
-            if (System.nanoTime() - mLastPurgeNanos >= 20_000_000_000L) {
-                mLastPurgeNanos = System.nanoTime();
-                context.performDeferredCleanup(120_000);
             }
+            mFrameScheduler.waitForNextFrame();
+            mCleanupScheduler.onFrame(System.nanoTime(), mScreen == null || minecraft.isPaused());
         }
 
         @Nullable
@@ -1311,16 +1365,29 @@ public abstract class UIManager implements LifecycleOwner {
             }
         }
 
+        void discardFrameTasks() {
+            synchronized (mRenderLock) {
+                Recording recording;
+                while ((recording = mPendingFrameTasks.poll()) != null) {
+                    recording.close();
+                }
+            }
+        }
+
         void addRawDrawHandlerOperation(MinecraftDrawHandler.Operation op) {
             synchronized (mRenderLock) {
                 mPendingRawDrawHandlerOperations.add(op);
             }
         }
 
+        /**
+         * Moves all the pending Recordings to the given list, in recording order.
+         *
+         * @return the UI layer
+         */
         @RenderThread
-        private Pair<@SharedPtr Recording, @SharedPtr ImageViewProxy> swapFrameTask() {
-            @SharedPtr
-            Recording recording;
+        @SharedPtr
+        private ImageViewProxy swapFrameTasks(@Nonnull List<@SharedPtr Recording> out) {
             @SharedPtr
             ImageViewProxy layer;
             synchronized (mRenderLock) {
@@ -1329,8 +1396,10 @@ public abstract class UIManager implements LifecycleOwner {
                 } else {
                     layer = null;
                 }
-                recording = mLastFrameTask;
-                mLastFrameTask = null;
+                Recording recording;
+                while ((recording = mPendingFrameTasks.poll()) != null) {
+                    out.add(recording);
+                }
                 for (int i = 0; i < mPendingRawDrawHandlerOperations.size(); i++) {
                     var operation = mPendingRawDrawHandlerOperations.get(i);
                     switch (operation.mOp) {
@@ -1342,7 +1411,7 @@ public abstract class UIManager implements LifecycleOwner {
                 mPendingRawDrawHandlerOperations.clear();
                 mRenderLock.notifyAll();
             }
-            return Pair.of(recording, layer);
+            return layer;
             /*// wait UI thread, if slow
             synchronized (mRenderLock) {
 
@@ -26,8 +26,6 @@ import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
-import java.util.regex.Matcher;
-
 /**
  * Transform emoji shortcodes.
  */
@@ -40,35 +38,51 @@ public class MixinChatScreen {
     @Unique
     private boolean modernUI_MC$broadcasting;
 
+    // the value when last edited, used to find the edited range
+    @Unique
+    private String modernUI_MC$lastValue;
+
     @Inject(method = "onEdited", at = @At("HEAD"))
     private void _onEdited(String s, CallbackInfo ci) {
-        if (!modernUI_MC$broadcasting &&
-                ModernUIClient.sEmojiShortcodes &&
-                !input.getValue().startsWith("/") &&
+        if (modernUI_MC$broadcasting) {
+            return;
+        }
+        final String value = input.getValue();
+        final String lastValue = modernUI_MC$lastValue;
+        modernUI_MC$lastValue = value;
+        if (ModernUIClient.sEmojiShortcodes &&
+                !value.startsWith("/") &&
                 (!(input instanceof IModernEditBox) ||
                         !((IModernEditBox) input).modernUI_MC$getUndoManager().isInUndo())) {
-            final FontResourceManager manager = FontResourceManager.getInstance();
-            CYCLE:
-            for (;;) {
-                final Matcher matcher = MuiModApi.EMOJI_SHORTCODE_PATTERN.matcher(input.getValue());
-                while (matcher.find()) {
-                    int start = matcher.start();
-                    int end = matcher.end();
-                    if (end - start > 2) {
-                        String replacement = manager.lookupEmojiShortcode(
-                                input.getValue().substring(start, end)
-                        );
-                        if (replacement != null) {
-                            modernUI_MC$broadcasting = true;
-                            input.setHighlightPos(start);
-                            input.setCursorPosition(end);
-                            input.insertText(replacement);
-                            modernUI_MC$broadcasting = false;
-                            continue CYCLE;
-                        }
-                    }
+            final EmojiShortcodeMatcher matcher = FontResourceManager.getInstance().getEmojiShortcodeMatcher();
+            final int length = value.length();
+            int from = 0;
+            int to = length;
+            if (lastValue != null) {
+                // the text before and after the edited range was scanned in last edits,
+                // only a shortcode overlapping the edited range can be new
+                final int maxCommon = Math.min(length, lastValue.length());
+                int prefix = 0;
+                while (prefix < maxCommon && value.charAt(prefix) == lastValue.charAt(prefix)) {
+                    prefix++;
+                }
+                int suffix = 0;
+                while (suffix < maxCommon - prefix &&
+                        value.charAt(length - 1 - suffix) == lastValue.charAt(lastValue.length() - 1 - suffix)) {
+                    suffix++;
                 }
-                break;
+                final int reach = Math.max(matcher.getMaxLength() - 1, 0);
+                from = Math.max(prefix - reach, 0);
+                to = Math.min(length - suffix + reach, length);
+            }
+            final EmojiShortcodeMatcher.Replacement replacement = matcher.replace(value, from, to);
+            if (replacement != null) {
+                modernUI_MC$broadcasting = true;
+                input.setHighlightPos(replacement.start());
+                input.setCursorPosition(replacement.end());
+                input.insertText(replacement.text());
+                modernUI_MC$broadcasting = false;
+                modernUI_MC$lastValue = input.getValue();
             }
         }
     }
@@ -25,14 +25,13 @@ import icyllis.modernui.mc.ModernUIClient;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.components.CommandSuggestions;
 import net.minecraft.client.gui.components.EditBox;
-import net.minecraft.commands.SharedSuggestionProvider;
 import org.spongepowered.asm.mixin.*;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 import javax.annotation.Nullable;
-import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -78,12 +77,15 @@ public abstract class MixinCommandSuggestions {
                 int startPos = getLastWordIndex(candidate);
 
                 if (candidate.startsWith(":", startPos) && candidate.length() - startPos >= 2) {
-                    Collection<String> suggestions = FontResourceManager.getInstance().getEmojiShortcodes(
-                            candidate.charAt(startPos + 1)
-                    );
+                    // only the matching slice, no need to filter again
+                    List<String> suggestions = FontResourceManager.getInstance().getEmojiShortcodeIndex()
+                            .getByPrefix(candidate.substring(startPos));
                     if (!suggestions.isEmpty()) {
-                        pendingSuggestions = SharedSuggestionProvider.suggest(suggestions,
-                                new SuggestionsBuilder(candidate, startPos));
+                        SuggestionsBuilder builder = new SuggestionsBuilder(candidate, startPos);
+                        for (String suggestion : suggestions) {
+                            builder.suggest(suggestion);
+                        }
+                        pendingSuggestions = builder.buildFuture();
                         pendingSuggestions.thenRun(() -> {
                             if (!pendingSuggestions.isDone()) {
                                 return;
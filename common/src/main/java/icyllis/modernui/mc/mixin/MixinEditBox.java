@@ -63,7 +63,10 @@ public abstract class MixinEditBox implements IModernEditBox {
     private long modernUI_MC$lastInsertTextNanos;
 
     @Unique
-    private final UndoManager modernUI_MC$undoManager = new UndoManager();
+    private long modernUI_MC$lastEditNanos;
+
+    @Unique
+    private final EditBoxUndoHistory modernUI_MC$undoHistory = new EditBoxUndoHistory(this);
 
     /**
      * Reset blink.
@@ -108,19 +111,31 @@ public abstract class MixinEditBox implements IModernEditBox {
             at = @At(value = "FIELD", target = "Lnet/minecraft/client/gui/components/EditBox;value:Ljava/lang/String;",
                     opcode = Opcodes.PUTFIELD))
     public void onSetValue(String string, CallbackInfo ci) {
-        if (modernUI_MC$undoManager.isInUndo()) {
+        if (modernUI_MC$getUndoManager().isInUndo()) {
             return;
         }
-        if (value.isEmpty() && string.isEmpty()) {
+        // we see this operation as Replace, but only record the changed range
+        final String oldValue = value;
+        final int maxCommon = Math.min(oldValue.length(), string.length());
+        int prefix = 0;
+        while (prefix < maxCommon && oldValue.charAt(prefix) == string.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < maxCommon - prefix &&
+                oldValue.charAt(oldValue.length() - 1 - suffix) == string.charAt(string.length() - 1 - suffix)) {
+            suffix++;
+        }
+        if (prefix + suffix == oldValue.length() && prefix + suffix == string.length()) {
+            // no change
             return;
         }
-        // we see this operation as Replace
         EditBoxEditAction edit = new EditBoxEditAction(
-                modernUI_MC$undoOwner(),
+                modernUI_MC$undoHistory.getOwner(),
                 cursorPos,
-                /*oldText*/ value,
-                0,
-                /*newText*/ string
+                /*oldText*/ oldValue.substring(prefix, oldValue.length() - suffix),
+                prefix,
+                /*newText*/ string.substring(prefix, string.length() - suffix)
         );
         modernUI_MC$addEdit(edit, false);
     }
@@ -132,7 +147,7 @@ public abstract class MixinEditBox implements IModernEditBox {
             locals = LocalCapture.CAPTURE_FAILSOFT)
     public void onInsertText(String string, CallbackInfo ci,
                              int i, int j, int k, String string2, int l, String string3) {
-        if (modernUI_MC$undoManager.isInUndo()) {
+        if (modernUI_MC$getUndoManager().isInUndo()) {
             return;
         }
         String oldText = value.substring(i, j);
@@ -140,7 +155,7 @@ public abstract class MixinEditBox implements IModernEditBox {
             return;
         }
         EditBoxEditAction edit = new EditBoxEditAction(
-                modernUI_MC$undoOwner(),
+                modernUI_MC$undoHistory.getOwner(),
                 cursorPos,
                 oldText,
                 i,
@@ -154,8 +169,11 @@ public abstract class MixinEditBox implements IModernEditBox {
             mergeInsert = true;
         } else {
             modernUI_MC$lastInsertTextNanos = nanos;
-            mergeInsert = false;
+            // coalesce continuous typing until the next word
+            mergeInsert = modernUI_MC$isTyping(nanos) &&
+                    !string2.isEmpty() && !Character.isWhitespace(string2.charAt(0));
         }
+        modernUI_MC$lastEditNanos = nanos;
         modernUI_MC$addEdit(edit, mergeInsert);
     }
 
@@ -166,7 +184,7 @@ public abstract class MixinEditBox implements IModernEditBox {
             locals = LocalCapture.CAPTURE_FAILSOFT)
     public void onDeleteChars(int i, CallbackInfo ci,
                               int j, int k, String string) {
-        if (modernUI_MC$undoManager.isInUndo()) {
+        if (modernUI_MC$getUndoManager().isInUndo()) {
             return;
         }
         String oldText = value.substring(j, k);
@@ -174,31 +192,27 @@ public abstract class MixinEditBox implements IModernEditBox {
             return;
         }
         EditBoxEditAction edit = new EditBoxEditAction(
-                modernUI_MC$undoOwner(),
+                modernUI_MC$undoHistory.getOwner(),
                 /*cursorPos*/ cursorPos,
                 oldText,
                 j,
                 ""
         );
-        modernUI_MC$addEdit(edit, false);
+        final long nanos = Util.getNanos();
+        // coalesce continuous backspace or delete
+        final boolean mergeDelete = modernUI_MC$isTyping(nanos);
+        modernUI_MC$lastEditNanos = nanos;
+        modernUI_MC$addEdit(edit, mergeDelete);
     }
 
     @Unique
-    public void modernUI_MC$addEdit(EditBoxEditAction edit, boolean mergeInsert) {
-        final UndoManager mgr = modernUI_MC$undoManager;
-        mgr.beginUpdate("addEdit");
-        EditBoxEditAction lastEdit = mgr.getLastOperation(
-                EditBoxEditAction.class,
-                edit.getOwner(),
-                UndoManager.MERGE_MODE_UNIQUE
-        );
-        if (lastEdit == null) {
-            mgr.addOperation(edit, UndoManager.MERGE_MODE_NONE);
-        } else if (!mergeInsert || !lastEdit.mergeInsertWith(edit)) {
-            mgr.commitState(edit.getOwner());
-            mgr.addOperation(edit, UndoManager.MERGE_MODE_NONE);
-        }
-        mgr.endUpdate();
+    private boolean modernUI_MC$isTyping(long nanos) {
+        return modernUI_MC$lastEditNanos >= nanos - 1_000_000_000;
+    }
+
+    @Unique
+    public void modernUI_MC$addEdit(EditBoxEditAction edit, boolean merge) {
+        modernUI_MC$undoHistory.addEdit(edit, merge);
     }
 
     @Inject(method = "keyPressed",
@@ -211,11 +225,11 @@ public abstract class MixinEditBox implements IModernEditBox {
         if (i == GLFW.GLFW_KEY_Z || i == GLFW.GLFW_KEY_Y) {
             if (Screen.hasControlDown() && !Screen.hasAltDown()) {
                 if (!Screen.hasShiftDown()) {
-                    UndoOwner[] owners = {modernUI_MC$undoOwner()};
+                    UndoOwner[] owners = modernUI_MC$undoHistory.getOwners();
                     if (i == GLFW.GLFW_KEY_Z) {
                         // CTRL+Z
-                        if (modernUI_MC$undoManager.countUndos(owners) > 0) {
-                            modernUI_MC$undoManager.undo(owners, 1);
+                        if (modernUI_MC$getUndoManager().countUndos(owners) > 0) {
+                            modernUI_MC$getUndoManager().undo(owners, 1);
                             cir.setReturnValue(true);
                         }
                     } else if (modernUI_MC$tryRedo(owners)) {
@@ -223,7 +237,7 @@ public abstract class MixinEditBox implements IModernEditBox {
                         cir.setReturnValue(true);
                     }
                 } else if (i == GLFW.GLFW_KEY_Z) {
-                    UndoOwner[] owners = {modernUI_MC$undoOwner()};
+                    UndoOwner[] owners = modernUI_MC$undoHistory.getOwners();
                     if (modernUI_MC$tryRedo(owners)) {
                         // CTRL+SHIFT+Z
                         cir.setReturnValue(true);
@@ -233,15 +247,10 @@ public abstract class MixinEditBox implements IModernEditBox {
         }
     }
 
-    @Unique
-    private UndoOwner modernUI_MC$undoOwner() {
-        return modernUI_MC$undoManager.getOwner("EditBox", this);
-    }
-
     @Unique
     private boolean modernUI_MC$tryRedo(UndoOwner[] owners) {
-        if (modernUI_MC$undoManager.countRedos(owners) > 0) {
-            modernUI_MC$undoManager.redo(owners, 1);
+        if (modernUI_MC$getUndoManager().countRedos(owners) > 0) {
+            modernUI_MC$getUndoManager().redo(owners, 1);
             return true;
         }
         return false;
@@ -249,6 +258,6 @@ public abstract class MixinEditBox implements IModernEditBox {
 
     @Override
     public UndoManager modernUI_MC$getUndoManager() {
-        return modernUI_MC$undoManager;
+        return modernUI_MC$undoHistory.getUndoManager();
     }
 }
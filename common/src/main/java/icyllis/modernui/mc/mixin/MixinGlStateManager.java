@@ -0,0 +1,44 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2025 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.mc.mixin;
+
+import com.mojang.blaze3d.platform.GlStateManager;
+import icyllis.modernui.mc.GLStateBridge;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+/**
+ * Blaze3D does not cache vertex array and program bindings, track them so that
+ * we don't need to query them after Arc3D rendering.
+ */
+@Mixin(GlStateManager.class)
+public class MixinGlStateManager {
+
+    @Inject(method = "_glBindVertexArray", at = @At("HEAD"), remap = false)
+    private static void onBindVertexArray(int array, CallbackInfo ci) {
+        GLStateBridge.onBindVertexArray(array);
+    }
+
+    @Inject(method = "_glUseProgram", at = @At("HEAD"), remap = false)
+    private static void onUseProgram(int program, CallbackInfo ci) {
+        GLStateBridge.onUseProgram(program);
+    }
+}
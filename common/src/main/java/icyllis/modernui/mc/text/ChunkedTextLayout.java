@@ -0,0 +1,314 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2025 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.mc.text;
+
+import icyllis.modernui.mc.MuiModApi;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import net.minecraft.ChatFormatting;
+import net.minecraft.network.chat.FormattedText;
+import net.minecraft.network.chat.Style;
+import org.jetbrains.annotations.ApiStatus;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A long text split into paragraphs at hard line breaks (LINE_FEED). Instead of
+ * shaping the whole text as one {@link TextLayout}, each paragraph is looked up
+ * only when a query reaches it, and is cached by {@link TextLayoutEngine} as an
+ * independent entry. Bidi analysis is per paragraph anyway.
+ * <p>
+ * Line feeds themselves are not measured. Formatting codes are carried over from
+ * one paragraph to the next, the same as laying out the whole text.
+ * <p>
+ * This object holds no layout, so it remains valid after the engine is reloaded.
+ *
+ * @see ModernStringSplitter
+ */
+@ApiStatus.Internal
+public final class ChunkedTextLayout {
+
+    /**
+     * Texts shorter than this number of chars are always laid out as a whole.
+     */
+    public static final int CHUNK_THRESHOLD = 1024;
+
+    private final TextLayoutEngine mEngine;
+
+    // String or FormattedText
+    private final Object mSource;
+    private final Style mBase;
+
+    // vanilla text only, the source index of each paragraph start, and length + 1
+    private final int[] mStarts;
+    // vanilla text only, the base style of each paragraph
+    private final Style[] mStyles;
+
+    // lazily created String for vanilla text, or FormattedText
+    private final Object[] mParagraphs;
+
+    private ChunkedTextLayout(TextLayoutEngine engine, Object source, Style base,
+                              int[] starts, Style[] styles, Object[] paragraphs) {
+        mEngine = engine;
+        mSource = source;
+        mBase = base;
+        mStarts = starts;
+        mStyles = styles;
+        mParagraphs = paragraphs;
+    }
+
+    /**
+     * Split a vanilla text that may contain formatting codes.
+     *
+     * @param engine the layout engine
+     * @param text   the source text
+     * @param base   the base style
+     * @return the chunked text, or null if the text is short or has a single paragraph
+     */
+    @Nullable
+    public static ChunkedTextLayout ofVanilla(@Nonnull TextLayoutEngine engine,
+                                              @Nonnull String text, @Nonnull Style base) {
+        final int length = text.length();
+        if (length < CHUNK_THRESHOLD) {
+            return null;
+        }
+        IntArrayList starts = null;
+        ArrayList<Style> styles = null;
+        Style currStyle = base;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == ChatFormatting.PREFIX_CODE) {
+                i++;
+                if (i < length) {
+                    ChatFormatting formatting = MuiModApi.getFormattingByCode(text.charAt(i));
+                    if (formatting != null) {
+                        currStyle = formatting == ChatFormatting.RESET ? base :
+                                currStyle.applyLegacyFormat(formatting);
+                    }
+                }
+                continue;
+            }
+            if (c == '\n') {
+                if (starts == null) {
+                    starts = new IntArrayList();
+                    styles = new ArrayList<>();
+                    starts.add(0);
+                    styles.add(base);
+                }
+                starts.add(i + 1);
+                styles.add(currStyle);
+            }
+        }
+        if (starts == null) {
+            return null;
+        }
+        starts.add(length + 1);
+        return new ChunkedTextLayout(engine, text, base, starts.toIntArray(),
+                styles.toArray(new Style[0]), new Object[styles.size()]);
+    }
+
+    /**
+     * Split a formatted text, formatting codes in its contents are also carried
+     * over to the next paragraph.
+     *
+     * @param engine the layout engine
+     * @param text   the source text
+     * @param base   the base style
+     * @return the chunked text, or null if the text is short or has a single paragraph
+     */
+    @Nullable
+    public static ChunkedTextLayout ofFormatted(@Nonnull TextLayoutEngine engine,
+                                                @Nonnull FormattedText text, @Nonnull Style base) {
+        // a cheap pass first, most formatted texts are short
+        final int[] length = {0};
+        final boolean[] hasLineFeed = {false};
+        text.visit(string -> {
+            length[0] += string.length();
+            if (!hasLineFeed[0]) {
+                hasLineFeed[0] = string.indexOf('\n') >= 0;
+            }
+            return hasLineFeed[0] && length[0] >= CHUNK_THRESHOLD
+                    ? FormattedText.STOP_ITERATION
+                    : Optional.empty();
+        });
+        if (!hasLineFeed[0] || length[0] < CHUNK_THRESHOLD) {
+            return null;
+        }
+        final List<FormattedText> paragraphs = new ArrayList<>();
+        final List<FormattedText> pieces = new ArrayList<>();
+        text.visit((style, string) -> {
+            Style currStyle = style;
+            Style pieceStyle = style;
+            int pieceStart = 0;
+            for (int i = 0, e = string.length(); i < e; i++) {
+                char c = string.charAt(i);
+                if (c == ChatFormatting.PREFIX_CODE) {
+                    i++;
+                    if (i < e) {
+                        ChatFormatting formatting = MuiModApi.getFormattingByCode(string.charAt(i));
+                        if (formatting != null) {
+                            currStyle = formatting == ChatFormatting.RESET ? style :
+                                    currStyle.applyLegacyFormat(formatting);
+                        }
+                    }
+                    continue;
+                }
+                if (c == '\n') {
+                    if (i > pieceStart) {
+                        pieces.add(new ModernStringSplitter.LineComponent(
+                                string.substring(pieceStart, i), pieceStyle));
+                    }
+                    paragraphs.add(FormattedText.composite(List.copyOf(pieces)));
+                    pieces.clear();
+                    // the formatting codes before the line feed are no longer in the string
+                    pieceStyle = currStyle;
+                    pieceStart = i + 1;
+                }
+            }
+            if (string.length() > pieceStart) {
+                pieces.add(new ModernStringSplitter.LineComponent(
+                        string.substring(pieceStart), pieceStyle));
+            }
+            return Optional.empty(); // continue
+        }, base);
+        paragraphs.add(FormattedText.composite(List.copyOf(pieces)));
+        if (paragraphs.size() < 2) {
+            // the line feed was escaped by a formatting code
+            return null;
+        }
+        return new ChunkedTextLayout(engine, text, base, null, null,
+                paragraphs.toArray());
+    }
+
+    /**
+     * @return true if this was created from the given vanilla text and base style
+     */
+    public boolean matches(@Nonnull String text, @Nonnull Style base) {
+        return mStarts != null && (mSource == text || mSource.equals(text)) && mBase.equals(base);
+    }
+
+    /**
+     * @return true if this was created from the given formatted text and base style
+     */
+    public boolean matches(@Nonnull FormattedText text, @Nonnull Style base) {
+        return mSource == text && mBase.equals(base);
+    }
+
+    public int getParagraphCount() {
+        return mParagraphs.length;
+    }
+
+    /**
+     * Vanilla text only.
+     *
+     * @return the source index of the paragraph start, inclusive
+     */
+    public int getParagraphStart(int paragraph) {
+        return mStarts[paragraph];
+    }
+
+    /**
+     * Vanilla text only.
+     *
+     * @return the source index of the paragraph end, exclusive, excluding the line feed
+     */
+    public int getParagraphEnd(int paragraph) {
+        return mStarts[paragraph + 1] - 1;
+    }
+
+    /**
+     * Vanilla text only.
+     *
+     * @return the style at the paragraph start, including preceding formatting codes
+     */
+    @Nonnull
+    public Style getParagraphStyle(int paragraph) {
+        return mStyles[paragraph];
+    }
+
+    /**
+     * Formatted text only.
+     *
+     * @return the paragraph as resolved formatted text, its base style is empty
+     */
+    @Nonnull
+    public FormattedText getParagraph(int paragraph) {
+        return (FormattedText) mParagraphs[paragraph];
+    }
+
+    /**
+     * Find or create the layout of a paragraph. This may be called off the render
+     * thread, then the engine will not cache the layout.
+     *
+     * @param paragraph    the paragraph index
+     * @param computeFlags the compute flags
+     * @return the layout of the paragraph, without the line feed
+     */
+    @Nonnull
+    public TextLayout getParagraphLayout(int paragraph, int computeFlags) {
+        if (mStarts == null) {
+            return mEngine.lookupFormattedLayout((FormattedText) mParagraphs[paragraph],
+                    Style.EMPTY, computeFlags);
+        }
+        String text = (String) mParagraphs[paragraph];
+        if (text == null) {
+            text = ((String) mSource).substring(getParagraphStart(paragraph), getParagraphEnd(paragraph));
+            mParagraphs[paragraph] = text;
+        }
+        return mEngine.lookupVanillaLayout(text, mStyles[paragraph], computeFlags);
+    }
+
+    /**
+     * Vanilla text only. Convert an index of the paragraph layout into the source index.
+     * Formatting codes belong to the next grapheme cluster in logical order.
+     *
+     * @param paragraph  the paragraph index
+     * @param stripIndex the char index without formatting codes
+     * @return the source index
+     */
+    public int getSourceIndex(int paragraph, int stripIndex) {
+        final String text = (String) mSource;
+        final int end = getParagraphEnd(paragraph);
+        int i = getParagraphStart(paragraph);
+        for (int count = 0; i < end && count < stripIndex; i++) {
+            if (text.charAt(i) == ChatFormatting.PREFIX_CODE) {
+                i++;
+            } else {
+                count++;
+            }
+        }
+        return Math.min(i, end);
+    }
+
+    /**
+     * Lay out all paragraphs and get the total advance.
+     *
+     * @return the sum of paragraph advances in GUI scaled pixels
+     */
+    public float getTotalAdvance() {
+        float advance = 0;
+        for (int i = 0; i < mParagraphs.length; i++) {
+            advance += getParagraphLayout(i, 0).getTotalAdvance();
+        }
+        return advance;
+    }
+}
@@ -19,14 +19,9 @@
 package icyllis.modernui.mc.text;
 
 import icyllis.arc3d.core.MathUtil;
-import icyllis.modernui.graphics.text.CharSequenceBuilder;
-import icyllis.modernui.util.Pools;
-import it.unimi.dsi.fastutil.ints.IntArrayList;
-import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import net.minecraft.ChatFormatting;
 import net.minecraft.network.chat.FormattedText;
 import net.minecraft.network.chat.Style;
-import net.minecraft.resources.ResourceLocation;
 import net.minecraft.util.FormattedCharSequence;
 import net.minecraft.util.FormattedCharSink;
 
@@ -39,6 +34,10 @@ import java.util.Optional;
  * {@link net.minecraft.util.FormattedCharSequence} to build multi-component texts that
  * match the vanilla's non-parallel style transition mechanism. Fast digit replacement
  * is not applicable here.
+ * <p>
+ * The texts of all components are concatenated into a single char array, and each
+ * component is a style run in the run table. The hash code is the same as if each
+ * component text were a String.
  *
  * @author BloCamLimb
  * @see CharacterStyle
@@ -47,58 +46,44 @@ import java.util.Optional;
 public class FormattedLayoutKey {
 
     /**
-     * Texts use String as their backing store, none of them contains {@link ChatFormatting} codes.
+     * Texts of all components, none of them contains {@link ChatFormatting} codes.
      */
-    private String[] mTexts;
+    private char[] mChars;
 
     /**
-     * References to the font set which layers are decorated.
+     * Packed style runs, the end index of the text in {@link #mChars} followed by
+     * a packed field that contains RGB color and appearance-affecting bit flags.
      *
-     * @see Style#getFont()
+     * @see CharacterStyle#flatten(Style)
      */
-    private Object[] mFonts;
+    private int[] mRuns;
 
     /**
-     * Packed fields that contain RGB color and appearance-affecting bit flags
-     * which layers are decorated.
+     * References to the font set which layers are decorated.
      *
-     * @see CharacterStyle#flatten(Style)
+     * @see Style#getFont()
      */
-    private int[] mCodes;
+    private Object[] mFonts;
 
     /**
-     * Cached hash code.
+     * Hash code computed when the key is built.
      */
     int mHash;
 
     private FormattedLayoutKey() {
     }
 
-    private FormattedLayoutKey(String[] texts,
-                               Object[] fonts,
-                               int[] codes, int hash) {
-        mTexts = texts;
+    private FormattedLayoutKey(char[] chars, int[] runs,
+                               Object[] fonts, int hash) {
+        mChars = chars;
+        mRuns = runs;
         mFonts = fonts;
-        mCodes = codes;
         mHash = hash;
     }
 
     @Override
     public int hashCode() {
-        int h = mHash;
-
-        if (h == 0) {
-            h = 1;
-            var codes = mCodes;
-            for (int i = 0, e = codes.length; i < e; i++) {
-                h = 31 * h + mTexts[i].hashCode();
-                h = 31 * h + mFonts[i].hashCode();
-                h = 31 * h + codes[i];
-            }
-            mHash = h;
-        }
-
-        return h;
+        return mHash;
     }
 
     @Override
@@ -107,17 +92,18 @@ public class FormattedLayoutKey {
             return false;
         }
         FormattedLayoutKey key = (FormattedLayoutKey) o;
-        return Arrays.equals(mCodes, key.mCodes) &&
+        return mHash == key.mHash &&
+                Arrays.equals(mRuns, key.mRuns) &&
                 Arrays.equals(mFonts, key.mFonts) &&
-                Arrays.equals(mTexts, key.mTexts);
+                Arrays.equals(mChars, key.mChars);
     }
 
     @Override
     public String toString() {
         return "FormattedLayoutKey{" +
-                "mTexts=" + Arrays.toString(mTexts) +
+                "mChars=" + new String(mChars) +
+                ", mRuns=" + Arrays.toString(mRuns) +
                 ", mFonts=" + Arrays.toString(mFonts) +
-                ", mCodes=" + Arrays.toString(mCodes) +
                 ", mHash=" + mHash +
                 '}';
     }
@@ -126,25 +112,29 @@ public class FormattedLayoutKey {
      * @return approximate memory usage
      */
     public int getMemorySize() {
-        int size = 0;
-        // take copied buffers into account
-        for (CharSequence s : mTexts) {
-            size += MathUtil.align4(s.length()) << 1;
-        }
+        int size = 16 + (MathUtil.align4(mChars.length) << 1);
+        size += 16 + (MathUtil.align2(mRuns.length) << 2);
         // shared pointers are memoryless, see JDK memory layout
-        size += (16 + (MathUtil.align2(mTexts.length) << 2)) * 3;
+        size += 16 + (MathUtil.align2(mFonts.length) << 2);
         return size + 32;
     }
 
     /**
      * Designed for performance, this also ensures hashCode() and equals() of Key
-     * strictly matched in various cases.
+     * strictly matched in various cases. The buffers are reused by all lookups,
+     * building and comparing do not allocate.
      */
     public static class Lookup extends FormattedLayoutKey {
 
-        private final ObjectArrayList<CharSequence> mTexts = new ObjectArrayList<>();
-        private final ObjectArrayList<ResourceLocation> mFonts = new ObjectArrayList<>();
-        private final IntArrayList mCodes = new IntArrayList();
+        private char[] mChars = new char[256];
+        private int mLength;
+
+        private int[] mRuns = new int[32];
+        private Object[] mFonts = new Object[16];
+        private int mRunCount;
+
+        // String hash of the current run
+        private int mRunHash;
 
         private final ContentBuilder mContentBuilder = new ContentBuilder();
 
@@ -156,9 +146,13 @@ public class FormattedLayoutKey {
             @Nonnull
             @Override
             public Optional<Object> accept(@Nonnull Style style, @Nonnull String content) {
-                mTexts.add(content);
-                mFonts.add(style.getFont());
-                mCodes.add(CharacterStyle.flatten(style));
+                final int length = content.length();
+                ensureChars(length);
+                content.getChars(0, length, mChars, mLength);
+                mLength += length;
+                // String caches its hash
+                mRunHash = content.hashCode();
+                addRun(style);
                 return Optional.empty(); // continue
             }
         }
@@ -172,63 +166,80 @@ public class FormattedLayoutKey {
          */
         private class SequenceBuilder implements FormattedCharSink {
 
-            private final Pools.Pool<CharSequenceBuilder> mPool = Pools.newSimplePool(20);
-
-            private CharSequenceBuilder mBuilder = null;
             private Style mStyle = null;
-
-            private void allocate() {
-                mBuilder = mPool.acquire();
-                if (mBuilder == null) {
-                    mBuilder = new CharSequenceBuilder();
-                } else {
-                    mBuilder.clear();
-                }
-            }
+            private int mRunStart;
 
             @Override
             public boolean accept(int index, @Nonnull Style style, int codePoint) {
                 if (mStyle == null) {
-                    allocate();
                     mStyle = style;
                 } else if (!CharacterStyle.equalsForTextLayout(mStyle, style)) {
                     // there's a style transition, break here and append last component
-                    if (!mBuilder.isEmpty()) {
-                        mTexts.add(mBuilder);
-                        mFonts.add(mStyle.getFont());
-                        mCodes.add(CharacterStyle.flatten(mStyle));
-                        allocate();
+                    if (mLength != mRunStart) {
+                        addRun(mStyle);
+                        mRunStart = mLength;
                     }
                     mStyle = style;
                 }
-                mBuilder.addCodePoint(codePoint);
+                ensureChars(2);
+                final char[] chars = mChars;
+                int h = mRunHash;
+                if (Character.isBmpCodePoint(codePoint)) {
+                    chars[mLength++] = (char) codePoint;
+                    h = 31 * h + codePoint;
+                } else {
+                    char hi = Character.highSurrogate(codePoint);
+                    char lo = Character.lowSurrogate(codePoint);
+                    chars[mLength++] = hi;
+                    chars[mLength++] = lo;
+                    h = 31 * (31 * h + hi) + lo;
+                }
+                mRunHash = h;
                 return true; // continue
             }
 
             private void end() {
                 // append last component
-                if (mBuilder != null && !mBuilder.isEmpty()) {
-                    mTexts.add(mBuilder);
-                    mFonts.add(mStyle.getFont());
-                    mCodes.add(CharacterStyle.flatten(mStyle));
+                if (mStyle != null && mLength != mRunStart) {
+                    addRun(mStyle);
                 }
-                // we later make copies to generate a Key, so we can release these builders
-                // back into the pool now
-                for (CharSequence s : mTexts) {
-                    mPool.release((CharSequenceBuilder) s);
-                }
-                mBuilder = null;
                 mStyle = null;
+                mRunStart = 0;
+            }
+        }
+
+        private void ensureChars(int additional) {
+            if (mLength + additional > mChars.length) {
+                mChars = Arrays.copyOf(mChars, Math.max(mLength + additional, mChars.length << 1));
+            }
+        }
+
+        private void addRun(@Nonnull Style style) {
+            final int code = CharacterStyle.flatten(style);
+            final Object font = style.getFont();
+            if (mRunCount == mFonts.length) {
+                mFonts = Arrays.copyOf(mFonts, mRunCount << 1);
+                mRuns = Arrays.copyOf(mRuns, mRunCount << 2);
             }
+            mRuns[mRunCount << 1] = mLength;
+            mRuns[(mRunCount << 1) | 1] = code;
+            mFonts[mRunCount++] = font;
+            // same as the hash code of a list of String, font and code triples
+            int h = mHash;
+            h = 31 * h + mRunHash;
+            h = 31 * h + font.hashCode();
+            h = 31 * h + code;
+            mHash = h;
+            mRunHash = 0;
         }
 
         private void reset() {
-            assert mTexts.size() == mFonts.size() &&
-                    mTexts.size() == mCodes.size();
-            mTexts.clear();
-            mFonts.clear();
-            mCodes.clear();
-            mHash = 0;
+            // release references to fonts
+            Arrays.fill(mFonts, 0, mRunCount, null);
+            mLength = 0;
+            mRunCount = 0;
+            mRunHash = 0;
+            mHash = 1;
         }
 
         /**
@@ -254,22 +265,7 @@ public class FormattedLayoutKey {
 
         @Override
         public int hashCode() {
-            int h = mHash;
-
-            if (h == 0) {
-                h = 1;
-                final Object[] texts = mTexts.elements();
-                final Object[] fonts = mFonts.elements();
-                var codes = mCodes.elements();
-                for (int i = 0, e = mCodes.size(); i < e; i++) {
-                    h = 31 * h + texts[i].hashCode();
-                    h = 31 * h + fonts[i].hashCode();
-                    h = 31 * h + codes[i];
-                }
-                mHash = h;
-            }
-
-            return h;
+            return mHash;
         }
 
         @Override
@@ -278,38 +274,35 @@ public class FormattedLayoutKey {
                 return false;
             }
             FormattedLayoutKey key = (FormattedLayoutKey) o;
-            final int length = mTexts.size();
-            return length == key.mTexts.length &&
-                    Arrays.equals(mCodes.elements(), 0, length, key.mCodes, 0, length) &&
-                    Arrays.equals(mFonts.elements(), 0, length, key.mFonts, 0, length) &&
-                    Arrays.equals(mTexts.elements(), 0, length, key.mTexts, 0, length);
+            final int runCount = mRunCount;
+            final int length = mLength;
+            return mHash == key.mHash &&
+                    runCount == key.mFonts.length &&
+                    length == key.mChars.length &&
+                    Arrays.equals(mRuns, 0, runCount << 1, key.mRuns, 0, runCount << 1) &&
+                    Arrays.equals(mFonts, 0, runCount, key.mFonts, 0, runCount) &&
+                    Arrays.equals(mChars, 0, length, key.mChars, 0, length);
         }
 
         @Override
         public String toString() {
             return "Lookup{" +
-                    "mTexts=" + mTexts +
-                    ", mFonts=" + mFonts +
-                    ", mCodes=" + mCodes +
+                    "mChars=" + new String(mChars, 0, mLength) +
+                    ", mRuns=" + Arrays.toString(Arrays.copyOf(mRuns, mRunCount << 1)) +
+                    ", mFonts=" + Arrays.toString(Arrays.copyOf(mFonts, mRunCount)) +
                     '}';
         }
 
         /**
-         * Make a cache key. We always use String.hashCode() implementation.
+         * Make a cache key, each table is copied into one compact array.
          *
          * @return a storage key
          */
         @Nonnull
         public FormattedLayoutKey copy() {
-            final int length = mTexts.size();
-            String[] texts = new String[length];
-            for (int i = 0; i < length; i++) {
-                // String returns self, CharSequenceBuilder returns a new String
-                texts[i] = mTexts.get(i).toString();
-            }
-            return new FormattedLayoutKey(texts,
-                    mFonts.toArray(),
-                    mCodes.toIntArray(), mHash);
+            return new FormattedLayoutKey(Arrays.copyOf(mChars, mLength),
+                    Arrays.copyOf(mRuns, mRunCount << 1),
+                    Arrays.copyOf(mFonts, mRunCount), mHash);
         }
     }
 }
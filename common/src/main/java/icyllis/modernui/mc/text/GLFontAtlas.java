@@ -335,11 +335,17 @@ public class GLFontAtlas implements AutoCloseable {
         return mMaskFormat;
     }
 
-    public boolean compact() {
+    /**
+     * Clears some chunks if the atlas reaches 1/4 of max area and is mostly covered.
+     * Glyphs in cleared chunks are invalidated and must be looked up again.
+     *
+     * @return the atlas area reclaimed in bytes, 0 if nothing is cleared
+     */
+    public long compact() {
         if (mWidth < mMaxTextureSize &&
                 mHeight < mMaxTextureSize) {
             // not reach 1/4 of max area
-            return false;
+            return 0;
         }
         assert mChunks.size() > 1;
         //TODO this implementation is not ideal and we need a review
@@ -351,10 +357,11 @@ public class GLFontAtlas implements AutoCloseable {
         // clear 1/4 coverage of max
         double maxCoverage = chunksPerDim * chunksPerDim * 0.25f;
         if (coverage <= maxCoverage) {
-            return false;
+            return 0;
         }
         double coverageToClean = Math.max(coverage - maxCoverage, maxCoverage);
-        boolean cleared = false;
+        final int bpp = mMaskFormat == Engine.MASK_FORMAT_ARGB ? 4 : 1;
+        long reclaimed = 0;
         // clear 16 chunks at most
         for (int iChunk = 0;
              iChunk < Math.min(16, mChunks.size()) && coverageToClean > 0;
@@ -368,6 +375,7 @@ public class GLFontAtlas implements AutoCloseable {
                 continue;
             }
             coverageToClean -= cc;
+            reclaimed += (long) (cc * CHUNK_SIZE * CHUNK_SIZE) * bpp;
             chunk.packer.clear();
             float cu1 = (float) chunk.x / mWidth;
             float cv1 = (float) chunk.y / mHeight;
@@ -381,9 +389,8 @@ public class GLFontAtlas implements AutoCloseable {
                     glyph.x = Integer.MIN_VALUE;
                 }
             }
-            cleared = true;
         }
-        return cleared;
+        return reclaimed;
     }
 
     public void debug(String name, @Nullable String path) {
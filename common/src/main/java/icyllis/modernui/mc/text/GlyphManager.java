@@ -62,6 +62,15 @@ public class GlyphManager {
 
     public static final Marker MARKER = MarkerManager.getMarker("Glyph");
 
+    /**
+     * Atlases that can be compacted, see {@link #compactAtlas(int)}.
+     */
+    public static final int
+            ATLAS_FONT = 0,
+            ATLAS_EMOJI = 1,
+            ATLAS_BITMAP = 2;
+    public static final int ATLAS_COUNT = 3;
+
     /**
      * The width in pixels of a transparent border between individual glyphs in the atlas.
      * This border keeps neighboring glyphs from "bleeding through" when mipmap used.
@@ -112,7 +121,17 @@ public class GlyphManager {
      */
     private HashMap<java.awt.Font, GlyphStrike> mFontTable = new HashMap<>();
     private final Function<java.awt.Font, GlyphStrike> mFontTableMapper =
-            f -> new GlyphStrike(mFontTable.size() + 1);
+            f -> {
+                countStrike();
+                return new GlyphStrike(mFontTable.size() + 1);
+            };
+
+    // strike creation metrics, render thread only
+    private long mStrikesCreated;
+    private long mStrikeWindowStart;
+    private int mStrikesInWindow;
+    private int mStrikesLastSecond;
+    private int mPeakStrikesPerSecond;
 
     private final Object2IntOpenHashMap<EmojiFont> mEmojiFontTable = new Object2IntOpenHashMap<>();
     private final ToIntFunction<EmojiFont> mEmojiFontTableMapper =
@@ -388,6 +407,18 @@ public class GlyphManager {
         return getCurrentTexture(Engine.MASK_FORMAT_ARGB);
     }
 
+    /**
+     * @return the texture of the atlas shared by bitmap fonts that fit in atlas, or 0
+     * @see BitmapFont#fitsInAtlas()
+     */
+    public int getBitmapTexture() {
+        GLTexture texture;
+        if (mBitmapAtlas != null && (texture = mBitmapAtlas.mTexture) != null) {
+            return texture.getHandle();
+        }
+        return 0;
+    }
+
     @RenderThread
     public int getCurrentTexture(BitmapFont font) {
         if (font.nothingToDraw()) {
@@ -409,29 +440,46 @@ public class GlyphManager {
      */
     @RenderThread
     public void compact() {
-        boolean didWork = false;
-        if (mFontAtlas != null && mFontAtlas.compact()) {
-            var info = new AtlasInvalidationInfo(Engine.MASK_FORMAT_A8, false);
-            for (var callback : mAtlasInvalidationCallbacks) {
-                callback.accept(info);
-            }
-            didWork = true;
+        for (int which = 0; which < ATLAS_COUNT; which++) {
+            compactAtlas(which);
         }
-        if (mEmojiAtlas != null && mEmojiAtlas.compact()) {
-            var info = new AtlasInvalidationInfo(Engine.MASK_FORMAT_ARGB, false);
-            for (var callback : mAtlasInvalidationCallbacks) {
-                callback.accept(info);
+    }
+
+    /**
+     * Compact the given atlas immediately. Each atlas can be compacted in a separate
+     * frame to spread the cost, see {@link #ATLAS_FONT}, {@link #ATLAS_EMOJI} and
+     * {@link #ATLAS_BITMAP}.
+     *
+     * @return the atlas area reclaimed in bytes
+     */
+    @RenderThread
+    public long compactAtlas(int which) {
+        final GLFontAtlas atlas;
+        final int maskFormat;
+        switch (which) {
+            case ATLAS_FONT -> {
+                atlas = mFontAtlas;
+                maskFormat = Engine.MASK_FORMAT_A8;
+            }
+            case ATLAS_EMOJI -> {
+                atlas = mEmojiAtlas;
+                maskFormat = Engine.MASK_FORMAT_ARGB;
             }
-            didWork = true;
+            case ATLAS_BITMAP -> {
+                atlas = mBitmapAtlas;
+                maskFormat = Engine.MASK_FORMAT_ARGB;
+            }
+            default -> throw new IllegalArgumentException();
+        }
+        if (atlas == null) {
+            return 0;
         }
-        if (mBitmapAtlas != null && mBitmapAtlas.compact()) {
-            var info = new AtlasInvalidationInfo(Engine.MASK_FORMAT_ARGB, false);
+        long reclaimed = atlas.compact();
+        if (reclaimed > 0) {
+            var info = new AtlasInvalidationInfo(maskFormat, false);
             for (var callback : mAtlasInvalidationCallbacks) {
                 callback.accept(info);
             }
-            didWork = true;
-        }
-        if (didWork) {
             // Some glyph have been evicted, also remove them from fast char sets
             for (var glyphStrike : mFontTable.values()) {
                 for (var fastCharSet : glyphStrike.mFastCharMap.values()) {
@@ -444,6 +492,7 @@ public class GlyphManager {
                 }
             }
         }
+        return reclaimed;
     }
 
     public void debug() {
@@ -459,7 +508,60 @@ public class GlyphManager {
         }
     }
 
+    // count strikes created in each one-second window
+    private void countStrike() {
+        mStrikesCreated++;
+        long now = System.nanoTime();
+        if (now - mStrikeWindowStart >= 1_000_000_000L) {
+            // the last window is valid only if it's just before this
+            mStrikesLastSecond = now - mStrikeWindowStart < 2_000_000_000L ? mStrikesInWindow : 0;
+            mStrikeWindowStart = now;
+            mStrikesInWindow = 0;
+        }
+        mStrikesInWindow++;
+        mPeakStrikesPerSecond = Math.max(mPeakStrikesPerSecond, mStrikesInWindow);
+    }
+
+    /**
+     * @return the number of glyphs cached in all atlases
+     */
+    public int getAtlasGlyphCount() {
+        int count = 0;
+        if (mFontAtlas != null) {
+            count += mFontAtlas.getGlyphCount();
+        }
+        if (mEmojiAtlas != null) {
+            count += mEmojiAtlas.getGlyphCount();
+        }
+        if (mBitmapAtlas != null) {
+            count += mBitmapAtlas.getGlyphCount();
+        }
+        return count;
+    }
+
+    /**
+     * @return the GPU memory size of all atlases in bytes
+     */
+    public long getAtlasMemorySize() {
+        long size = 0;
+        if (mFontAtlas != null) {
+            size += mFontAtlas.getMemorySize();
+        }
+        if (mEmojiAtlas != null) {
+            size += mEmojiAtlas.getMemorySize();
+        }
+        if (mBitmapAtlas != null) {
+            size += mBitmapAtlas.getMemorySize();
+        }
+        return size;
+    }
+
     public void dumpInfo(PrintWriter pw) {
+        long sinceWindow = System.nanoTime() - mStrikeWindowStart;
+        int lastSecond = sinceWindow < 1_000_000_000L ? mStrikesLastSecond
+                : sinceWindow < 2_000_000_000L ? mStrikesInWindow : 0;
+        pw.printf("GlyphManager: Strikes=%d, TotalStrikesCreated=%d, StrikesLastSecond=%d, PeakStrikesPerSecond=%d\n",
+                mFontTable.size(), mStrikesCreated, lastSecond, mPeakStrikesPerSecond);
         if (mFontAtlas != null) {
             mFontAtlas.dumpInfo(pw, "FontAtlas");
         }
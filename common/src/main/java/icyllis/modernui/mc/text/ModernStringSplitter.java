@@ -27,7 +27,6 @@ import net.minecraft.client.ComponentCollector;
 import net.minecraft.client.StringSplitter;
 import net.minecraft.network.chat.*;
 import net.minecraft.util.*;
-import org.apache.commons.lang3.mutable.MutableObject;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -42,6 +41,12 @@ public final class ModernStringSplitter extends StringSplitter {
 
     private final TextLayoutEngine mEngine;
 
+    // the last long text split into paragraphs, queries on it usually come in succession
+    private volatile ChunkedTextLayout mLastChunked;
+
+    // the style runs of the last queried text instance, hover queries repeat every frame
+    private volatile TextHitIndex.StyleRuns mLastStyleRuns;
+
     //private final MutableFloat v = new MutableFloat();
 
     /**
@@ -85,6 +90,10 @@ public final class ModernStringSplitter extends StringSplitter {
         if (text == null) {
             return 0;
         }
+        final ChunkedTextLayout chunked = chunkText(text, Style.EMPTY);
+        if (chunked != null) {
+            return chunked.getTotalAdvance();
+        }
         return mEngine.lookupVanillaLayout(text).getTotalAdvance();
     }
 
@@ -209,38 +218,14 @@ public final class ModernStringSplitter extends StringSplitter {
      * If forwards=false, returns the minimum index from the end instead (but still
      * indexing from the start).
      *
-     * @param layout   the measured text to break
+     * @param layout   the measured text to break, with advances computed
      * @param forwards the leading position
      * @param width    the max width in GUI scaled pixels
      * @return break index (without formatting codes)
      */
     public static int breakText(@Nonnull TextLayout layout, boolean forwards, float width,
                                 boolean trimSpace) {
-        final int limit = layout.getCharCount();
-        if (forwards) {
-            // TruncateAt.END
-            int i = 0;
-            while (i < limit) {
-                width -= layout.getAdvances()[i];
-                if (width < 0.0f) break;
-                i++;
-            }
-            while (i > 0 && (trimSpace && layout.getTextBuf()[i - 1] == ' ')) i--;
-            return i;
-        } else {
-            // TruncateAt.START
-            int i = limit - 1;
-            while (i >= 0) {
-                width -= layout.getAdvances()[i];
-                if (width < 0.0f) break;
-                i--;
-            }
-            while (i < limit - 1 && ((trimSpace && layout.getTextBuf()[i + 1] == ' ') ||
-                    layout.getAdvances()[i + 1] == 0.0f)) {
-                i++;
-            }
-            return i + 1;
-        }
+        return layout.getHitIndex().breakText(forwards, width, trimSpace);
     }
 
     /**
@@ -263,6 +248,11 @@ public final class ModernStringSplitter extends StringSplitter {
             return 0;
         }
 
+        final ChunkedTextLayout chunked = chunkText(text, style);
+        if (chunked != null) {
+            return breakText(chunked, width, forwards);
+        }
+
         final TextLayout layout = mEngine.lookupVanillaLayout(text, style,
                 TextLayoutEngine.COMPUTE_ADVANCES);
         if (width >= layout.getTotalAdvance()) {
@@ -285,6 +275,39 @@ public final class ModernStringSplitter extends StringSplitter {
         return breakIndex;
     }
 
+    /**
+     * Break a chunked text, only the paragraphs before the break index are laid out
+     * in forwards, or after the break index in backwards.
+     *
+     * @return break index in the source text
+     */
+    private static int breakText(@Nonnull ChunkedTextLayout chunked, float width, boolean forwards) {
+        final int count = chunked.getParagraphCount();
+        if (forwards) {
+            for (int i = 0; i < count; i++) {
+                final TextLayout layout = chunked.getParagraphLayout(i, TextLayoutEngine.COMPUTE_ADVANCES);
+                final float advance = layout.getTotalAdvance();
+                if (width >= advance) {
+                    width -= advance;
+                    continue;
+                }
+                return chunked.getSourceIndex(i, breakText(layout, true, width));
+            }
+            return chunked.getParagraphEnd(count - 1);
+        } else {
+            for (int i = count - 1; i >= 0; i--) {
+                final TextLayout layout = chunked.getParagraphLayout(i, TextLayoutEngine.COMPUTE_ADVANCES);
+                final float advance = layout.getTotalAdvance();
+                if (width >= advance) {
+                    width -= advance;
+                    continue;
+                }
+                return chunked.getSourceIndex(i, breakText(layout, false, width));
+            }
+            return 0;
+        }
+    }
+
     /**
      * Get trimmed length / size to width.
      * <p>
@@ -343,33 +366,30 @@ public final class ModernStringSplitter extends StringSplitter {
             return null;
         }
 
+        final ChunkedTextLayout chunked = chunkText(text);
+        if (chunked != null) {
+            // lay out the paragraphs up to the width only
+            for (int i = 0, e = chunked.getParagraphCount(); i < e; i++) {
+                final TextLayout layout = chunked.getParagraphLayout(i, TextLayoutEngine.COMPUTE_ADVANCES);
+                final float advance = layout.getTotalAdvance();
+                if (width >= advance) {
+                    width -= advance;
+                    continue;
+                }
+                return getStyleRuns(chunked.getParagraph(i), Style.EMPTY, layout)
+                        .styleAt(breakText(layout, /*forwards*/true, width, false));
+            }
+            return null;
+        }
+
         final TextLayout layout = mEngine.lookupFormattedLayout(text,
                 Style.EMPTY, TextLayoutEngine.COMPUTE_ADVANCES);
         if (width >= layout.getTotalAdvance()) {
             return null;
         }
 
-        final int breakIndex = breakText(layout, /*forwards*/true, width, false);
-
-        return text.visit(new FormattedText.StyledContentConsumer<Style>() {
-            private int mStripIndex;
-
-            @Nonnull
-            @Override
-            public Optional<Style> accept(@Nonnull Style style, @Nonnull String string) {
-                final int length = string.length();
-                for (int i = 0; i < length; i++) {
-                    if (string.charAt(i) == ChatFormatting.PREFIX_CODE) {
-                        i++;
-                        continue;
-                    }
-                    if (++mStripIndex > breakIndex) {
-                        return Optional.of(style); // stop iteration
-                    }
-                }
-                return Optional.empty(); // continue
-            }
-        }, Style.EMPTY).orElse(null); // null should not happen
+        return getStyleRuns(text, Style.EMPTY, layout)
+                .styleAt(breakText(layout, /*forwards*/true, width, false));
     }
 
     /**
@@ -397,22 +417,8 @@ public final class ModernStringSplitter extends StringSplitter {
             return null;
         }
 
-        final int breakIndex = breakText(layout, /*forwards*/true, width, false);
-
-        final MutableObject<Style> result = new MutableObject<>();
-        text.accept(new FormattedCharSink() {
-            private int mStripIndex;
-
-            @Override
-            public boolean accept(int index, @Nonnull Style style, int codePoint) {
-                if ((mStripIndex += Character.charCount(codePoint)) > breakIndex) {
-                    result.setValue(style);
-                    return false; // stop iteration
-                }
-                return true; // continue
-            }
-        });
-        return result.getValue();
+        return getStyleRuns(text, layout)
+                .styleAt(breakText(layout, /*forwards*/true, width, false));
     }
 
     /**
@@ -437,36 +443,36 @@ public final class ModernStringSplitter extends StringSplitter {
         }
 
         final int breakIndex = breakText(layout, /*forwards*/true, width);
+        final TextHitIndex.StyleRuns runs = getStyleRuns(text, style, layout);
+        final int k = runs.find(breakIndex);
+        if (k < 0) {
+            return FormattedText.EMPTY;
+        }
 
-        return text.visit(new FormattedText.StyledContentConsumer<FormattedText>() {
-            private final ComponentCollector mCollector = new ComponentCollector();
-            private int mSegmentIndex;
-
-            @Nonnull
-            @Override
-            public Optional<FormattedText> accept(@Nonnull Style sty, @Nonnull String string) {
-                final int length = string.length();
-                int stripIndex = 0;
-                for (int i = 0; i < length; i++) {
-                    if (string.charAt(i) == ChatFormatting.PREFIX_CODE) {
-                        i++;
-                        continue;
-                    }
-                    if (mSegmentIndex + ++stripIndex > breakIndex) {
-                        String substring = string.substring(0, stripIndex);
-                        if (!substring.isEmpty()) {
-                            mCollector.append(FormattedText.of(substring, sty));
-                        }
-                        return Optional.of(mCollector.getResultOrEmpty()); // stop iteration
-                    }
-                }
-                if (length > 0) {
-                    mCollector.append(FormattedText.of(string, sty));
-                }
-                mSegmentIndex += stripIndex;
-                return Optional.empty(); // continue
+        final String[] texts = runs.texts();
+        assert texts != null;
+        final ComponentCollector collector = new ComponentCollector();
+        for (int j = 0; j < k; j++) {
+            if (!texts[j].isEmpty()) {
+                collector.append(FormattedText.of(texts[j], runs.styles()[j]));
+            }
+        }
+        // formatting codes belong to the next grapheme cluster in logical order
+        final String string = texts[k];
+        int i = 0;
+        for (int stripIndex = breakIndex - runs.starts()[k], e = string.length();
+             i < e && stripIndex > 0; i++) {
+            if (string.charAt(i) == ChatFormatting.PREFIX_CODE) {
+                i++;
+            } else {
+                stripIndex--;
             }
-        }, style).orElse(text); // else the original text
+        }
+        if (i > 0) {
+            collector.append(FormattedText.of(string.substring(0, Math.min(i, string.length())),
+                    runs.styles()[k]));
+        }
+        return collector.getResultOrEmpty();
     }
 
     /**
@@ -487,6 +493,78 @@ public final class ModernStringSplitter extends StringSplitter {
 
     private static final int NOWHERE = 0xFFFFFFFF;
 
+    /**
+     * Build the style runs of a formatted text, reusing the last result if it was built
+     * from the same text instance and laid out as the same layout.
+     */
+    @Nonnull
+    private TextHitIndex.StyleRuns getStyleRuns(@Nonnull FormattedText text, @Nonnull Style base,
+                                                @Nonnull TextLayout layout) {
+        TextHitIndex.StyleRuns runs = mLastStyleRuns;
+        // runs of a sequence have no source strings
+        if (runs != null && runs.texts() != null && runs.matches(text, base, layout)) {
+            return runs;
+        }
+        runs = TextHitIndex.StyleRuns.build(text, base, layout);
+        mLastStyleRuns = runs;
+        return runs;
+    }
+
+    /**
+     * Build the style runs of a formatted sequence, reusing the last result if it was built
+     * from the same sequence instance and laid out as the same layout.
+     */
+    @Nonnull
+    private TextHitIndex.StyleRuns getStyleRuns(@Nonnull FormattedCharSequence sequence,
+                                                @Nonnull TextLayout layout) {
+        TextHitIndex.StyleRuns runs = mLastStyleRuns;
+        if (runs != null && runs.matches(sequence, Style.EMPTY, layout)) {
+            return runs;
+        }
+        runs = TextHitIndex.StyleRuns.build(sequence, layout);
+        mLastStyleRuns = runs;
+        return runs;
+    }
+
+    /**
+     * Split a long vanilla text into paragraphs, reusing the last result if possible.
+     *
+     * @return the chunked text, or null if it should be laid out as a whole
+     */
+    @Nullable
+    private ChunkedTextLayout chunkText(@Nonnull String text, @Nonnull Style base) {
+        if (text.length() < ChunkedTextLayout.CHUNK_THRESHOLD) {
+            return null;
+        }
+        ChunkedTextLayout chunked = mLastChunked;
+        if (chunked != null && chunked.matches(text, base)) {
+            return chunked;
+        }
+        chunked = ChunkedTextLayout.ofVanilla(mEngine, text, base);
+        if (chunked != null) {
+            mLastChunked = chunked;
+        }
+        return chunked;
+    }
+
+    /**
+     * Split a long formatted text into paragraphs, reusing the last result if possible.
+     *
+     * @return the chunked text, or null if it should be laid out as a whole
+     */
+    @Nullable
+    private ChunkedTextLayout chunkText(@Nonnull FormattedText text) {
+        ChunkedTextLayout chunked = mLastChunked;
+        if (chunked != null && chunked.matches(text, Style.EMPTY)) {
+            return chunked;
+        }
+        chunked = ChunkedTextLayout.ofFormatted(mEngine, text, Style.EMPTY);
+        if (chunked != null) {
+            mLastChunked = chunked;
+        }
+        return chunked;
+    }
+
     /**
      * Compute Unicode line breaking boundaries. If none, compute grapheme cluster boundaries.
      * Returns the maximum index that the accumulated width not exceeds the width.
@@ -505,6 +583,12 @@ public final class ModernStringSplitter extends StringSplitter {
         }
         width = Math.max(width, 0.0f);
 
+        final ChunkedTextLayout chunked = chunkText(text, base);
+        if (chunked != null) {
+            computeLineBreaks(chunked, text, width, base, consumer);
+            return;
+        }
+
         final TextLayout layout = mEngine.lookupVanillaLayout(text, base,
                 TextLayoutEngine.COMPUTE_ADVANCES | TextLayoutEngine.COMPUTE_LINE_BOUNDARIES);
         final char[] buf = layout.getTextBuf();
@@ -586,6 +670,97 @@ public final class ModernStringSplitter extends StringSplitter {
         }
     }
 
+    /**
+     * Line breaking of a chunked text, paragraph by paragraph. The line feed is included
+     * in the last line of its paragraph.
+     */
+    private static void computeLineBreaks(@Nonnull ChunkedTextLayout chunked, @Nonnull String text,
+                                          float width, @Nonnull Style base,
+                                          @Nonnull StringSplitter.LinePosConsumer consumer) {
+        for (int p = 0, count = chunked.getParagraphCount(); p < count; p++) {
+            final int start = chunked.getParagraphStart(p);
+            final int end = chunked.getParagraphEnd(p);
+            final int lineEnd = Math.min(end + 1, text.length());
+            final Style paraStyle = chunked.getParagraphStyle(p);
+            if (start == end) {
+                if (start < lineEnd) {
+                    consumer.accept(paraStyle, start, lineEnd);
+                }
+                continue;
+            }
+            final TextLayout layout = chunked.getParagraphLayout(p,
+                    TextLayoutEngine.COMPUTE_ADVANCES | TextLayoutEngine.COMPUTE_LINE_BOUNDARIES);
+            computeParagraphLineBreaks(layout, text, start, end, lineEnd,
+                    width, base, paraStyle, consumer);
+        }
+    }
+
+    /**
+     * Line breaking of one paragraph of a chunked text.
+     *
+     * @param layout    the layout of the paragraph, without the line feed
+     * @param text      the full source text
+     * @param start     the source index of the paragraph start
+     * @param end       the source index of the paragraph end, excluding the line feed
+     * @param lineEnd   the source index of the last line end, including the line feed
+     * @param paraStyle the style at the paragraph start
+     */
+    static void computeParagraphLineBreaks(@Nonnull TextLayout layout, @Nonnull String text,
+                                           int start, int end, int lineEnd,
+                                           float width, @Nonnull Style base, @Nonnull Style paraStyle,
+                                           @Nonnull StringSplitter.LinePosConsumer consumer) {
+        final int charCount = layout.getCharCount();
+        if (charCount == 0 || width >= layout.getTotalAdvance()) {
+            consumer.accept(paraStyle, start, lineEnd);
+            return;
+        }
+
+        // break points are relative to the paragraph layout, and the processor
+        // looks back at the last one, so each paragraph has its own
+        final LineProcessor lineBreaker = new LineProcessor(width);
+        lineBreaker.process(layout, layout.getTextBuf(), 0, charCount, 0);
+        final IntList result = lineBreaker.mBreakPoints;
+        int breakOffsetIndex = 0;
+        int breakPointOffset = breakOffsetIndex < result.size()
+                ? result.getInt(breakOffsetIndex++)
+                : Integer.MAX_VALUE;
+
+        int stripIndex = 0;
+        Style currStyle = paraStyle;
+        Style lastStyle = paraStyle;
+        int lastSubPos = start;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == ChatFormatting.PREFIX_CODE) {
+                i++;
+                if (i < end) {
+                    ChatFormatting formatting = MuiModApi.getFormattingByCode(text.charAt(i));
+                    if (formatting != null) {
+                        currStyle = formatting == ChatFormatting.RESET ? base :
+                                currStyle.applyLegacyFormat(formatting);
+                    }
+                }
+                continue;
+            }
+            // End index is exclusive, so ++index not index++
+            if (++stripIndex >= breakPointOffset) {
+                if (breakPointOffset >= charCount) {
+                    // the last line also takes trailing formatting codes and the line feed
+                    break;
+                }
+                consumer.accept(lastStyle, lastSubPos, i + 1);
+                lastSubPos = i + 1;
+                lastStyle = currStyle;
+                breakPointOffset = breakOffsetIndex < result.size()
+                        ? result.getInt(breakOffsetIndex++)
+                        : Integer.MAX_VALUE;
+            }
+        }
+        if (lastSubPos < lineEnd) {
+            consumer.accept(lastStyle, lastSubPos, lineEnd);
+        }
+    }
+
     /**
      * Compute Unicode line breaking boundaries. If none, compute grapheme cluster boundaries.
      * Returns the maximum index that the accumulated width not exceeds the width.
@@ -42,7 +42,6 @@ import javax.annotation.Nonnull;
 public final class ModernTextRenderer {
 
     public static final Vector3f SHADOW_OFFSET = new Vector3f(0.0F, 0.0F, 0.03F);
-    public static final Vector3f OUTLINE_OFFSET = new Vector3f(0.0F, 0.0F, 0.01F);
 
     /*
      * Render thread instance
@@ -144,8 +143,10 @@ public final class ModernTextRenderer {
         int mode = chooseMode(matrix, displayMode);
         boolean polygonOffset = displayMode == Font.DisplayMode.POLYGON_OFFSET;
 
-        if (layout.hasColorEmoji() && source instanceof MultiBufferSource.BufferSource) {
-            // performance impact
+        if (layout.hasColorEmoji() && source instanceof MultiBufferSource.BufferSource &&
+                !TextLayout.canCombineAtlases(mode, polygonOffset) &&
+                !TextLayout.canCombineSDF(mode, polygonOffset)) {
+            // performance impact, color emoji use another render type
             ((MultiBufferSource.BufferSource) source).endBatch(Sheets.signSheet());
         }
         // copy the matrix when needed
@@ -197,6 +198,12 @@ public final class ModernTextRenderer {
             }
         }
         if (dropShadow && sAllowShadow) {
+            if (!polygonOffset && !TextLayoutEngine.sCurrentInWorldRendering &&
+                    (mode == TextRenderType.MODE_NORMAL || mode == TextRenderType.MODE_UNIFORM_SCALE)) {
+                // shadow and text in one pass
+                return layout.drawText(matrix, source, x, y, r, g, b, a, false,
+                        mode, false, uniformScale, colorBackground, packedLight, inverseDepth, true);
+            }
             layout.drawText(matrix, source, x, y, r >> 2, g >> 2, b >> 2, a, true,
                     mode, polygonOffset, uniformScale, colorBackground, packedLight, inverseDepth);
             if (!matrixIsCopied) {
@@ -234,41 +241,6 @@ public final class ModernTextRenderer {
         }
     }
 
-    /*public static void drawText8xOutline(@Nonnull FormattedText text, float x, float y,
-                                         int color, int outlineColor, @Nonnull Matrix4f matrix,
-                                         @Nonnull MultiBufferSource source) {
-        if (text == CommonComponents.EMPTY || text == FormattedText.EMPTY) {
-            return;
-        }
-
-        int a = color >>> 24;
-        if (a <= 2) a = 255;
-        int r = color >> 16 & 0xff;
-        int g = color >> 8 & 0xff;
-        int b = color & 0xff;
-
-        int oa = outlineColor >>> 24;
-        if (oa <= 1) oa = 255;
-        int or = outlineColor >> 16 & 0xff;
-        int og = outlineColor >> 8 & 0xff;
-        int ob = outlineColor & 0xff;
-
-        TextLayoutEngine engine = TextLayoutEngine.getInstance();
-        TextLayout layout = engine.lookupComplexLayout(text);
-        float resLevel = engine.getResLevel();
-        if (layout.hasColorBitmap() && source instanceof MultiBufferSource.BufferSource) {
-            // performance impact
-            ((MultiBufferSource.BufferSource) source).endBatch(Sheets.signSheet());
-        }
-
-        matrix = new Matrix4f(matrix);
-        layout.drawText(matrix, source, null, x, y, r, g, b, a, false, ,
-                false, 0, LightTexture.FULL_BRIGHT);
-        matrix.translate(OUTLINE_OFFSET);
-
-        layout.drawTextOutline(matrix, source, x, y, or, og, ob, oa, LightTexture.FULL_BRIGHT);
-    }*/
-
     public void drawText8xOutline(@Nonnull FormattedCharSequence text, float x, float y,
                                   int color, int outlineColor, @Nonnull Matrix4f matrix,
                                   @Nonnull MultiBufferSource source, int packedLight) {
@@ -287,29 +259,22 @@ public final class ModernTextRenderer {
         int b = color & 0xff;
 
         TextLayout layout = mEngine.lookupFormattedLayout(text);
-        if (layout.hasColorEmoji() && source instanceof MultiBufferSource.BufferSource) {
-            // performance impact
+        if (layout.hasColorEmoji() && source instanceof MultiBufferSource.BufferSource &&
+                !TextLayout.canCombineSDF(TextRenderType.MODE_SDF_FILL, false)) {
+            // performance impact, color emoji use another render type
             ((MultiBufferSource.BufferSource) source).endBatch(Sheets.signSheet());
         }
 
-        layout.drawText(matrix, source, x, y, r, g, b, a, false,
-                TextRenderType.MODE_SDF_FILL, false, 1, 0, packedLight, true);
-
         // disable outline if either text color is BLACK or SDF shader is unavailable
         if (isBlack ||
                 (TextLayoutEngine.sCurrentInWorldRendering && !TextLayoutEngine.sUseTextShadersInWorld)) {
+            layout.drawText(matrix, source, x, y, r, g, b, a, false,
+                    TextRenderType.MODE_SDF_FILL, false, 1, 0, packedLight, true);
             return;
         }
-        matrix = new Matrix4f(matrix);
-
-        a = outlineColor >>> 24;
-        if (a <= 2) a = 255;
-        r = outlineColor >> 16 & 0xff;
-        g = outlineColor >> 8 & 0xff;
-        b = outlineColor & 0xff;
 
-        matrix.translate(OUTLINE_OFFSET);
-        layout.drawTextOutline(matrix, source, x, y, r, g, b, a, packedLight);
+        // fill, outline and color emoji in one pass
+        layout.drawTextWithOutline(matrix, source, x, y, r, g, b, a, outlineColor, packedLight);
     }
 
     /*public static void change(boolean global, boolean shadow) {
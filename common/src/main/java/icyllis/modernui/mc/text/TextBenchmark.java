@@ -0,0 +1,311 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2025 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.mc.text;
+
+import com.mojang.blaze3d.vertex.VertexConsumer;
+import icyllis.modernui.annotation.RenderThread;
+import net.minecraft.ChatFormatting;
+import net.minecraft.client.gui.Font;
+import net.minecraft.client.renderer.*;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.FormattedText;
+import net.minecraft.network.chat.Style;
+import org.jetbrains.annotations.ApiStatus;
+import org.joml.Matrix4f;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Runs a bundled corpus through the text engine and reports timings.
+ * Each corpus is measured for lookup, layout, line breaking and drawing,
+ * with cold (cleared) and warm layout caches.
+ * <p>
+ * Glyph atlases are never cleared, so the atlas growth reported is the
+ * number of glyphs that the corpus added to the current session.
+ */
+@ApiStatus.Internal
+public final class TextBenchmark {
+
+    public static final int DEFAULT_ITERATIONS = 100;
+
+    /**
+     * Line width used by the line breaking pass.
+     */
+    public static final float LINE_WIDTH = 120;
+
+    // name and lines of each corpus
+    private static final String[][] CORPORA = {
+            {
+                    "ascii-chat",
+                    "<Steve> anyone wanna go to the nether fortress tonight?",
+                    "<Alex> sure, bring fire resistance potions and some food",
+                    "[Server] Player123 has made the advancement [Diamonds!]",
+                    "<Notch> The quick brown fox jumps over the lazy dog 0123456789",
+                    "<Herobrine> ...",
+            },
+            {
+                    "cjk",
+                    "你好，欢迎来到我的世界服务器！今天一起去挖矿吧。",
+                    "こんにちは、マインクラフトの世界へようこそ。",
+                    "안녕하세요, 마인크래프트 서버에 오신 것을 환영합니다.",
+                    "中文、日本語、한국어 mixed with English words 123",
+            },
+            {
+                    "bidi",
+                    "مرحبا بكم في عالم ماينكرافت",
+                    "שלום, ברוכים הבאים לשרת 25565",
+                    "Mixed English and العربية text with numbers 1234",
+                    "<Player> ראיתי creeper ליד הבית שלי!",
+                    "<Steve> does anyone know what שלום means?",
+                    "[Trade] Selling enchanted books, ask for مرحبا",
+            },
+            {
+                    "emoji",
+                    "Good game! 😀👍🎉",
+                    "👨‍👩‍👧 family ❤️ emoji",
+                    "Flags 🇺🇸 🇯🇵 🇨🇳 and skin tones 👋🏽",
+            },
+            {
+                    "scoreboard",
+                    "§6§lSKYBLOCK §r§7(§e1.21§7)",
+                    "§fPurse: §6§l1,234,567 §r§e(+250)",
+                    "§fBits: §b§o9,876§r §8§m----§r §a§nOnline",
+                    "§c❤ §f100§7/§f100 §a❈ §f50 §b✎ §f300§7/§f300",
+                    "§7§kxx§r §ewww.example.net §7§kxx",
+            },
+    };
+
+    private static final String[] PHASES = {
+            "layout (cold)", "lookup (warm)", "line-break", "draw"
+    };
+
+    private TextBenchmark() {
+    }
+
+    /**
+     * Run the benchmark and return a human-readable report.
+     *
+     * @param iterations number of iterations per corpus and phase
+     * @return the report
+     */
+    @Nonnull
+    @RenderThread
+    public static String run(int iterations) {
+        iterations = Math.max(iterations, 1);
+        final TextLayoutEngine engine = TextLayoutEngine.getInstance();
+        final GlyphManager glyphManager = GlyphManager.getInstance();
+        final AllocationCounter allocations = AllocationCounter.create();
+        final CountingBufferSource sink = new CountingBufferSource();
+        final Matrix4f matrix = new Matrix4f();
+
+        var b = new StringBuilder();
+        b.append(String.format("Text bench: iterations=%d, resLevel=%d, lineWidth=%.0f\n",
+                iterations, engine.getResLevel(), LINE_WIDTH));
+        if (allocations == null) {
+            b.append("Allocation tracking is not supported by this JVM\n");
+        }
+        b.append(String.format("%-12s %-14s %9s %9s %9s %9s %10s\n",
+                "corpus", "phase", "p50(us)", "p90(us)", "p99(us)", "max(us)", "alloc(B)"));
+
+        final int glyphsBefore = glyphManager.getAtlasGlyphCount();
+        final long atlasBytesBefore = glyphManager.getAtlasMemorySize();
+        long vertices = 0;
+
+        for (String[] corpus : CORPORA) {
+            final String name = corpus[0];
+            final int lines = corpus.length - 1;
+            final FormattedText[] formatted = new FormattedText[lines];
+            for (int i = 0; i < lines; i++) {
+                formatted[i] = Component.literal(corpus[i + 1]).withStyle(ChatFormatting.WHITE);
+            }
+            final long[] samples = new long[iterations * lines * 2];
+
+            for (int phase = 0; phase < PHASES.length; phase++) {
+                // warm up the caches once, except for the cold phase that clears them anyway
+                if (phase != 0) {
+                    for (int i = 0; i < lines; i++) {
+                        engine.lookupVanillaLayout(corpus[i + 1]);
+                        engine.lookupFormattedLayout(formatted[i]);
+                    }
+                }
+                int count = 0;
+                long allocated = 0;
+                for (int it = 0; it < iterations; it++) {
+                    for (int i = 0; i < lines; i++) {
+                        final String text = corpus[i + 1];
+                        for (int kind = 0; kind < 2; kind++) {
+                            if (phase == 0) {
+                                engine.clear();
+                            }
+                            long bytes = allocations != null ? allocations.get() : 0;
+                            long start = System.nanoTime();
+                            switch (phase) {
+                                case 0, 1 -> {
+                                    if (kind == 0) {
+                                        engine.lookupVanillaLayout(text);
+                                    } else {
+                                        engine.lookupFormattedLayout(formatted[i]);
+                                    }
+                                }
+                                case 2 -> {
+                                    if (kind == 0) {
+                                        engine.getStringSplitter().computeLineBreaks(text, LINE_WIDTH,
+                                                Style.EMPTY, (style, startIndex, endIndex) -> {
+                                                });
+                                    } else {
+                                        engine.getStringSplitter().computeLineBreaks(formatted[i], LINE_WIDTH,
+                                                Style.EMPTY, (line, notFirstLine) -> {
+                                                });
+                                    }
+                                }
+                                default -> {
+                                    TextLayout layout = kind == 0
+                                            ? engine.lookupVanillaLayout(text)
+                                            : engine.lookupFormattedLayout(formatted[i]);
+                                    engine.getTextRenderer().drawText(layout, 0, 0, 0xFFFFFFFF,
+                                            kind == 1, matrix, sink, Font.DisplayMode.NORMAL,
+                                            0, LightTexture.FULL_BRIGHT, true);
+                                }
+                            }
+                            samples[count++] = System.nanoTime() - start;
+                            if (allocations != null) {
+                                allocated += allocations.get() - bytes;
+                            }
+                        }
+                    }
+                }
+                Arrays.sort(samples, 0, count);
+                b.append(String.format("%-12s %-14s %9.2f %9.2f %9.2f %9.2f %10d\n",
+                        name, PHASES[phase],
+                        percentile(samples, count, 0.50),
+                        percentile(samples, count, 0.90),
+                        percentile(samples, count, 0.99),
+                        samples[count - 1] / 1000.0,
+                        allocations != null ? allocated / count : -1));
+            }
+            vertices += sink.mVertices;
+            sink.mVertices = 0;
+        }
+
+        final int glyphsAfter = glyphManager.getAtlasGlyphCount();
+        final long atlasBytesAfter = glyphManager.getAtlasMemorySize();
+        b.append(String.format("Atlas: glyphs %d -> %d (+%d), memory %d -> %d bytes (+%d)\n",
+                glyphsBefore, glyphsAfter, glyphsAfter - glyphsBefore,
+                atlasBytesBefore, atlasBytesAfter, atlasBytesAfter - atlasBytesBefore));
+        b.append(String.format("Layout cache: entries=%d, memory=%d bytes\n",
+                engine.getCacheCount(), engine.getCacheMemorySize()));
+        b.append(String.format("Vertices emitted: %d\n", vertices));
+        var bidiInfo = new StringWriter();
+        TextLayoutProcessor.dumpBidiInfo(new PrintWriter(bidiInfo));
+        b.append(bidiInfo);
+        return b.toString();
+    }
+
+    // nearest-rank percentile in microseconds
+    private static double percentile(long[] sorted, int count, double p) {
+        int index = (int) Math.ceil(p * count) - 1;
+        return sorted[Math.max(0, Math.min(index, count - 1))] / 1000.0;
+    }
+
+    /**
+     * Reads the allocated bytes of the current thread, HotSpot only.
+     */
+    private static final class AllocationCounter {
+
+        private final com.sun.management.ThreadMXBean mBean;
+        private final long mThreadId;
+
+        private AllocationCounter(com.sun.management.ThreadMXBean bean) {
+            mBean = bean;
+            mThreadId = Thread.currentThread().getId();
+        }
+
+        @Nullable
+        static AllocationCounter create() {
+            try {
+                if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean &&
+                        bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+                    return new AllocationCounter(bean);
+                }
+            } catch (Throwable ignored) {
+            }
+            return null;
+        }
+
+        long get() {
+            return mBean.getThreadAllocatedBytes(mThreadId);
+        }
+    }
+
+    /**
+     * Swallows all vertices, counting them only.
+     */
+    private static final class CountingBufferSource implements MultiBufferSource, VertexConsumer {
+
+        long mVertices;
+
+        @Nonnull
+        @Override
+        public VertexConsumer getBuffer(@Nonnull RenderType renderType) {
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public VertexConsumer addVertex(float x, float y, float z) {
+            mVertices++;
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public VertexConsumer setColor(int r, int g, int b, int a) {
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public VertexConsumer setUv(float u, float v) {
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public VertexConsumer setUv1(int u, int v) {
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public VertexConsumer setUv2(int u, int v) {
+            return this;
+        }
+
+        @Nonnull
+        @Override
+        public VertexConsumer setNormal(float x, float y, float z) {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2025 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.mc.text;
+
+import icyllis.modernui.graphics.MathUtil;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import net.minecraft.ChatFormatting;
+import net.minecraft.network.chat.FormattedText;
+import net.minecraft.network.chat.Style;
+import net.minecraft.util.FormattedCharSequence;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Optional;
+
+/**
+ * Hit testing index of a {@link TextLayout}, built lazily on the first query.
+ * Prefix sums of advances turn width queries into binary searches.
+ * <p>
+ * Style runs map strip indices back to the styled segments of the source text,
+ * they are not cached here. A layout is shared between texts that only compare
+ * equal, their click events, hover events and source strings may still differ,
+ * so runs are keyed by the identity of the queried text, see
+ * {@link ModernStringSplitter}.
+ * Racy initialization is benign, the index is immutable once built.
+ *
+ * @see ModernStringSplitter
+ */
+final class TextHitIndex {
+
+    private final char[] mTextBuf;
+    private final float[] mAdvances;
+
+    /**
+     * The sum of advances before each strip index, the length is char count + 1.
+     */
+    private final float[] mPrefixAdvances;
+
+    TextHitIndex(@Nonnull char[] textBuf, @Nonnull float[] advances) {
+        mTextBuf = textBuf;
+        mAdvances = advances;
+        final float[] prefix = new float[advances.length + 1];
+        float sum = 0;
+        for (int i = 0; i < advances.length; i++) {
+            prefix[i] = sum;
+            sum += advances[i];
+        }
+        prefix[advances.length] = sum;
+        mPrefixAdvances = prefix;
+    }
+
+    /**
+     * Same as {@link ModernStringSplitter#breakText(TextLayout, boolean, float, boolean)}.
+     * Grapheme clusters are never broken, since only cluster bounds have advances.
+     */
+    public int breakText(boolean forwards, float width, boolean trimSpace) {
+        final float[] prefix = mPrefixAdvances;
+        final char[] buf = mTextBuf;
+        final int limit = buf.length;
+        if (forwards) {
+            // TruncateAt.END, the max index whose prefix advance not exceeds the width
+            int lo = 0, hi = limit;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (prefix[mid] <= width) {
+                    lo = mid;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            int i = lo;
+            while (i > 0 && (trimSpace && buf[i - 1] == ' ')) i--;
+            return i;
+        } else {
+            // TruncateAt.START, the min index whose suffix advance not exceeds the width
+            final float total = prefix[limit];
+            int lo = 0, hi = limit;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (total - prefix[mid] <= width) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+            int i = lo;
+            while (i < limit && ((trimSpace && buf[i] == ' ') ||
+                    mAdvances[i] == 0.0f)) {
+                i++;
+            }
+            return i;
+        }
+    }
+
+    public int getMemorySize() {
+        return 16 + MathUtil.align8(mPrefixAdvances.length << 2) + 32;
+    }
+
+    /**
+     * Styled segments in logical order, built from one text instance.
+     *
+     * @param source the text or sequence the runs are built from, compared by identity
+     * @param base   the base style of the text
+     * @param layout the layout of the text when the runs were built, compared by identity
+     * @param starts the strip index of each segment start
+     * @param styles the style of each segment
+     * @param texts  the source string of each segment, may contain formatting codes,
+     *               null if built from a sequence
+     */
+    record StyleRuns(Object source, Style base, TextLayout layout,
+                     int[] starts, Style[] styles, @Nullable String[] texts) {
+
+        @Nonnull
+        static StyleRuns build(@Nonnull FormattedText text, @Nonnull Style base, @Nonnull TextLayout layout) {
+            final IntArrayList starts = new IntArrayList();
+            final ArrayList<Style> styles = new ArrayList<>();
+            final ArrayList<String> texts = new ArrayList<>();
+            final int[] stripIndex = {0};
+            text.visit((style, string) -> {
+                starts.add(stripIndex[0]);
+                styles.add(style);
+                texts.add(string);
+                int count = 0;
+                for (int i = 0, e = string.length(); i < e; i++) {
+                    if (string.charAt(i) == ChatFormatting.PREFIX_CODE) {
+                        i++;
+                        continue;
+                    }
+                    count++;
+                }
+                stripIndex[0] += count;
+                return Optional.empty(); // continue
+            }, base);
+            return new StyleRuns(text, base, layout, starts.toIntArray(), styles.toArray(new Style[0]),
+                    texts.toArray(new String[0]));
+        }
+
+        @Nonnull
+        static StyleRuns build(@Nonnull FormattedCharSequence sequence, @Nonnull TextLayout layout) {
+            final IntArrayList starts = new IntArrayList();
+            final ArrayList<Style> styles = new ArrayList<>();
+            final int[] stripIndex = {0};
+            sequence.accept((index, style, codePoint) -> {
+                if (styles.isEmpty() || styles.get(styles.size() - 1) != style) {
+                    starts.add(stripIndex[0]);
+                    styles.add(style);
+                }
+                stripIndex[0] += Character.charCount(codePoint);
+                return true; // continue
+            });
+            return new StyleRuns(sequence, Style.EMPTY, layout, starts.toIntArray(),
+                    styles.toArray(new Style[0]), null);
+        }
+
+        /**
+         * A text instance may be modified after the query, then it is laid out again
+         * as another layout, and the runs are rebuilt.
+         *
+         * @return whether these runs are built from the given text instance
+         */
+        public boolean matches(@Nonnull Object text, @Nonnull Style base, @Nonnull TextLayout layout) {
+            return source == text && this.layout == layout && this.base.equals(base);
+        }
+
+        /**
+         * @return the segment that contains the char at the strip index, or -1
+         */
+        public int find(int stripIndex) {
+            // the last segment starts at or before the index, preceding segments
+            // of formatting codes only have the same start, so they are skipped
+            int lo = 0, hi = starts.length - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (starts[mid] <= stripIndex) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return hi;
+        }
+
+        /**
+         * @return the style of the char at the strip index, or null
+         */
+        @Nullable
+        public Style styleAt(int stripIndex) {
+            int k = find(stripIndex);
+            return k >= 0 ? styles[k] : null;
+        }
+    }
+}
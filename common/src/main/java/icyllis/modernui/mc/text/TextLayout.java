@@ -68,12 +68,6 @@ public class TextLayout {
                               int bgColor, int packedLight, boolean inverseDepth) {
             return 0;
         }
-
-        @Override
-        public void drawTextOutline(@Nonnull Matrix4f matrix, @Nonnull MultiBufferSource source, float x, float top,
-                                    int r, int g, int b, int a, int packedLight) {
-            // noop
-        }
     };
 
     /**
@@ -81,6 +75,11 @@ public class TextLayout {
      */
     public static final int STANDARD_BASELINE_OFFSET = 7;
 
+    /**
+     * Max number of uniform scale strikes cached per layout.
+     */
+    private static final int MAX_UNIFORM_SCALE_STRIKES = 4;
+
     /**
      * Config vertical adjustment to string position.
      */
@@ -99,6 +98,7 @@ public class TextLayout {
     private final int[] mGlyphs;
     private transient GLBakedGlyph[] mBakedGlyphs;
     private transient GLBakedGlyph[] mBakedGlyphsForSDF;
+    // uniform scale strikes by bucket font size, at most MAX_UNIFORM_SCALE_STRIKES
     private transient SparseArray<GLBakedGlyph[]> mBakedGlyphsArray;
 
     /**
@@ -177,6 +177,11 @@ public class TextLayout {
      */
     private transient int mTimer = 0;
 
+    /**
+     * Lazily built for hit testing queries.
+     */
+    private transient volatile TextHitIndex mHitIndex;
+
     private TextLayout(@Nonnull TextLayout layout) {
         mTextBuf = layout.mTextBuf;
         mGlyphs = layout.mGlyphs;
@@ -289,13 +294,16 @@ public class TextLayout {
     }
 
     @Nonnull
-    private GLBakedGlyph[] getGlyphsUniformScale(float density) {
+    private GLBakedGlyph[] getGlyphsUniformScale(int fontSize) {
         if (mBakedGlyphsArray == null) {
             mBakedGlyphsArray = new SparseArray<>();
         }
-        int fontSize = TextLayoutProcessor.computeFontSize(density);
         GLBakedGlyph[] glyphs = mBakedGlyphsArray.get(fontSize);
         if (glyphs == null) {
+            if (mBakedGlyphsArray.size() >= MAX_UNIFORM_SCALE_STRIKES) {
+                // glyphs are still cached in atlas, just lookup again
+                mBakedGlyphsArray.clear();
+            }
             glyphs = prepareGlyphs(fontSize);
             mBakedGlyphsArray.put(fontSize, glyphs);
         }
@@ -330,28 +338,103 @@ public class TextLayout {
                           final boolean polygonOffset, final float uniformScale,
                           final int bgColor, final int packedLight,
                           final boolean inverseDepth) {
+        return drawText(matrix, source, x, top, r, g, b, a, isShadow, preferredMode,
+                polygonOffset, uniformScale, bgColor, packedLight, inverseDepth, false);
+    }
+
+    /**
+     * Render this text in Minecraft render system.
+     * <p>
+     * If <var>withShadow</var> is true, the drop shadow is drawn in the same pass, outline
+     * glyphs use a shadow render type whose shader samples the glyph and its offset shadow
+     * from one expanded quad, other glyphs and effects emit their shadow quads just before.
+     * This is only supported for {@link TextRenderType#MODE_NORMAL} and
+     * {@link TextRenderType#MODE_UNIFORM_SCALE} in 2D, without see-through or polygon offset.
+     *
+     * @param withShadow draw the drop shadow in the same pass, isShadow must be false
+     * @return the total advance, always positive
+     * @see #drawText(Matrix4f, MultiBufferSource, float, float, int, int, int, int, boolean, int, boolean, float, int, int, boolean)
+     */
+    public float drawText(@Nonnull final Matrix4f matrix,
+                          @Nonnull final MultiBufferSource source,
+                          float x, float top,
+                          int r, int g, int b, final int a,
+                          final boolean isShadow, int preferredMode,
+                          final boolean polygonOffset, final float uniformScale,
+                          final int bgColor, final int packedLight,
+                          final boolean inverseDepth, boolean withShadow) {
+        return drawText(matrix, source, x, top, r, g, b, a, isShadow, preferredMode,
+                polygonOffset, uniformScale, bgColor, packedLight, inverseDepth, withShadow, 0);
+    }
+
+    /**
+     * Render this text with SDF glowing outline in a single pass. The outline quads of all
+     * glyphs are written before the fill quads to the same buffer of
+     * {@link TextRenderType#getOrCreateSDFOutline(int, int)}, so a fill is never covered by the
+     * outline of the next glyph. Color emoji are drawn through the same buffer, bitmap glyphs
+     * and effects are drawn as {@link TextRenderType#MODE_SDF_FILL}.
+     *
+     * @param outlineColor the outline color in 0xAARRGGBB format
+     * @return the total advance, always positive
+     */
+    public float drawTextWithOutline(@Nonnull final Matrix4f matrix,
+                                     @Nonnull final MultiBufferSource source,
+                                     float x, float top,
+                                     int r, int g, int b, final int a,
+                                     final int outlineColor, final int packedLight) {
+        return drawText(matrix, source, x, top, r, g, b, a, false, TextRenderType.MODE_SDF_FILL,
+                false, 1, 0, packedLight, true, false, outlineColor);
+    }
+
+    private float drawText(@Nonnull final Matrix4f matrix,
+                           @Nonnull final MultiBufferSource source,
+                           float x, float top,
+                           int r, int g, int b, final int a,
+                           final boolean isShadow, int preferredMode,
+                           final boolean polygonOffset, final float uniformScale,
+                           final int bgColor, final int packedLight,
+                           final boolean inverseDepth, boolean withShadow,
+                           final int outlineColor) {
         final int startR = r;
         final int startG = g;
         final int startB = b;
         final float density;
+        // density of the strike, differs from density if quantized
+        final float strikeDensity;
         final GLBakedGlyph[] glyphs;
         if (preferredMode == TextRenderType.MODE_SDF_FILL) {
             int resLevel = TextLayoutEngine.adjustPixelDensityForSDF(mCreatedResLevel);
             glyphs = getGlyphs(resLevel);
             density = resLevel;
+            strikeDensity = density;
         } else if (preferredMode == TextRenderType.MODE_UNIFORM_SCALE) {
             if (uniformScale <= 0.001f) {
                 // drop if flipped or too small
                 return mTotalAdvance;
             }
             density = mCreatedResLevel * uniformScale;
-            glyphs = getGlyphsUniformScale(density);
+            int fontSize = TextLayoutProcessor.quantizeFontSize(
+                    Math.max(TextLayoutProcessor.computeFontSize(density), 1));
+            glyphs = getGlyphsUniformScale(fontSize);
+            strikeDensity = fontSize / TextLayoutProcessor.sBaseFontSize;
             preferredMode = TextRenderType.MODE_NORMAL;
         } else {
             glyphs = getGlyphs(mCreatedResLevel);
             density = mCreatedResLevel;
+            strikeDensity = density;
         }
         final float invDensity = 1.0f / density;
+        final float invStrikeDensity = 1.0f / strikeDensity;
+        withShadow &= !isShadow && preferredMode == TextRenderType.MODE_NORMAL;
+        // shadow offset in strike pixels for outline glyphs, and in GUI coordinates for the others
+        int shadowPixels = 0;
+        float shadowOffsetForEffect = 0;
+        if (withShadow) {
+            shadowPixels = Math.min(Math.round(ModernTextRenderer.sShadowOffset * strikeDensity),
+                    TextRenderType.MAX_SHADOW_PIXELS);
+            // align to screen pixel center in 2D
+            shadowOffsetForEffect = Math.round(ModernTextRenderer.sShadowOffset * density) * invDensity;
+        }
         float shadowOffset = 0;
         if (isShadow) {
             shadowOffset = ModernTextRenderer.sShadowOffset;
@@ -371,11 +454,22 @@ public class TextLayout {
 
         int prevTexture = -1;
         int prevMode = -1;
+        boolean prevShadowed = false;
+        boolean prevOutlined = false;
+        final boolean withOutline = outlineColor != 0 && preferredMode == TextRenderType.MODE_SDF_FILL;
+        // SDF glyphs and color emoji can be drawn in one batch, with or without outline
+        final boolean sdfCombined = withOutline ||
+                (mHasColorEmoji && canCombineSDF(preferredMode, polygonOffset));
         net.minecraft.client.gui.Font.DisplayMode prevVanillaDisplayMode = null;
         VertexConsumer builder = null;
 
         int fontTexture = -1;
 
+        // outline glyphs, color emoji and bitmap glyphs in atlas can be drawn in one batch
+        boolean combine = canCombineAtlases(preferredMode, polygonOffset);
+        TextRenderType combinedType = null;
+        boolean prevCombined = false;
+
         final boolean seeThrough = preferredMode == TextRenderType.MODE_SEE_THROUGH;
         if ((bgColor & 0xFF000000) != 0) {
             builder = source.getBuffer(EffectRenderType.getRenderType(seeThrough, polygonOffset));
@@ -391,6 +485,53 @@ public class TextLayout {
             builder = null;
         }
 
+        if (mHasEffect && withShadow) {
+            // the shadow of effects must be covered by the glyphs, emit it before them
+            builder = source.getBuffer(EffectRenderType.getRenderType(seeThrough, polygonOffset));
+            drawEffects(matrix, builder, x, baseline, startR, startG, startB, a, false,
+                    shadowOffsetForEffect, packedLight, inverseDepth);
+            builder = null;
+        }
+
+        if (withOutline) {
+            int oa = outlineColor >>> 24;
+            if (oa <= 2) oa = 255;
+            final int or = outlineColor >> 16 & 0xff;
+            final int og = outlineColor >> 8 & 0xff;
+            final int ob = outlineColor & 0xff;
+            for (int i = 0, e = glyphs.length; i < e; i++) {
+                var glyph = glyphs[i];
+                if (glyph == null) {
+                    continue;
+                }
+                final int bits = flags[i];
+                if ((bits & CharacterStyle.ANY_BITMAP_REPLACEMENT) != 0) {
+                    continue;
+                }
+                if ((bits & CharacterStyle.OBFUSCATED_MASK) != 0) {
+                    var chars = (GlyphManager.FastCharSet) glyph;
+                    int fastIndex = RANDOM.nextInt(chars.glyphs.size());
+                    glyph = chars.glyphs.get(fastIndex);
+                }
+                if (builder == null) {
+                    final var glyphManager = GlyphManager.getInstance();
+                    fontTexture = glyphManager.getFontTexture();
+                    builder = source.getBuffer(TextRenderType.getOrCreateSDFOutline(fontTexture,
+                            glyphManager.getEmojiTexture()));
+                    // the fill quads below continue in this buffer
+                    prevTexture = fontTexture;
+                    prevMode = preferredMode;
+                    prevOutlined = true;
+                }
+                addOutlineTypeGlyph(builder, matrix,
+                        x + positions[i << 1] + glyph.x * invStrikeDensity,
+                        baseline + positions[i << 1 | 1] + glyph.y * invStrikeDensity,
+                        glyph.width * invStrikeDensity, glyph.height * invStrikeDensity,
+                        glyph, or, og, ob, oa, packedLight,
+                        TextRenderType.SDF_OUTLINE_QUAD_OUTLINE, invStrikeDensity);
+            }
+        }
+
         for (int i = 0, e = glyphs.length; i < e; i++) {
             var glyph = glyphs[i];
             if (glyph == null) {
@@ -408,6 +549,10 @@ public class TextLayout {
             net.minecraft.client.gui.Font.DisplayMode vanillaDisplayMode = null;
             boolean isBitmapFont = false;
             boolean isColorEmoji = false;
+            boolean shadowed = false;
+            boolean outlined = false;
+            boolean combined = false;
+            float uOffset = 0;
             if ((bits & CharacterStyle.NO_SHADOW_MASK) != 0 && isShadow) {
                 continue;
             }
@@ -423,6 +568,10 @@ public class TextLayout {
                     ascent = bitmapFont.getAscent();
                     scaleFactor = 1f / TextLayoutEngine.BITMAP_SCALE;
                     isBitmapFont = true;
+                    if (combine && bitmapFont.fitsInAtlas()) {
+                        combined = true;
+                        uOffset = TextRenderType.COMBINED_BITMAP_U;
+                    }
                 } else {
                     if (isShadow) {
                         continue;
@@ -431,6 +580,12 @@ public class TextLayout {
                     ascent = TextLayout.STANDARD_BASELINE_OFFSET;
                     scaleFactor = TextLayoutProcessor.sBaseFontSize / GlyphManager.EMOJI_BASE;
                     isColorEmoji = true;
+                    if (combine) {
+                        combined = true;
+                        uOffset = TextRenderType.COMBINED_EMOJI_U;
+                    } else if (sdfCombined) {
+                        outlined = true;
+                    }
                 }
                 fakeItalic = (bits & CharacterStyle.ITALIC_MASK) != 0;
                 rx = x + positions[i << 1] + glyph.x * scaleFactor;
@@ -454,15 +609,32 @@ public class TextLayout {
                 }
             } else {
                 mode = preferredMode;
-                rx = x + positions[i << 1] + glyph.x * invDensity;
-                ry = baseline + positions[i << 1 | 1] + glyph.y * invDensity;
+                rx = x + positions[i << 1] + glyph.x * invStrikeDensity;
+                ry = baseline + positions[i << 1 | 1] + glyph.y * invStrikeDensity;
 
-                w = glyph.width * invDensity;
-                h = glyph.height * invDensity;
+                w = glyph.width * invStrikeDensity;
+                h = glyph.height * invStrikeDensity;
                 if (fontTexture == -1) {
                     fontTexture = GlyphManager.getInstance().getFontTexture();
                 }
                 texture = fontTexture;
+                shadowed = withShadow;
+                outlined = sdfCombined;
+                combined = combine;
+            }
+            if (combined && combinedType == null) {
+                final var glyphManager = GlyphManager.getInstance();
+                if (fontTexture == -1) {
+                    fontTexture = glyphManager.getFontTexture();
+                }
+                combinedType = TextRenderType.getOrCreateCombined(fontTexture,
+                        glyphManager.getEmojiTexture(), glyphManager.getBitmapTexture(), withShadow);
+                if (combinedType == null) {
+                    // fallback to a render type per atlas
+                    combine = false;
+                    combined = false;
+                    uOffset = 0;
+                }
             }
             if (preferredMode == TextRenderType.MODE_NORMAL) {
                 // align to screen pixel center in 2D
@@ -487,14 +659,41 @@ public class TextLayout {
                     b >>= 2;
                 }
             }
-            if (builder == null || prevTexture != texture || prevMode != mode ||
+            if (combined) {
+                if (builder == null || !prevCombined) {
+                    prevCombined = true;
+                    builder = source.getBuffer(combinedType);
+                }
+            } else if (outlined) {
+                // SDF glyphs and color emoji share the render type keyed by both atlases
+                if (builder == null || prevCombined || !prevOutlined) {
+                    final var glyphManager = GlyphManager.getInstance();
+                    if (fontTexture == -1) {
+                        fontTexture = glyphManager.getFontTexture();
+                    }
+                    prevCombined = false;
+                    prevTexture = fontTexture;
+                    prevMode = preferredMode;
+                    prevShadowed = false;
+                    prevOutlined = true;
+                    prevVanillaDisplayMode = null;
+                    builder = source.getBuffer(TextRenderType.getOrCreateSDFOutline(fontTexture,
+                            glyphManager.getEmojiTexture()));
+                }
+            } else if (builder == null || prevCombined || prevTexture != texture || prevMode != mode ||
+                    prevShadowed != shadowed || prevOutlined ||
                     prevVanillaDisplayMode != vanillaDisplayMode) {
                 // no need to check isBitmapFont
+                prevCombined = false;
                 prevTexture = texture;
                 prevMode = mode;
+                prevShadowed = shadowed;
+                prevOutlined = false;
                 prevVanillaDisplayMode = vanillaDisplayMode;
                 builder = source.getBuffer(vanillaDisplayMode != null
                         ? TextRenderType.getOrCreate(texture, vanillaDisplayMode, isBitmapFont)
+                        : shadowed
+                        ? TextRenderType.getOrCreateShadow(texture)
                         : TextRenderType.getOrCreate(texture, mode));
             }
             float upSkew = 0;
@@ -503,158 +702,227 @@ public class TextLayout {
                 upSkew = 0.25f * ascent;
                 downSkew = 0.25f * (ascent - h);
             }
-            builder.addVertex(matrix, rx + upSkew, ry, 0)
-                    .setColor(r, g, b, a)
-                    .setUv(glyph.u1, glyph.v1)
-                    .setLight(packedLight);
-            builder.addVertex(matrix, rx + downSkew, ry + h, 0)
-                    .setColor(r, g, b, a)
-                    .setUv(glyph.u1, glyph.v2)
-                    .setLight(packedLight);
-            builder.addVertex(matrix, rx + w + downSkew, ry + h, 0)
-                    .setColor(r, g, b, a)
-                    .setUv(glyph.u2, glyph.v2)
-                    .setLight(packedLight);
-            builder.addVertex(matrix, rx + w + upSkew, ry, 0)
-                    .setColor(r, g, b, a)
-                    .setUv(glyph.u2, glyph.v1)
-                    .setLight(packedLight);
+            if (outlined) {
+                addOutlineTypeGlyph(builder, matrix, rx, ry, w, h, glyph, r, g, b, a, packedLight,
+                        isColorEmoji ? TextRenderType.SDF_OUTLINE_QUAD_COLOR_EMOJI : TextRenderType.SDF_OUTLINE_QUAD_FILL,
+                        0);
+                continue;
+            }
+            if (combined && withShadow) {
+                // in the combined shadow type, other glyphs are drawn with zero shadow offset
+                if (isBitmapFont && (bits & CharacterStyle.NO_SHADOW_MASK) == 0) {
+                    // bitmap font shadow offset is always 1 pixel
+                    addShadowedGlyph(builder, matrix, rx + 1.0f, ry + 1.0f, w, h, upSkew, downSkew, glyph,
+                            uOffset, r >> 2, g >> 2, b >> 2, a, 0, invStrikeDensity);
+                }
+                addShadowedGlyph(builder, matrix, rx, ry, w, h, upSkew, downSkew, glyph, uOffset, r, g, b, a,
+                        shadowed && (bits & CharacterStyle.NO_SHADOW_MASK) == 0 ? shadowPixels : 0,
+                        invStrikeDensity);
+                continue;
+            }
+            if (shadowed) {
+                addShadowedGlyph(builder, matrix, rx, ry, w, h, 0, 0, glyph, 0, r, g, b, a,
+                        (bits & CharacterStyle.NO_SHADOW_MASK) != 0 ? 0 : shadowPixels,
+                        invStrikeDensity);
+                continue;
+            }
+            if (withShadow && isBitmapFont && (bits & CharacterStyle.NO_SHADOW_MASK) == 0) {
+                // bitmap font shadow offset is always 1 pixel
+                addGlyph(builder, matrix, rx + 1.0f, ry + 1.0f, w, h, upSkew, downSkew, glyph, uOffset,
+                        r >> 2, g >> 2, b >> 2, a, packedLight);
+            }
+            addGlyph(builder, matrix, rx, ry, w, h, upSkew, downSkew, glyph, uOffset,
+                    r, g, b, a, packedLight);
         }
 
         if (mHasEffect) {
             builder = source.getBuffer(EffectRenderType.getRenderType(seeThrough, polygonOffset));
-            for (int i = 0, e = glyphs.length; i < e; i++) {
-                final int bits = flags[i];
-                if ((bits & CharacterStyle.EFFECT_MASK) == 0) {
-                    continue;
-                }
-                if ((bits & CharacterStyle.IMPLICIT_COLOR_MASK) != 0) {
-                    r = startR;
-                    g = startG;
-                    b = startB;
-                } else {
-                    r = bits >> 16 & 0xff;
-                    g = bits >> 8 & 0xff;
-                    b = bits & 0xff;
-                    if (isShadow) {
-                        r >>= 2;
-                        g >>= 2;
-                        b >>= 2;
-                    }
-                }
-                final float rx1 = x + positions[i << 1];
-                final float rx2 = x + ((i + 1 == e) ? mTotalAdvance : positions[(i + 1) << 1]);
-                if ((bits & CharacterStyle.STRIKETHROUGH_MASK) != 0) {
-                    TextRenderEffect.drawStrikethrough(matrix, builder, rx1, rx2, baseline,
-                            r, g, b, a, packedLight, inverseDepth);
-                }
-                if ((bits & CharacterStyle.UNDERLINE_MASK) != 0) {
-                    TextRenderEffect.drawUnderline(matrix, builder, rx1, rx2, baseline,
-                            r, g, b, a, packedLight, inverseDepth);
-                }
-            }
+            drawEffects(matrix, builder, x, baseline, startR, startG, startB, a, isShadow,
+                    0, packedLight, inverseDepth);
         }
 
         return mTotalAdvance;
     }
 
     /**
-     * Special case of drawText() when drawing the glowing outline of drawText8xOutline().
-     * No fast digit replacement, no shadow, no background, no underline, no strikethrough,
-     * no bitmap replacement, force to use input color, can have obfuscated rendering (but should not).
+     * Emits the strikethrough and underline quads.
      *
-     * @param matrix      the position transformation
-     * @param source      the vertex buffer source
-     * @param x           the left pos of the text line to render
-     * @param top         the top of the text line to render
-     * @param r           the default outline red value (0...255)
-     * @param g           the default outline green value (0...255)
-     * @param b           the default outline blue value (0...255)
-     * @param a           the alpha value (0...255)
-     * @param packedLight see {@link net.minecraft.client.renderer.LightTexture}
+     * @param shadowOffset if positive, emits the drop shadow of the effects instead,
+     *                     offset and darkened, except for the chars without shadow
      */
-    @SuppressWarnings("UnnecessaryLocalVariable")
-    public void drawTextOutline(@Nonnull Matrix4f matrix,
-                                @Nonnull MultiBufferSource source,
-                                final float x, final float top,
-                                int r, int g, int b, int a,
-                                int packedLight) {
-        final float resLevel = TextLayoutEngine.adjustPixelDensityForSDF(mCreatedResLevel);
-
-        final GLBakedGlyph[] glyphs = getGlyphs((int) resLevel);
+    private void drawEffects(@Nonnull Matrix4f matrix, @Nonnull VertexConsumer builder,
+                             float x, float baseline,
+                             int startR, int startG, int startB, int a,
+                             boolean isShadow, float shadowOffset,
+                             int packedLight, boolean inverseDepth) {
         final var positions = mPositions;
         final var flags = mGlyphFlags;
-        //final boolean alignPixels = TextLayoutProcessor.sAlignPixels;
-
-        final float baseline = top + sBaselineOffset;
-
-        int prevTexture = -1;
-        VertexConsumer builder = null;
-
-        int fontTexture = -1;
-
-        // outset glyph bounds
-        final float sBloat = 1.0f / resLevel;
-        for (int i = 0, e = glyphs.length; i < e; i++) {
-            var glyph = glyphs[i];
-            if (glyph == null) {
+        final boolean dropShadow = shadowOffset > 0;
+        for (int i = 0, e = flags.length; i < e; i++) {
+            final int bits = flags[i];
+            if ((bits & CharacterStyle.EFFECT_MASK) == 0) {
                 continue;
             }
-            final int bits = flags[i];
-            final float rx;
-            final float ry;
-            final float w;
-            final float h;
-            final int texture;
-            if ((bits & CharacterStyle.ANY_BITMAP_REPLACEMENT) != 0) {
+            if (dropShadow && (bits & CharacterStyle.NO_SHADOW_MASK) != 0) {
                 continue;
+            }
+            int r, g, b;
+            if ((bits & CharacterStyle.IMPLICIT_COLOR_MASK) != 0) {
+                r = startR;
+                g = startG;
+                b = startB;
             } else {
-                if ((bits & CharacterStyle.OBFUSCATED_MASK) != 0) {
-                    var chars = (GlyphManager.FastCharSet) glyph;
-                    int fastIndex = RANDOM.nextInt(chars.glyphs.size());
-                    glyph = chars.glyphs.get(fastIndex);
-                }
-                rx = x + positions[i << 1] + glyph.x / resLevel;
-                ry = baseline + positions[i << 1 | 1] + glyph.y / resLevel;
-
-                w = glyph.width / resLevel;
-                h = glyph.height / resLevel;
-                if (fontTexture == -1) {
-                    fontTexture = GlyphManager.getInstance().getFontTexture();
+                r = bits >> 16 & 0xff;
+                g = bits >> 8 & 0xff;
+                b = bits & 0xff;
+                if (isShadow) {
+                    r >>= 2;
+                    g >>= 2;
+                    b >>= 2;
                 }
-                texture = fontTexture;
             }
-            /*if (alignPixels) {
-                rx = Math.round(rx * scale) / scale;
-                ry = Math.round(ry * scale) / scale;
-            }*/
-            if (builder == null || prevTexture != texture) {
-                // bitmap texture and grayscale texture are different
-                prevTexture = texture;
-                builder = source.getBuffer(TextRenderType.getOrCreate(prevTexture,
-                        TextRenderType.MODE_SDF_STROKE));
-            }
-            float uBloat = (glyph.u2 - glyph.u1) / glyph.width;
-            float vBloat = (glyph.v2 - glyph.v1) / glyph.height;
-            builder.addVertex(matrix, rx - sBloat, ry - sBloat, 0.001f)
-                    .setColor(r, g, b, a)
-                    .setUv(glyph.u1 - uBloat, glyph.v1 - vBloat)
-                    .setLight(packedLight);
-            builder.addVertex(matrix, rx - sBloat, ry + h + sBloat, 0.001f)
-                    .setColor(r, g, b, a)
-                    .setUv(glyph.u1 - uBloat, glyph.v2 + vBloat)
-                    .setLight(packedLight);
-            builder.addVertex(matrix, rx + w + sBloat, ry + h + sBloat, 0)
-                    .setColor(r, g, b, a)
-                    .setUv(glyph.u2 + uBloat, glyph.v2 + vBloat)
-                    .setLight(packedLight);
-            builder.addVertex(matrix, rx + w + sBloat, ry - sBloat, 0)
-                    .setColor(r, g, b, a)
-                    .setUv(glyph.u2 + uBloat, glyph.v1 - vBloat)
-                    .setLight(packedLight);
+            if (dropShadow) {
+                r >>= 2;
+                g >>= 2;
+                b >>= 2;
+            }
+            final float rx1 = x + positions[i << 1] + shadowOffset;
+            final float rx2 = x + ((i + 1 == e) ? mTotalAdvance : positions[(i + 1) << 1]) + shadowOffset;
+            final float y = baseline + shadowOffset;
+            if ((bits & CharacterStyle.STRIKETHROUGH_MASK) != 0) {
+                TextRenderEffect.drawStrikethrough(matrix, builder, rx1, rx2, y,
+                        r, g, b, a, packedLight, inverseDepth);
+            }
+            if ((bits & CharacterStyle.UNDERLINE_MASK) != 0) {
+                TextRenderEffect.drawUnderline(matrix, builder, rx1, rx2, y,
+                        r, g, b, a, packedLight, inverseDepth);
+            }
         }
     }
 
+    /**
+     * Returns whether outline glyphs, color emoji and bitmap glyphs can be drawn through
+     * a combined render type in the given mode, without switching render types.
+     *
+     * @see TextRenderType#getOrCreateCombined(int, int, int, boolean)
+     */
+    public static boolean canCombineAtlases(int preferredMode, boolean polygonOffset) {
+        return (preferredMode == TextRenderType.MODE_NORMAL || preferredMode == TextRenderType.MODE_UNIFORM_SCALE) &&
+                !polygonOffset &&
+                (!TextLayoutEngine.sCurrentInWorldRendering || TextLayoutEngine.sUseTextShadersInWorld);
+    }
+
+    /**
+     * Returns whether SDF glyphs and color emoji can be drawn through the SDF outline
+     * render type in the given mode, without switching render types.
+     *
+     * @see TextRenderType#getOrCreateSDFOutline(int, int)
+     */
+    public static boolean canCombineSDF(int preferredMode, boolean polygonOffset) {
+        return preferredMode == TextRenderType.MODE_SDF_FILL && !polygonOffset &&
+                (!TextLayoutEngine.sCurrentInWorldRendering || TextLayoutEngine.sUseTextShadersInWorld);
+    }
+
+    private static void addGlyph(@Nonnull VertexConsumer builder, @Nonnull Matrix4f matrix,
+                                 float rx, float ry, float w, float h,
+                                 float upSkew, float downSkew, @Nonnull GLBakedGlyph glyph, float uOffset,
+                                 int r, int g, int b, int a, int packedLight) {
+        builder.addVertex(matrix, rx + upSkew, ry, 0)
+                .setColor(r, g, b, a)
+                .setUv(glyph.u1 + uOffset, glyph.v1)
+                .setLight(packedLight);
+        builder.addVertex(matrix, rx + downSkew, ry + h, 0)
+                .setColor(r, g, b, a)
+                .setUv(glyph.u1 + uOffset, glyph.v2)
+                .setLight(packedLight);
+        builder.addVertex(matrix, rx + w + downSkew, ry + h, 0)
+                .setColor(r, g, b, a)
+                .setUv(glyph.u2 + uOffset, glyph.v2)
+                .setLight(packedLight);
+        builder.addVertex(matrix, rx + w + upSkew, ry, 0)
+                .setColor(r, g, b, a)
+                .setUv(glyph.u2 + uOffset, glyph.v1)
+                .setLight(packedLight);
+    }
+
+    /**
+     * Adds a glyph quad expanded to the bottom right by the shadow offset, for
+     * {@link TextRenderType#getOrCreateShadow(int)}. The lightmap coordinates are
+     * replaced by the glyph size in pixels and the shadow offset, see the shader.
+     * Skew is only valid if there's no shadow offset.
+     */
+    private static void addShadowedGlyph(@Nonnull VertexConsumer builder, @Nonnull Matrix4f matrix,
+                                         float rx, float ry, float w, float h,
+                                         float upSkew, float downSkew,
+                                         @Nonnull GLBakedGlyph glyph, float uOffset,
+                                         int r, int g, int b, int a,
+                                         int shadowPixels, float invDensity) {
+        final float d = shadowPixels * invDensity;
+        final float du = glyph.width > 0 ? (glyph.u2 - glyph.u1) * shadowPixels / glyph.width : 0;
+        final float dv = glyph.height > 0 ? (glyph.v2 - glyph.v1) * shadowPixels / glyph.height : 0;
+        final int sizeX = Math.min(glyph.width, 0xFF) | (shadowPixels << 8);
+        final int sizeY = glyph.height;
+        builder.addVertex(matrix, rx + upSkew, ry, 0)
+                .setColor(r, g, b, a)
+                .setUv(glyph.u1 + uOffset, glyph.v1)
+                .setUv2(sizeX, sizeY);
+        builder.addVertex(matrix, rx + downSkew, ry + h + d, 0)
+                .setColor(r, g, b, a)
+                .setUv(glyph.u1 + uOffset, glyph.v2 + dv)
+                .setUv2(sizeX, sizeY);
+        builder.addVertex(matrix, rx + w + d + downSkew, ry + h + d, 0)
+                .setColor(r, g, b, a)
+                .setUv(glyph.u2 + du + uOffset, glyph.v2 + dv)
+                .setUv2(sizeX, sizeY);
+        builder.addVertex(matrix, rx + w + d + upSkew, ry, 0)
+                .setColor(r, g, b, a)
+                .setUv(glyph.u2 + du + uOffset, glyph.v1)
+                .setUv2(sizeX, sizeY);
+    }
+
+    /**
+     * Adds a glyph quad for {@link TextRenderType#getOrCreateSDFOutline(int, int)}. The overlay
+     * coordinates tell the shader what to draw, an outline quad is outset.
+     *
+     * @param quad  the quad mode, see {@link TextRenderType#SDF_OUTLINE_QUAD_FILL}
+     * @param bloat the outset in GUI coordinates, one strike pixel for outline, or 0 for the others
+     */
+    private static void addOutlineTypeGlyph(@Nonnull VertexConsumer builder, @Nonnull Matrix4f matrix,
+                                            float rx, float ry, float w, float h,
+                                            @Nonnull GLBakedGlyph glyph,
+                                            int r, int g, int b, int a,
+                                            int packedLight, int quad, float bloat) {
+        final float uBloat;
+        final float vBloat;
+        if (bloat != 0) {
+            uBloat = (glyph.u2 - glyph.u1) / glyph.width;
+            vBloat = (glyph.v2 - glyph.v1) / glyph.height;
+        } else {
+            uBloat = 0;
+            vBloat = 0;
+        }
+        builder.addVertex(matrix, rx - bloat, ry - bloat, 0)
+                .setColor(r, g, b, a)
+                .setUv(glyph.u1 - uBloat, glyph.v1 - vBloat)
+                .setOverlay(quad)
+                .setLight(packedLight);
+        builder.addVertex(matrix, rx - bloat, ry + h + bloat, 0)
+                .setColor(r, g, b, a)
+                .setUv(glyph.u1 - uBloat, glyph.v2 + vBloat)
+                .setOverlay(quad)
+                .setLight(packedLight);
+        builder.addVertex(matrix, rx + w + bloat, ry + h + bloat, 0)
+                .setColor(r, g, b, a)
+                .setUv(glyph.u2 + uBloat, glyph.v2 + vBloat)
+                .setOverlay(quad)
+                .setLight(packedLight);
+        builder.addVertex(matrix, rx + w + bloat, ry - bloat, 0)
+                .setColor(r, g, b, a)
+                .setUv(glyph.u2 + uBloat, glyph.v1 - vBloat)
+                .setOverlay(quad)
+                .setLight(packedLight);
+    }
+
     /**
      * The copied text buffer without formatting codes in logical order.
      */
@@ -771,6 +1039,20 @@ public class TextLayout {
         return mTotalAdvance;
     }
 
+    /**
+     * Get or build the hit testing index, requires {@link TextLayoutEngine#COMPUTE_ADVANCES}.
+     * This method is thread-safe.
+     */
+    @Nonnull
+    TextHitIndex getHitIndex() {
+        TextHitIndex index = mHitIndex;
+        if (index == null) {
+            index = new TextHitIndex(mTextBuf, mAdvances);
+            mHitIndex = index;
+        }
+        return index;
+    }
+
     /**
      * Precomputed value that indicates whether flags array contains any text effect flag.
      */
@@ -815,6 +1097,10 @@ public class TextLayout {
                     mBakedGlyphsArray.valueAt(0).length << 2
             )) * mBakedGlyphsArray.size();
         }
+        TextHitIndex hitIndex = mHitIndex;
+        if (hitIndex != null) {
+            m += hitIndex.getMemorySize();
+        }
         return m + 64;
     }
 
@@ -544,6 +544,7 @@ public class TextLayoutEngine extends FontResourceManager
         pw.print("CacheCount=" + getCacheCount());
         long memorySize = getCacheMemorySize();
         pw.println(", CacheSize=" + TextUtils.binaryCompact(memorySize) + " (" + memorySize + " bytes)");
+        TextLayoutProcessor.dumpBidiInfo(pw);
     }
 
     //// START Resource Reloading
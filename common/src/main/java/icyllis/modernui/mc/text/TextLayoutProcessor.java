@@ -18,6 +18,9 @@
 
 package icyllis.modernui.mc.text;
 
+import com.ibm.icu.lang.UCharacter;
+import com.ibm.icu.lang.UCharacterDirection;
+import com.ibm.icu.lang.UProperty;
 import com.ibm.icu.text.Bidi;
 import com.ibm.icu.text.BidiRun;
 import com.ibm.icu.text.BreakIterator;
@@ -31,6 +34,7 @@ import icyllis.modernui.text.TextDirectionHeuristic;
 import icyllis.modernui.text.TextDirectionHeuristics;
 import it.unimi.dsi.fastutil.bytes.ByteArrayList;
 import it.unimi.dsi.fastutil.floats.FloatArrayList;
+import it.unimi.dsi.fastutil.ints.Int2ObjectLinkedOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 import net.minecraft.network.chat.FormattedText;
 import net.minecraft.network.chat.Style;
@@ -41,7 +45,10 @@ import net.minecraft.util.StringDecomposer;
 import net.minecraft.util.Unit;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.PrintWriter;
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 
 /**
@@ -219,6 +226,25 @@ public class TextLayoutProcessor {
     private boolean mComputeAdvances = true;
     private boolean mComputeLineBoundaries = true;
 
+    /**
+     * Reused for full bidi analysis, grows as needed.
+     */
+    private final Bidi mBidi = new Bidi();
+
+    /**
+     * Max text length and number of entries of the bidi run cache.
+     */
+    public static final int MAX_BIDI_CACHE_TEXT_LENGTH = 256;
+    public static final int MAX_BIDI_CACHE_ENTRIES = 64;
+
+    private final BidiRunCache mBidiRunCache = new BidiRunCache();
+
+    // bidi analysis counters, all processors
+    private static final LongAdder sBidiNotRequired = new LongAdder();
+    private static final LongAdder sBidiFastPath = new LongAdder();
+    private static final LongAdder sBidiCacheHits = new LongAdder();
+    private static final LongAdder sBidiFullAnalysis = new LongAdder();
+
     /**
      * Always LTR.
      *
@@ -346,6 +372,22 @@ public class TextLayoutProcessor {
         return Math.min((int) (sBaseFontSize * resLevel + 0.5), 96);
     }
 
+    /**
+     * Rounds up a font size to a strike bucket, sizes up to 8 are exact, larger sizes
+     * are quantized to quarter-octave steps. Text in a scaling animation or smooth zoom
+     * then shares a few strikes, and glyphs are scaled down on GPU between them.
+     *
+     * @param fontSize the font size in device space
+     * @return the bucket font size, not smaller than the given size
+     */
+    public static int quantizeFontSize(int fontSize) {
+        if (fontSize <= 8) {
+            return fontSize;
+        }
+        int step = Integer.highestOneBit(fontSize) >> 2;
+        return Math.min((fontSize + step - 1) / step * step, 96);
+    }
+
     /*private void finishBidiRun(float adjust) {
         if (adjust != 0) {
             mBidiList.forEach(e -> e.mOffsetX += adjust);
@@ -625,6 +667,7 @@ public class TextLayoutProcessor {
             if (DEBUG) {
                 ModernUIMod.LOGGER.info(TextLayoutEngine.MARKER, "All LTR");
             }
+            sBidiNotRequired.increment();
             handleBidiRun(text, 0, text.length, false);
         } else {
             final byte paraLevel;
@@ -640,7 +683,27 @@ public class TextLayoutProcessor {
                 final boolean isRtl = dir.isRtl(text, 0, text.length);
                 paraLevel = isRtl ? Bidi.RTL : Bidi.LTR;
             }
-            Bidi bidi = new Bidi(text.length, 0);
+            /* Fast path for LTR text with one embedded RTL span, typical in chat */
+            if ((paraLevel == Bidi.LTR || paraLevel == Bidi.LEVEL_DEFAULT_LTR) &&
+                    handleSingleRtlSpan(text, paraLevel == Bidi.LEVEL_DEFAULT_LTR)) {
+                sBidiFastPath.increment();
+                return;
+            }
+            final boolean cacheable = text.length <= MAX_BIDI_CACHE_TEXT_LENGTH;
+            int textHash = 0;
+            if (cacheable) {
+                textHash = BidiRunCache.hash(mBuilder);
+                final int[] runs = mBidiRunCache.get(textHash, mBuilder, paraLevel);
+                if (runs != null) {
+                    sBidiCacheHits.increment();
+                    for (int i = 0; i < runs.length; i += 2) {
+                        handleBidiRun(text, runs[i], runs[i + 1] & Integer.MAX_VALUE, runs[i + 1] < 0);
+                    }
+                    return;
+                }
+            }
+            sBidiFullAnalysis.increment();
+            final Bidi bidi = mBidi;
             bidi.setPara(text, paraLevel, null);
 
             /* If text is entirely right-to-left, then insert a node for the entire string */
@@ -648,6 +711,9 @@ public class TextLayoutProcessor {
                 if (DEBUG) {
                     ModernUIMod.LOGGER.info(TextLayoutEngine.MARKER, "All RTL (analysis)");
                 }
+                if (cacheable) {
+                    mBidiRunCache.put(textHash, text, new int[]{0, text.length | Integer.MIN_VALUE});
+                }
                 handleBidiRun(text, 0, text.length, true);
             }
             /* If text is entirely left-to-right, then insert a node for the entire string */
@@ -655,18 +721,15 @@ public class TextLayoutProcessor {
                 if (DEBUG) {
                     ModernUIMod.LOGGER.info(TextLayoutEngine.MARKER, "All LTR (analysis)");
                 }
+                if (cacheable) {
+                    mBidiRunCache.put(textHash, text, new int[]{0, text.length});
+                }
                 handleBidiRun(text, 0, text.length, false);
             }
             /* Otherwise text has a mixture of LTR and RLT, and it requires full bidirectional analysis */
             else {
                 int runCount = bidi.getRunCount();
-                //byte[] runs = new byte[runCount];
-
-                /* Reorder contiguous runs of text into their display order from left to right */
-                /*for (int i = 0; i < runCount; i++) {
-                    runs[i] = (byte) bidi.getRunLevel(i);
-                }
-                int[] indexMap = Bidi.reorderVisual(runs);*/
+                final int[] runs = cacheable ? new int[runCount << 1] : null;
 
                 /*
                  * Every GlyphVector must be created on a contiguous run of left-to-right or right-to-left text. Keep
@@ -674,19 +737,208 @@ public class TextLayoutProcessor {
                  * assigned a position relative to the start of the entire string and not just relative to that run.
                  */
                 for (int visualIndex = 0; visualIndex < runCount; visualIndex++) {
-                    /*int logicalIndex = indexMap[visualIndex];
-                    performBidiRun(text, bidi.getRunStart(logicalIndex), bidi.getRunLimit(logicalIndex),
-                            (bidi.getRunLevel(logicalIndex) & 1) != 0, fastDigit);*/
-
                     /* An odd numbered level indicates right-to-left ordering */
                     BidiRun run = bidi.getVisualRun(visualIndex);
                     if (DEBUG) {
                         ModernUIMod.LOGGER.info(TextLayoutEngine.MARKER, "VisualRun {}, {}", visualIndex, run);
                     }
+                    if (runs != null) {
+                        runs[visualIndex << 1] = run.getStart();
+                        runs[visualIndex << 1 | 1] = run.getLimit() | (run.isOddRun() ? Integer.MIN_VALUE : 0);
+                    }
                     handleBidiRun(text, run.getStart(), run.getLimit(), run.isOddRun());
                 }
+                if (runs != null) {
+                    mBidiRunCache.put(textHash, text, runs);
+                }
+            }
+        }
+    }
+
+    /**
+     * Cache of visual runs of mixed-direction texts, keyed by the hash of the stripped text,
+     * only valid for one paragraph level. Entries are compared against the text in place,
+     * a hash collision replaces the older entry.
+     */
+    static final class BidiRunCache {
+
+        private final Int2ObjectLinkedOpenHashMap<BidiRunEntry> mEntries =
+                new Int2ObjectLinkedOpenHashMap<>();
+        private byte mParaLevel = -1;
+
+        // same as String.hashCode(), without copying the builder
+        static int hash(@Nonnull CharSequence text) {
+            int h = 0;
+            for (int i = 0, e = text.length(); i < e; i++) {
+                h = 31 * h + text.charAt(i);
+            }
+            return h;
+        }
+
+        /**
+         * Returns the cached visual runs packed as (start, limit | odd &lt;&lt; 31), or null.
+         * The cache is cleared when the paragraph level changes.
+         */
+        @Nullable
+        int[] get(int textHash, @Nonnull CharSequence text, byte paraLevel) {
+            if (mParaLevel != paraLevel) {
+                mEntries.clear();
+                mParaLevel = paraLevel;
+            }
+            BidiRunEntry entry = mEntries.getAndMoveToLast(textHash);
+            if (entry != null && entry.matches(text)) {
+                return entry.runs;
+            }
+            return null;
+        }
+
+        void put(int textHash, @Nonnull char[] text, @Nonnull int[] runs) {
+            mEntries.putAndMoveToLast(textHash, new BidiRunEntry(text, runs));
+            if (mEntries.size() > MAX_BIDI_CACHE_ENTRIES) {
+                mEntries.removeFirst();
+            }
+        }
+    }
+
+    /**
+     * Visual runs packed as (start, limit | odd &lt;&lt; 31). The text buffer is owned by the
+     * created layout and never modified.
+     */
+    private record BidiRunEntry(char[] text, int[] runs) {
+
+        boolean matches(@Nonnull CharSequence builder) {
+            final char[] buf = text;
+            if (buf.length != builder.length()) {
+                return false;
+            }
+            for (int i = 0; i < buf.length; i++) {
+                if (buf[i] != builder.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Fast path of the Unicode Bidirectional Algorithm for an LTR paragraph that has exactly
+     * one span of strong right-to-left characters. Then there are at most three runs, LTR,
+     * RTL and LTR, in both logical and visual order. Neutrals between the span and LTR text
+     * take the paragraph direction, neutrals within the span and nonspacing marks following
+     * it take RTL.
+     * <p>
+     * This gives up if there are explicit formatting characters, separators, Arabic numbers,
+     * European numbers following RTL text, paired brackets after the span start, or more
+     * than one RTL span, which need the full algorithm.
+     *
+     * @param text        the full plain text in logical order
+     * @param firstStrong paragraph direction is determined by the first strong character
+     * @return true if handled, false to perform the full analysis
+     * @see #findSingleRtlSpan(char[], boolean)
+     */
+    private boolean handleSingleRtlSpan(@Nonnull char[] text, boolean firstStrong) {
+        final long span = findSingleRtlSpan(text, firstStrong);
+        if (span < 0) {
+            return false;
+        }
+        final int length = text.length;
+        final int spanStart = (int) (span >>> 32);
+        final int spanLimit = (int) span;
+        if (DEBUG) {
+            ModernUIMod.LOGGER.info(TextLayoutEngine.MARKER, "Single RTL span {}-{}", spanStart, spanLimit);
+        }
+        if (spanStart > 0) {
+            handleBidiRun(text, 0, spanStart, false);
+        }
+        handleBidiRun(text, spanStart, spanLimit, true);
+        if (spanLimit < length) {
+            handleBidiRun(text, spanLimit, length, false);
+        }
+        return true;
+    }
+
+    /**
+     * Finds the only span of strong right-to-left characters in an LTR paragraph, see
+     * {@link #handleSingleRtlSpan(char[], boolean)}.
+     *
+     * @return the span packed as (start &lt;&lt; 32 | limit), or -1 if the full analysis is required
+     */
+    static long findSingleRtlSpan(@Nonnull char[] text, boolean firstStrong) {
+        final int length = text.length;
+        int spanStart = -1;
+        int spanLimit = -1;
+        boolean seenLtr = false;
+        // whether the last strong character is RTL
+        boolean inRtl = false;
+        for (int i = 0; i < length; ) {
+            final int c = Character.codePointAt(text, i, length);
+            final int next = i + Character.charCount(c);
+            switch (UCharacter.getDirection(c)) {
+                case UCharacterDirection.LEFT_TO_RIGHT -> {
+                    if (spanStart >= 0) {
+                        // LTR text following the span
+                        inRtl = false;
+                    }
+                    seenLtr = true;
+                }
+                case UCharacterDirection.RIGHT_TO_LEFT, UCharacterDirection.RIGHT_TO_LEFT_ARABIC -> {
+                    if (spanStart < 0) {
+                        if (firstStrong && !seenLtr) {
+                            // an RTL paragraph
+                            return -1;
+                        }
+                        spanStart = i;
+                    } else if (!inRtl) {
+                        // the second RTL span
+                        return -1;
+                    }
+                    inRtl = true;
+                    spanLimit = next;
+                }
+                case UCharacterDirection.DIR_NON_SPACING_MARK -> {
+                    if (inRtl && spanLimit == i) {
+                        // nonspacing marks take the type of previous character
+                        spanLimit = next;
+                    }
+                }
+                case UCharacterDirection.EUROPEAN_NUMBER -> {
+                    if (inRtl) {
+                        // numbers after RTL text have a higher level
+                        return -1;
+                    }
+                }
+                case UCharacterDirection.WHITE_SPACE_NEUTRAL,
+                     UCharacterDirection.EUROPEAN_NUMBER_SEPARATOR,
+                     UCharacterDirection.EUROPEAN_NUMBER_TERMINATOR,
+                     UCharacterDirection.COMMON_NUMBER_SEPARATOR -> {
+                    // neutrals, since there are no European numbers in RTL context
+                }
+                case UCharacterDirection.OTHER_NEUTRAL -> {
+                    if (spanStart >= 0 && UCharacter.getIntPropertyValue(c,
+                            UProperty.BIDI_PAIRED_BRACKET_TYPE) != UCharacter.BidiPairedBracketType.NONE) {
+                        // bracket pairs may take the direction of their content
+                        return -1;
+                    }
+                }
+                default -> {
+                    // Arabic numbers, separators, explicit formatting characters
+                    return -1;
+                }
             }
+            i = next;
         }
+        if (spanStart < 0) {
+            return -1;
+        }
+        return (long) spanStart << 32 | spanLimit;
+    }
+
+    /**
+     * Print bidi analysis counters of all processors.
+     */
+    public static void dumpBidiInfo(@Nonnull PrintWriter pw) {
+        pw.printf("TextLayoutProcessor: Bidi (not required: %d, fast path: %d, cache hits: %d, full: %d)\n",
+                sBidiNotRequired.sum(), sBidiFastPath.sum(), sBidiCacheHits.sum(), sBidiFullAnalysis.sum());
     }
 
     /**
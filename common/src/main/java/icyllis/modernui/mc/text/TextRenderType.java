@@ -31,6 +31,7 @@ import icyllis.modernui.core.Core;
 import icyllis.modernui.mc.ModernUIMod;
 import icyllis.modernui.mc.text.mixin.AccessBufferSource;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.Font;
 import net.minecraft.client.renderer.*;
@@ -66,6 +67,72 @@ public class TextRenderType extends RenderType {
             ShaderDefines.EMPTY
     );
 
+    /**
+     * Draws a glyph and its drop shadow from the same expanded quad, for 2D only.
+     *
+     * @see #getOrCreateShadow(int)
+     */
+    public static final ShaderProgram SHADER_SHADOW = new ShaderProgram(
+            ModernUIMod.location("core/rendertype_modern_text_shadow"),
+            DefaultVertexFormat.POSITION_COLOR_TEX_LIGHTMAP,
+            ShaderDefines.EMPTY
+    );
+
+    /**
+     * Draws glyphs from the outline font atlas, the color emoji atlas and the bitmap
+     * atlas in one batch. The atlas is selected by the integral part of U.
+     *
+     * @see #getOrCreateCombined(int, int, int, boolean)
+     */
+    public static final ShaderProgram SHADER_COMBINED = new ShaderProgram(
+            ModernUIMod.location("core/rendertype_modern_text_combined"),
+            DefaultVertexFormat.POSITION_COLOR_TEX_LIGHTMAP,
+            ShaderDefines.EMPTY
+    );
+
+    /**
+     * U offsets of color emoji and bitmap glyphs in combined render types,
+     * outline glyphs have no offset.
+     */
+    public static final float COMBINED_EMOJI_U = 2.0f;
+    public static final float COMBINED_BITMAP_U = 4.0f;
+
+    /**
+     * Quad modes of {@link #getOrCreateSDFOutline(int, int)}, in overlay U coordinates.
+     */
+    public static final int SDF_OUTLINE_QUAD_FILL = 0;
+    public static final int SDF_OUTLINE_QUAD_OUTLINE = 1;
+    public static final int SDF_OUTLINE_QUAD_COLOR_EMOJI = 2;
+
+    /**
+     * Text vertex format with the quad mode, see {@link #SDF_OUTLINE_QUAD_FILL}, in overlay coordinates.
+     *
+     * @see #getOrCreateSDFOutline(int, int)
+     */
+    public static final VertexFormat POSITION_COLOR_TEX_OVERLAY_LIGHTMAP = VertexFormat.builder()
+            .add("Position", VertexFormatElement.POSITION)
+            .add("Color", VertexFormatElement.COLOR)
+            .add("UV0", VertexFormatElement.UV0)
+            .add("UV1", VertexFormatElement.UV1)
+            .add("UV2", VertexFormatElement.UV2)
+            .build();
+
+    /**
+     * Draws SDF fill, glowing outline or color emoji, selected per quad.
+     *
+     * @see #getOrCreateSDFOutline(int, int)
+     */
+    public static final ShaderProgram SHADER_SDF_FILL_OUTLINE = new ShaderProgram(
+            ModernUIMod.location("core/rendertype_modern_text_sdf_fill_outline"),
+            POSITION_COLOR_TEX_OVERLAY_LIGHTMAP,
+            ShaderDefines.EMPTY
+    );
+
+    /**
+     * Max shadow offset in pixels that can be encoded in vertex data of shadow types.
+     */
+    public static final int MAX_SHADOW_PIXELS = 127;
+
     public static final ShaderProgram SHADER_SDF_FILL = new ShaderProgram(
             ModernUIMod.location("core/rendertype_modern_text_sdf_fill"),
             DefaultVertexFormat.POSITION_COLOR_TEX_LIGHTMAP,
@@ -110,18 +177,29 @@ public class TextRenderType extends RenderType {
      * Texture id to render type map
      */
     private static final Int2ObjectOpenHashMap<TextRenderType> sNormalTypes = new Int2ObjectOpenHashMap<>();
+    private static final Int2ObjectOpenHashMap<TextRenderType> sShadowTypes = new Int2ObjectOpenHashMap<>();
     private static final Int2ObjectOpenHashMap<TextRenderType> sSDFFillTypes = new Int2ObjectOpenHashMap<>();
     private static final Int2ObjectOpenHashMap<TextRenderType> sSDFStrokeTypes = new Int2ObjectOpenHashMap<>();
     private static final Int2ObjectOpenHashMap<TextRenderType> sVanillaTypes = new Int2ObjectOpenHashMap<>();
     private static final Int2ObjectOpenHashMap<TextRenderType> sSeeThroughTypes = new Int2ObjectOpenHashMap<>();
     private static final Int2ObjectOpenHashMap<TextRenderType> sPolygonOffsetTypes = new Int2ObjectOpenHashMap<>();
 
+    /**
+     * Packed texture ids to combined render type map
+     */
+    private static final Long2ObjectOpenHashMap<TextRenderType> sCombinedTypes = new Long2ObjectOpenHashMap<>();
+    private static final Long2ObjectOpenHashMap<TextRenderType> sCombinedShadowTypes = new Long2ObjectOpenHashMap<>();
+    private static final Long2ObjectOpenHashMap<TextRenderType> sSDFOutlineTypes = new Long2ObjectOpenHashMap<>();
+
     private static TextRenderType sFirstSDFFillType;
     private static final ByteBufferBuilder sFirstSDFFillBuffer = new ByteBufferBuilder(131072);
 
     private static TextRenderType sFirstSDFStrokeType;
     private static final ByteBufferBuilder sFirstSDFStrokeBuffer = new ByteBufferBuilder(131072);
 
+    private static TextRenderType sFirstSDFOutlineType;
+    private static final ByteBufferBuilder sFirstSDFOutlineBuffer = new ByteBufferBuilder(131072);
+
     // SDF requires bilinear sampling
     @SharedPtr
     private static GLSampler sLinearFontSampler;
@@ -208,7 +286,12 @@ public class TextRenderType extends RenderType {
     }
 
     private TextRenderType(String name, int bufferSize, Runnable setupState, Runnable clearState) {
-        super(name, DefaultVertexFormat.POSITION_COLOR_TEX_LIGHTMAP, VertexFormat.Mode.QUADS,
+        this(name, DefaultVertexFormat.POSITION_COLOR_TEX_LIGHTMAP, bufferSize, setupState, clearState);
+    }
+
+    private TextRenderType(String name, VertexFormat format, int bufferSize,
+                           Runnable setupState, Runnable clearState) {
+        super(name, format, VertexFormat.Mode.QUADS,
                 bufferSize, false, true, setupState, clearState);
     }
 
@@ -222,6 +305,67 @@ public class TextRenderType extends RenderType {
         };
     }
 
+    /**
+     * Returns a render type that draws the glyph and its drop shadow in a single pass.
+     * The quad is expanded to the bottom right by the shadow offset, and the lightmap
+     * coordinates are replaced by (glyph width | shadow offset &lt;&lt; 8, glyph height)
+     * in pixels, since text in 2D is always full bright.
+     */
+    @Nonnull
+    public static TextRenderType getOrCreateShadow(int texture) {
+        return sShadowTypes.computeIfAbsent(texture, TextRenderType::makeShadowType);
+    }
+
+    /**
+     * Returns a render type that draws SDF fill, glowing outline and color emoji in a single
+     * pass, using {@link #POSITION_COLOR_TEX_OVERLAY_LIGHTMAP}. Outline quads must be written
+     * before fill quads, then fills are drawn over outlines. The emoji atlas is bound as well,
+     * so color emoji do not split the batch of SDF text. This requires text shaders,
+     * check {@link TextLayoutEngine#sUseTextShadersInWorld} in world rendering.
+     *
+     * @param fontTexture  the outline font atlas
+     * @param emojiTexture the color emoji atlas
+     */
+    @Nonnull
+    public static TextRenderType getOrCreateSDFOutline(int fontTexture, int emojiTexture) {
+        long key = (fontTexture & 0xFFFFFFFFL) | ((long) emojiTexture << 32);
+        TextRenderType renderType = sSDFOutlineTypes.get(key);
+        if (renderType == null) {
+            renderType = makeSDFOutlineType(fontTexture, emojiTexture);
+            sSDFOutlineTypes.put(key, renderType);
+        }
+        return renderType;
+    }
+
+    /**
+     * Returns a render type that binds the outline font atlas, the color emoji atlas and
+     * the bitmap atlas at the same time, so mixed text can be drawn without switching
+     * render types. Color emoji and bitmap glyphs must offset their U coordinates by
+     * {@link #COMBINED_EMOJI_U} and {@link #COMBINED_BITMAP_U} respectively.
+     * <p>
+     * If <var>withShadow</var> is true, this is the combined version of
+     * {@link #getOrCreateShadow(int)}, only outline glyphs can have shadow offset.
+     * This is for {@link #MODE_NORMAL} only, and requires text shaders.
+     *
+     * @return the render type, or null if texture ids cannot be packed
+     */
+    @Nullable
+    public static TextRenderType getOrCreateCombined(int fontTexture, int emojiTexture, int bitmapTexture,
+                                                     boolean withShadow) {
+        // GL object names are small in practice
+        if (((fontTexture | emojiTexture | bitmapTexture) & ~0x1FFFFF) != 0) {
+            return null;
+        }
+        long key = (long) fontTexture | ((long) emojiTexture << 21) | ((long) bitmapTexture << 42);
+        var types = withShadow ? sCombinedShadowTypes : sCombinedTypes;
+        TextRenderType renderType = types.get(key);
+        if (renderType == null) {
+            renderType = makeCombinedType(fontTexture, emojiTexture, bitmapTexture, withShadow);
+            types.put(key, renderType);
+        }
+        return renderType;
+    }
+
     // compatibility
     @Nonnull
     public static TextRenderType getOrCreate(int texture, Font.DisplayMode mode, boolean isBitmapFont) {
@@ -243,6 +387,32 @@ public class TextRenderType extends RenderType {
         }, () -> NORMAL_STATES.forEach(RenderStateShard::clearRenderState));
     }
 
+    @Nonnull
+    private static TextRenderType makeShadowType(int texture) {
+        return new TextRenderType("modern_text_shadow", 256, () -> {
+            RenderSystem.setShader(SHADER_SHADOW);
+            NORMAL_STATES.forEach(RenderStateShard::setupRenderState);
+            RenderSystem.setShaderTexture(0, texture);
+        }, () -> NORMAL_STATES.forEach(RenderStateShard::clearRenderState));
+    }
+
+    @Nonnull
+    private static TextRenderType makeCombinedType(int fontTexture, int emojiTexture, int bitmapTexture,
+                                                   boolean withShadow) {
+        return new TextRenderType(withShadow ? "modern_text_combined_shadow" : "modern_text_combined", 256, () -> {
+            RenderSystem.setShader(withShadow ? SHADER_SHADOW : SHADER_COMBINED);
+            NORMAL_STATES.forEach(RenderStateShard::setupRenderState);
+            RenderSystem.setShaderTexture(0, fontTexture);
+            // after overlay state, Sampler1 is free, Sampler2 is lightmap
+            RenderSystem.setShaderTexture(1, emojiTexture);
+            RenderSystem.setShaderTexture(3, bitmapTexture);
+        }, () -> {
+            NORMAL_STATES.forEach(RenderStateShard::clearRenderState);
+            RenderSystem.setShaderTexture(1, 0);
+            RenderSystem.setShaderTexture(3, 0);
+        });
+    }
+
     private static void ensureLinearFontSampler() {
         if (sLinearFontSampler == null) {
             ImmediateContext context = Core.requireImmediateContext();
@@ -315,6 +485,36 @@ public class TextRenderType extends RenderType {
         return renderType;
     }
 
+    @Nonnull
+    private static TextRenderType makeSDFOutlineType(int fontTexture, int emojiTexture) {
+        ensureLinearFontSampler();
+        TextRenderType renderType = new TextRenderType("modern_text_sdf_fill_outline",
+                POSITION_COLOR_TEX_OVERLAY_LIGHTMAP, 256, () -> {
+            RenderSystem.setShader(SHADER_SDF_FILL_OUTLINE);
+            SDF_FILL_STATES.forEach(RenderStateShard::setupRenderState);
+            RenderSystem.setShaderTexture(0, fontTexture);
+            // after overlay state, Sampler1 is free, Sampler2 is lightmap
+            RenderSystem.setShaderTexture(1, emojiTexture);
+            GL33C.glBindSampler(0, sLinearFontSampler.getHandle());
+        }, () -> {
+            SDF_FILL_STATES.forEach(RenderStateShard::clearRenderState);
+            RenderSystem.setShaderTexture(1, 0);
+            GL33C.glBindSampler(0, 0);
+        });
+        if (sFirstSDFOutlineType == null) {
+            assert (sSDFOutlineTypes.isEmpty());
+            sFirstSDFOutlineType = renderType;
+            // glowing signs are batched in world rendering
+            try {
+                ((AccessBufferSource) Minecraft.getInstance().renderBuffers().bufferSource()).getFixedBuffers()
+                        .put(renderType, sFirstSDFOutlineBuffer);
+            } catch (Exception e) {
+                LOGGER.warn(MARKER, "Failed to add SDF outline to fixed buffers", e);
+            }
+        }
+        return renderType;
+    }
+
     @Nonnull
     private static TextRenderType makeVanillaType(int texture) {
         return new TextRenderType("modern_text_vanilla", 256, () -> {
@@ -378,14 +578,28 @@ public class TextRenderType extends RenderType {
             }
             sFirstSDFStrokeType = null;
         }
+        if (sFirstSDFOutlineType != null) {
+            assert (!sSDFOutlineTypes.isEmpty());
+            var access = (AccessBufferSource) Minecraft.getInstance().renderBuffers().bufferSource();
+            try {
+                access.getFixedBuffers().remove(sFirstSDFOutlineType, sFirstSDFOutlineBuffer);
+            } catch (Exception ignored) {
+            }
+            sFirstSDFOutlineType = null;
+        }
         sNormalTypes.clear();
+        sShadowTypes.clear();
         sSDFFillTypes.clear();
         sSDFStrokeTypes.clear();
+        sSDFOutlineTypes.clear();
         sVanillaTypes.clear();
         sSeeThroughTypes.clear();
         sPolygonOffsetTypes.clear();
+        sCombinedTypes.clear();
+        sCombinedShadowTypes.clear();
         sFirstSDFFillBuffer.clear();
         sFirstSDFStrokeBuffer.clear();
+        sFirstSDFOutlineBuffer.clear();
         if (cleanup) {
             sLinearFontSampler = RefCnt.move(sLinearFontSampler);
             sCurrentShaderSDFFill = null;
@@ -271,6 +271,11 @@ public class PreferencesFragment extends Fragment {
                     1, Config.CLIENT.mBlurRadius, onChanged)
                     .create(list, 2);
 
+            new DropDownOption<>(context, "modernui.center.screen.blurMode",
+                    Config.Client.BlurMode.values(),
+                    Config.CLIENT.mBlurMode, onChanged)
+                    .create(list);
+
             new DropDownOption<>(context, "modernui.center.screen.windowMode",
                     Config.Client.WindowMode.values(),
                     Config.CLIENT.mWindowMode, onChanged)
@@ -280,6 +285,10 @@ public class PreferencesFragment extends Fragment {
                     10, Config.CLIENT.mFramerateInactive, onChanged)
                     .create(list, 3);
 
+            new IntegerOption(context, "modernui.center.screen.uiFrameRate",
+                    10, Config.CLIENT.mUiFrameRate, onChanged)
+                    .create(list, 4);
+
             /*list.addView(createIntegerOption(context, "modernui.center.screen.framerateMinimized",
                     0, 255, 3, 5,
                     Config.CLIENT.mFramerateMinimized, onChanged));*/
@@ -512,6 +521,10 @@ public class PreferencesFragment extends Fragment {
                     Config.CLIENT.mEmojiShortcodes, onChanged)
                     .create(list);
 
+            new IntegerOption(context, "modernui.center.extension.editBoxUndoLimit",
+                    16, Config.CLIENT.mEditBoxUndoLimit, onChanged)
+                    .create(list, 5);
+
             new BooleanOption(context, "modernui.center.extension.smoothScrolling",
                     () -> !Boolean.parseBoolean(
                             ModernUIClient.getBootstrapProperty(ModernUIMod.BOOTSTRAP_DISABLE_SMOOTH_SCROLLING)
@@ -100,6 +100,7 @@ public class ModernUIFabricClient extends ModernUIClient implements ClientModIni
             @Override
             public void onResourceManagerReload(@Nonnull ResourceManager resourceManager) {
                 ImageStore.getInstance().clear();
+                ItemIconCache.getInstance().invalidate();
                 Handler handler = Core.getUiHandlerAsync();
                 // FML may throw ex, so it can be null
                 if (handler != null) {
@@ -21,6 +21,7 @@ package icyllis.modernui.mc.text;
 import com.mojang.brigadier.Command;
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.arguments.FloatArgumentType;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
 import icyllis.modernui.ModernUI;
 import icyllis.modernui.graphics.text.Font;
 import icyllis.modernui.mc.ModernUIMod;
@@ -66,6 +67,24 @@ public class MuiTextCommand {
                                         )
                                 )
                         )
+                        .then(ClientCommandManager.literal("bench")
+                                .executes(ctx -> {
+                                    bench(
+                                            ctx.getSource(),
+                                            TextBenchmark.DEFAULT_ITERATIONS
+                                    );
+                                    return Command.SINGLE_SUCCESS;
+                                })
+                                .then(ClientCommandManager.argument("iterations", IntegerArgumentType.integer(1, 10000))
+                                        .executes(ctx -> {
+                                            bench(
+                                                    ctx.getSource(),
+                                                    ctx.getArgument("iterations", Integer.class)
+                                            );
+                                            return Command.SINGLE_SUCCESS;
+                                        })
+                                )
+                        )
                 )
         );
     }
@@ -206,4 +225,14 @@ public class MuiTextCommand {
         source.sendFeedback(b);
         Util.ioPool().execute(() -> ModernUIMod.LOGGER.info(TextLayoutEngine.MARKER, result));
     }
+
+    private static void bench(FabricClientCommandSource source,
+                              int iterations) {
+        String result = TextBenchmark.run(iterations);
+        source.sendFeedback(
+                Component.literal(result)
+                        .setStyle(Style.EMPTY.withFont(JB_MONO))
+        );
+        Util.ioPool().execute(() -> ModernUIMod.LOGGER.info(TextLayoutEngine.MARKER, result));
+    }
 }
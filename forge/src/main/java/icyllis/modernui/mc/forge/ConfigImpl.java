@@ -20,6 +20,7 @@ package icyllis.modernui.mc.forge;
 
 import icyllis.modernui.mc.Config;
 import icyllis.modernui.mc.ConfigItem;
+import icyllis.modernui.mc.EditBoxUndoHistory;
 import icyllis.modernui.mc.ModernUIClient;
 import icyllis.modernui.mc.ModernUIMod;
 import icyllis.modernui.mc.text.TextLayout;
@@ -221,6 +222,8 @@ public final class ConfigImpl {
         public static final float TOOLTIP_SHADOW_RADIUS_MAX = 32;
         public static final int TOOLTIP_ARROW_SCROLL_FACTOR_MIN = 0;
         public static final int TOOLTIP_ARROW_SCROLL_FACTOR_MAX = 320;
+        public static final int UI_FRAME_RATE_MIN = 0;
+        public static final int UI_FRAME_RATE_MAX = 1000;
 
         public final ForgeConfigSpec.BooleanValue mBlurEffect;
         //public final ForgeConfigSpec.BooleanValue mBlurWithBackground;
@@ -228,6 +231,7 @@ public final class ConfigImpl {
         public final ForgeConfigSpec.BooleanValue mOverrideVanillaBlur;
         public final ForgeConfigSpec.IntValue mBackgroundDuration;
         public final ForgeConfigSpec.IntValue mBlurRadius;
+        public final ForgeConfigSpec.EnumValue<Config.Client.BlurMode> mBlurMode;
         public final ForgeConfigSpec.ConfigValue<List<? extends String>> mBackgroundColor;
         public final ForgeConfigSpec.BooleanValue mInventoryPause;
         public final ForgeConfigSpec.BooleanValue mTooltip;
@@ -262,6 +266,7 @@ public final class ConfigImpl {
         //public final ForgeConfigSpec.IntValue mFramerateMinimized;
         public final ForgeConfigSpec.DoubleValue mMasterVolumeInactive;
         public final ForgeConfigSpec.DoubleValue mMasterVolumeMinimized;
+        public final ForgeConfigSpec.IntValue mUiFrameRate;
 
         public final ForgeConfigSpec.IntValue mScrollbarSize;
         public final ForgeConfigSpec.IntValue mTouchSlop;
@@ -285,6 +290,7 @@ public final class ConfigImpl {
         public final ForgeConfigSpec.BooleanValue mUseColorEmoji;
         public final ForgeConfigSpec.BooleanValue mLinearMetrics;
         public final ForgeConfigSpec.BooleanValue mEmojiShortcodes;
+        public final ForgeConfigSpec.IntValue mEditBoxUndoLimit;
 
         /*public final ForgeConfigSpec.BooleanValue mSkipGLCapsError;
         public final ForgeConfigSpec.BooleanValue mShowGLCapsError;*/
@@ -330,6 +336,11 @@ public final class ConfigImpl {
                             "The kernel radius for gaussian convolution blur effect, 0 = disable.",
                             "samples per pixel = ((radius * 2) + 1) * 2, sigma = radius / 2.")
                     .defineInRange("blurRadius", 7, BLUR_RADIUS_MIN, BLUR_RADIUS_MAX);
+            mBlurMode = builder.comment(
+                            "The blur algorithm, GAUSSIAN is a full-resolution separable gaussian blur,",
+                            "DUAL_FILTER progressively downsamples and upsamples the image, it is much cheaper",
+                            "at high resolutions and large radii with approximately the same strength.")
+                    .defineEnum("blurMode", Config.Client.BlurMode.GAUSSIAN);
             mBlurBlacklist = builder.comment(
                             "A list of GUI screen superclasses that won't activate blur effect when opened.")
                     .defineList("blurBlacklist", () -> {
@@ -354,6 +365,11 @@ public final class ConfigImpl {
                             "Master volume multiplier on window minimized, 1 = same as master volume inactive.",
                             "This value will be no greater than master volume inactive.")
                     .defineInRange("masterVolumeMinimized", 0.25, 0, 1);
+            mUiFrameRate = builder.comment(
+                            "Target frame rate of Modern UI screens, 0 = synchronized with the game.",
+                            "UI frames are only recorded when something changed, this limits how often they are.",
+                            "When set, a heavily loaded game no longer stalls UI animations and input.")
+                    .defineInRange("uiFrameRate", 0, UI_FRAME_RATE_MIN, UI_FRAME_RATE_MAX);
 
             builder.pop();
 
@@ -477,6 +493,11 @@ public final class ConfigImpl {
             mEmojiShortcodes = builder.comment(
                             "Allow Slack or Discord shortcodes to replace Unicode Emoji Sequences in chat.")
                     .define("emojiShortcodes", true);
+            mEditBoxUndoLimit = builder.comment(
+                            "The maximum memory used by the undo history of each text field, in kilobytes.",
+                            "The oldest edits are forgotten first when the limit is exceeded.")
+                    .defineInRange("editBoxUndoLimit", EditBoxUndoHistory.sMemoryLimit / 1024,
+                            EditBoxUndoHistory.MEMORY_LIMIT_MIN / 1024, EditBoxUndoHistory.MEMORY_LIMIT_MAX / 1024);
 
             builder.pop();
 
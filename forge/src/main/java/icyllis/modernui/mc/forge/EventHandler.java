@@ -20,6 +20,7 @@ package icyllis.modernui.mc.forge;
 
 import icyllis.modernui.ModernUI;
 import icyllis.modernui.core.Core;
+import icyllis.modernui.mc.MessageChannel;
 import icyllis.modernui.mc.ModernUIMod;
 import icyllis.modernui.mc.StillAlive;
 import icyllis.modernui.mc.testforge.TestContainerMenu;
@@ -34,6 +35,7 @@ import net.minecraft.world.item.Items;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.event.TickEvent;
 import net.minecraftforge.event.entity.player.PlayerInteractEvent;
+import net.minecraftforge.eventbus.api.EventPriority;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.loading.FMLEnvironment;
@@ -150,6 +152,13 @@ final class EventHandler {
             StillAlive.tick();
         }
 
+        @SubscribeEvent(priority = EventPriority.LOWEST)
+        static void onEndClientTick(@Nonnull TickEvent.ClientTickEvent event) {
+            if (event.phase == TickEvent.Phase.END) {
+                MessageChannel.flushAllClient();
+            }
+        }
+
         /*@SubscribeEvent(receiveCanceled = true)
         static void onGuiOpen(@Nonnull GuiOpenEvent event) {
 
@@ -282,6 +282,8 @@ public final class MuiForgeApi extends MuiModApi {
             return;
         }
         NetworkMessages.openMenu(menu, writer).sendToPlayer(p);
+        // the menu must be opened before vanilla packets of its content
+        NetworkMessages.sNetwork.flush(p);
         p.initMenu(menu);
         p.containerMenu = menu;
         MinecraftForge.EVENT_BUS.post(new PlayerContainerEvent.Open(p, menu));
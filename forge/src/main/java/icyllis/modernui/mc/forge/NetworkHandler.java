@@ -18,10 +18,14 @@
 
 package icyllis.modernui.mc.forge;
 
+import icyllis.modernui.mc.MessageBuffer;
+import icyllis.modernui.mc.MessageChannel;
+import io.netty.buffer.ByteBuf;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.player.LocalPlayer;
 import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.util.thread.BlockableEventLoop;
 import net.minecraftforge.api.distmarker.Dist;
@@ -34,17 +38,20 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 /**
- * This class maintains a channel to {@link NetworkRegistry} that fixes some bugs.
+ * This class maintains a channel to {@link NetworkRegistry} that fixes some bugs,
+ * and provides the transport of {@link MessageChannel}.
  */
-@Deprecated
 @SuppressWarnings("unused")
-public class NetworkHandler {
-
-    protected final ResourceLocation mName;
+public class NetworkHandler extends MessageChannel<CustomPayloadEvent.Context> {
 
     protected final int mVersion;
     protected final boolean mOptional;
 
+    private final EventNetworkChannel mChannel;
+
+    // whether the subclass overrides the deprecated context-based server callback
+    private final boolean mLegacyServerHandler;
+
     /**
      * Create a network handler of a mod. Note that this is a distribution-sensitive operation,
      * you must be careful with the class loading.
@@ -56,11 +63,12 @@ public class NetworkHandler {
     public NetworkHandler(@Nonnull ResourceLocation name,
                           int version,
                           boolean optional) {
-        mName = name;
+        super(name);
         mVersion = version;
         mOptional = optional;
+        mLegacyServerHandler = overridesLegacyServerHandler(getClass());
 
-        EventNetworkChannel channel = ChannelBuilder.named(name)
+        EventNetworkChannel channel = mChannel = ChannelBuilder.named(name)
                 .networkProtocolVersion(version)
                 .clientAcceptedVersions(this::tryServerVersionOnClient)
                 .serverAcceptedVersions(this::tryClientVersionOnServer)
@@ -115,7 +123,7 @@ public class NetworkHandler {
         FriendlyByteBuf payload = event.getPayload();
         LocalPlayer currentPlayer = Minecraft.getInstance().player;
         if (payload != null && event.getLoginIndex() == Integer.MAX_VALUE && currentPlayer != null) {
-            handleClientMessage(payload.readUnsignedShort(), payload, event.getSource(), Minecraft.getInstance());
+            receive(payload, null, Minecraft.getInstance(), event.getSource());
         }
         event.getSource().setPacketHandled(true);
     }
@@ -125,15 +133,43 @@ public class NetworkHandler {
         FriendlyByteBuf payload = event.getPayload();
         ServerPlayer currentPlayer = event.getSource().getSender();
         if (payload != null && event.getLoginIndex() == Integer.MAX_VALUE && currentPlayer != null) {
-            handleServerMessage(payload.readUnsignedShort(), payload, event.getSource(), currentPlayer.server);
+            receive(payload, currentPlayer, currentPlayer.server, event.getSource());
         }
         event.getSource().setPacketHandled(true);
     }
 
+    private static boolean overridesLegacyServerHandler(@Nonnull Class<?> clazz) {
+        for (Class<?> c = clazz; c != NetworkHandler.class; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod("handleServerMessage", int.class, FriendlyByteBuf.class,
+                        CustomPayloadEvent.Context.class, BlockableEventLoop.class);
+                return true;
+            } catch (NoSuchMethodException ignored) {
+            }
+        }
+        return false;
+    }
+
+    @Nullable
+    @Override
+    protected BlockableEventLoop<?> getClientLooper() {
+        return FMLEnvironment.dist.isClient() ? Client.getLooper() : null;
+    }
+
+    @Nullable
+    @Override
+    protected MinecraftServer getLocalServer() {
+        if (mLegacyServerHandler) {
+            // the legacy callback requires a context, send through the network
+            return null;
+        }
+        return FMLEnvironment.dist.isClient() ? Client.getLocalServer() : null;
+    }
+
     /**
      * Callback for handling a server-to-client network message.
      * <p>
-     * This method is invoked on the Netty-IO thread, you need to consume the payload
+     * This method may be invoked on the Netty-IO thread, you need to consume the payload
      * and then process it further through thread scheduling. In addition to consuming,
      * you can also retain the payload to prevent it from being released after this
      * method call. In the latter case, you must manually release the payload.
@@ -142,17 +178,47 @@ public class NetworkHandler {
      *
      * @param index   the message index
      * @param payload the message body
-     * @param source  the network event source
+     * @param source  the network event source, or null if the message is passed
+     *                from the integrated server without the network
      * @param looper  the game event loop
      * @see #getClientPlayer(CustomPayloadEvent.Context)
      */
     @OnlyIn(Dist.CLIENT)
+    @Override
     protected void handleClientMessage(int index,
                                        @Nonnull FriendlyByteBuf payload,
-                                       @Nonnull CustomPayloadEvent.Context source,
+                                       @Nullable CustomPayloadEvent.Context source,
                                        @Nonnull BlockableEventLoop<?> looper) {
     }
 
+    /**
+     * Returns the current client player for the given context. Note that this method may
+     * return null if the connection is interrupted. In this case, the message handling
+     * should be ignored.
+     *
+     * @param source the source of the network event, or null for local messages
+     * @return the client player, may return null in the future
+     * @see #handleClientMessage(int, FriendlyByteBuf, CustomPayloadEvent.Context, BlockableEventLoop)
+     */
+    @Nullable
+    @OnlyIn(Dist.CLIENT)
+    public static LocalPlayer getClientPlayer(@Nullable CustomPayloadEvent.Context source) {
+        return source == null || source.getConnection().isConnected() ? Minecraft.getInstance().player : null;
+    }
+
+    @Override
+    protected void dispatchServerMessage(int index,
+                                         @Nonnull FriendlyByteBuf payload,
+                                         @Nonnull ServerPlayer player,
+                                         @Nullable CustomPayloadEvent.Context source,
+                                         @Nonnull BlockableEventLoop<?> looper) {
+        if (source != null) {
+            handleServerMessage(index, payload, source, looper);
+        } else {
+            super.dispatchServerMessage(index, payload, player, source, looper);
+        }
+    }
+
     /**
      * Callback for handling a client-to-server network message.
      * <p>
@@ -172,26 +238,18 @@ public class NetworkHandler {
      * @param source  the network event source
      * @param looper  the game event loop
      * @see #getServerPlayer(CustomPayloadEvent.Context)
+     * @deprecated override {@link #handleServerMessage(int, FriendlyByteBuf, ServerPlayer, BlockableEventLoop)},
+     * this delegates to it
      */
+    @Deprecated
     protected void handleServerMessage(int index,
                                        @Nonnull FriendlyByteBuf payload,
                                        @Nonnull CustomPayloadEvent.Context source,
                                        @Nonnull BlockableEventLoop<?> looper) {
-    }
-
-    /**
-     * Returns the current client player for the given context. Note that this method may
-     * return null if the connection is interrupted. In this case, the message handling
-     * should be ignored.
-     *
-     * @param source the source of the network event
-     * @return the client player, may return null in the future
-     * @see #handleClientMessage(int, FriendlyByteBuf, CustomPayloadEvent.Context, BlockableEventLoop)
-     */
-    @Nullable
-    @OnlyIn(Dist.CLIENT)
-    public static LocalPlayer getClientPlayer(@Nonnull CustomPayloadEvent.Context source) {
-        return source.getConnection().isConnected() ? Minecraft.getInstance().player : null;
+        ServerPlayer player = getServerPlayer(source);
+        if (player != null) {
+            handleServerMessage(index, payload, player, looper);
+        }
     }
 
     /**
@@ -202,24 +260,56 @@ public class NetworkHandler {
      * @param source the source of the network event
      * @return the server player, may return null in the future
      * @see #handleServerMessage(int, FriendlyByteBuf, CustomPayloadEvent.Context, BlockableEventLoop)
+     * @deprecated the player is passed to
+     * {@link #handleServerMessage(int, FriendlyByteBuf, ServerPlayer, BlockableEventLoop)}
      */
+    @Deprecated
     @Nullable
     public static ServerPlayer getServerPlayer(@Nonnull CustomPayloadEvent.Context source) {
         return source.getConnection().isConnected() ? source.getSender() : null;
     }
 
+    @Override
+    protected void sendPayload(@Nullable ServerPlayer player, @Nonnull FriendlyByteBuf payload) {
+        if (player == null) {
+            mChannel.send(payload, PacketDistributor.SERVER.noArg());
+        } else {
+            mChannel.send(payload, PacketDistributor.PLAYER.with(player));
+        }
+    }
+
     /**
-     * Allocates a heap/direct buffer to write indexed packet data. The message index is
+     * Allocates a pooled buffer to write indexed packet data. The message index is
      * used to identify the type of message, which also affects your network protocol.
      *
      * @param index the message index used on the reception side, ranged from 0 to 65535
      * @return a byte buf to write the packet data (message body)
      */
     @Nonnull
+    @Override
     public PacketBuffer buffer(int index) {
-        assert (index >= 0 && index <= 0xFFFF);
-        PacketBuffer buffer = new PacketBuffer(mName);
-        buffer.writeShort(index);
-        return buffer;
+        return (PacketBuffer) super.buffer(index);
+    }
+
+    @Nonnull
+    @Override
+    protected MessageBuffer newBuffer(@Nonnull ByteBuf source) {
+        return new PacketBuffer(this, source);
+    }
+
+    // client classes are only loaded through this holder, on the physical client
+    @OnlyIn(Dist.CLIENT)
+    private static final class Client {
+
+        @Nullable
+        static BlockableEventLoop<?> getLooper() {
+            Minecraft minecraft = Minecraft.getInstance();
+            return minecraft.getConnection() != null ? minecraft : null;
+        }
+
+        @Nullable
+        static MinecraftServer getLocalServer() {
+            return Minecraft.getInstance().getSingleplayerServer();
+        }
     }
 }
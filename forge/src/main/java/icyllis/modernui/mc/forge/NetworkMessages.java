@@ -40,7 +40,6 @@ import java.util.function.Consumer;
 /**
  * Internal use.
  */
-@Deprecated
 @ApiStatus.Internal
 public sealed class NetworkMessages extends NetworkHandler {
 
@@ -49,7 +48,7 @@ public sealed class NetworkMessages extends NetworkHandler {
     static NetworkHandler sNetwork;
 
     NetworkMessages() {
-        super(ModernUIMod.location("network"), 390, true);
+        super(ModernUIMod.location("network"), 392, true);
     }
 
     /*@Deprecated
@@ -61,7 +60,6 @@ public sealed class NetworkMessages extends NetworkHandler {
         return sNetwork.dispatcher(buf);
     }*/
 
-    @SuppressWarnings("deprecation")
     static PacketBuffer openMenu(@Nonnull AbstractContainerMenu menu, @Nullable Consumer<FriendlyByteBuf> writer) {
         PacketBuffer buf = sNetwork.buffer(S2C_OPEN_MENU);
         buf.writeVarInt(menu.containerId);
@@ -89,7 +87,7 @@ public sealed class NetworkMessages extends NetworkHandler {
         @Override
         protected void handleClientMessage(int index,
                                            @Nonnull FriendlyByteBuf payload,
-                                           @Nonnull CustomPayloadEvent.Context source,
+                                           @Nullable CustomPayloadEvent.Context source,
                                            @Nonnull BlockableEventLoop<?> looper) {
             /*case 0:
                     syncFood(payload, player);
@@ -106,9 +104,8 @@ public sealed class NetworkMessages extends NetworkHandler {
             ((AccessFoodData) foodData).setExhaustionLevel(buffer.readFloat());
         }*/
 
-        @SuppressWarnings("deprecation")
         private static void openMenu(@Nonnull FriendlyByteBuf payload,
-                                     @Nonnull CustomPayloadEvent.Context source,
+                                     @Nullable CustomPayloadEvent.Context source,
                                      @Nonnull BlockableEventLoop<?> looper) {
             final int containerId = payload.readVarInt();
             // No barrier, SAFE
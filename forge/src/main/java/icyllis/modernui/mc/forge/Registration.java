@@ -117,6 +117,10 @@ final class Registration {
             throw new IllegalStateException();
         }*/
 
+        NetworkMessages.sNetwork = FMLEnvironment.dist.isClient()
+                ? NetworkMessages.client()
+                : new NetworkMessages();
+
         MinecraftForge.EVENT_BUS.register(ServerHandler.INSTANCE);
     }
 
@@ -174,6 +178,7 @@ final class Registration {
             // this event fired after ParticleFactoryRegisterEvent
             event.registerReloadListener((ResourceManagerReloadListener) manager -> {
                 ImageStore.getInstance().clear();
+                ItemIconCache.getInstance().invalidate();
                 Handler handler = Core.getUiHandlerAsync();
                 // FML may throw ex, so it can be null
                 if (handler != null) {
@@ -18,6 +18,7 @@
 
 package icyllis.modernui.mc.forge;
 
+import icyllis.modernui.mc.MessageChannel;
 import icyllis.modernui.mc.ModernUIMod;
 import net.minecraft.ChatFormatting;
 import net.minecraft.Util;
@@ -99,6 +100,13 @@ public final class ServerHandler {
         }
     }
 
+    @SubscribeEvent(priority = EventPriority.LOWEST)
+    void onEndTick(@Nonnull TickEvent.ServerTickEvent event) {
+        if (event.phase == TickEvent.Phase.END) {
+            MessageChannel.flushAllServer();
+        }
+    }
+
     @SubscribeEvent(priority = EventPriority.LOWEST)
     void onLastEndTick(@Nonnull TickEvent.ServerTickEvent event) {
         if (event.phase == TickEvent.Phase.END && mShutdownTime > 0) {
@@ -21,6 +21,7 @@ package icyllis.modernui.mc.text;
 import com.mojang.brigadier.Command;
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.arguments.FloatArgumentType;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
 import icyllis.modernui.ModernUI;
 import icyllis.modernui.graphics.text.Font;
 import icyllis.modernui.mc.ModernUIMod;
@@ -64,6 +65,24 @@ public class MuiTextCommand {
                                         )
                                 )
                         )
+                        .then(Commands.literal("bench")
+                                .executes(ctx -> {
+                                    bench(
+                                            ctx.getSource(),
+                                            TextBenchmark.DEFAULT_ITERATIONS
+                                    );
+                                    return Command.SINGLE_SUCCESS;
+                                })
+                                .then(Commands.argument("iterations", IntegerArgumentType.integer(1, 10000))
+                                        .executes(ctx -> {
+                                            bench(
+                                                    ctx.getSource(),
+                                                    IntegerArgumentType.getInteger(ctx, "iterations")
+                                            );
+                                            return Command.SINGLE_SUCCESS;
+                                        })
+                                )
+                        )
                 )
         );
     }
@@ -204,4 +223,14 @@ public class MuiTextCommand {
         source.sendSystemMessage(b);
         Util.ioPool().execute(() -> ModernUIMod.LOGGER.info(TextLayoutEngine.MARKER, result));
     }
+
+    private static void bench(CommandSourceStack source,
+                              int iterations) {
+        String result = TextBenchmark.run(iterations);
+        source.sendSystemMessage(
+                Component.literal(result)
+                        .setStyle(Style.EMPTY.withFont(JB_MONO))
+        );
+        Util.ioPool().execute(() -> ModernUIMod.LOGGER.info(TextLayoutEngine.MARKER, result));
+    }
 }
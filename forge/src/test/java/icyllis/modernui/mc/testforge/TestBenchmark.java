@@ -18,8 +18,11 @@
 
 package icyllis.modernui.mc.testforge;
 
+import icyllis.modernui.mc.ByteBufParcel;
 import icyllis.modernui.text.TextUtils;
 import icyllis.modernui.util.DataSet;
+import icyllis.modernui.util.IOStreamParcel;
+import io.netty.buffer.*;
 import it.unimi.dsi.fastutil.bytes.ByteArrayList;
 import it.unimi.dsi.fastutil.ints.*;
 import it.unimi.dsi.fastutil.shorts.ShortArrayList;
@@ -107,6 +110,31 @@ public class TestBenchmark {
         }
     }
 
+    @State(Scope.Thread)
+    public static class ParcelState {
+
+        public final ByteBuf mBuf = Unpooled.directBuffer(1 << 20);
+    }
+
+    @Benchmark
+    public static DataSet dataSetStreamParcel(ParcelState state) throws IOException {
+        ByteBuf buf = state.mBuf.clear();
+        try (var p = new IOStreamParcel(null, new ByteBufOutputStream(buf))) {
+            p.writeDataSet(sDataSet);
+        }
+        try (var p = new IOStreamParcel(new ByteBufInputStream(buf), null)) {
+            return p.readDataSet(null);
+        }
+    }
+
+    @Benchmark
+    public static DataSet dataSetByteBufParcel(ParcelState state) {
+        ByteBuf buf = state.mBuf.clear();
+        var p = new ByteBufParcel(buf);
+        p.writeDataSet(sDataSet);
+        return p.readDataSet(null);
+    }
+
     public static class AS {
 
         public int mA;
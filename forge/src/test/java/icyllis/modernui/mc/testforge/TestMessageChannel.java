@@ -0,0 +1,309 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2025 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.mc.testforge;
+
+import icyllis.modernui.mc.MessageChannel;
+import icyllis.modernui.mc.ModernUIMod;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.VarInt;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.util.thread.BlockableEventLoop;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Sends messages through {@link MessageChannel} and passes the payloads to the
+ * receiver through an {@link EmbeddedChannel}, no game is required.
+ */
+public class TestMessageChannel {
+
+    public static final Logger LOGGER = LogManager.getLogger();
+
+    // runs tasks in place
+    private static final BlockableEventLoop<Runnable> LOOPER = new BlockableEventLoop<>("Test") {
+        @Nonnull
+        @Override
+        protected Runnable wrapRunnable(@Nonnull Runnable runnable) {
+            return runnable;
+        }
+
+        @Override
+        protected boolean shouldRun(@Nonnull Runnable task) {
+            return true;
+        }
+
+        @Nonnull
+        @Override
+        protected Thread getRunningThread() {
+            return Thread.currentThread();
+        }
+    };
+
+    public static void main(String[] args) {
+        testBatch();
+        testBatchSplit();
+        testFragments();
+        testDeflate();
+        testOversizedTransfer();
+        testOutOfOrderFragment();
+        LOGGER.info("All passed");
+    }
+
+    // small messages are coalesced into one payload and decoded in order
+    static void testBatch() {
+        var channel = new LoopbackChannel("test_batch");
+        var random = new Random(1);
+        var sent = new ArrayList<byte[]>();
+        for (int i = 0; i < 100; i++) {
+            byte[] body = new byte[random.nextInt(200)];
+            random.nextBytes(body);
+            sent.add(body);
+            var buf = channel.buffer(i);
+            buf.writeBytes(body);
+            buf.sendToServer();
+        }
+        channel.flushClient();
+        int payloads = channel.deliver();
+        check(payloads == 1, "payloads " + payloads);
+        channel.checkReceived(sent);
+        LOGGER.info("testBatch: {} messages in {} payload", sent.size(), payloads);
+    }
+
+    // a batch is split before it exceeds the max payload size
+    static void testBatchSplit() {
+        var channel = new LoopbackChannel("test_batch_split");
+        var random = new Random(2);
+        var sent = new ArrayList<byte[]>();
+        int total = 0;
+        for (int i = 0; i < 40; i++) {
+            byte[] body = new byte[4000 + random.nextInt(4000)];
+            random.nextBytes(body);
+            sent.add(body);
+            total += body.length;
+            var buf = channel.buffer(i);
+            buf.writeBytes(body);
+            buf.sendToServer();
+        }
+        channel.flushClient();
+        int payloads = channel.deliver();
+        check(payloads >= total / MessageChannel.MAX_SERVERBOUND_PAYLOAD + 1, "payloads " + payloads);
+        channel.checkReceived(sent);
+        LOGGER.info("testBatchSplit: {} messages in {} payloads", sent.size(), payloads);
+    }
+
+    // a message larger than a payload is sent in fragments and reassembled
+    static void testFragments() {
+        var channel = new LoopbackChannel("test_fragments");
+        var random = new Random(3);
+        var sent = new ArrayList<byte[]>();
+        // random data is not compressible
+        byte[] body = new byte[200_000];
+        random.nextBytes(body);
+        sent.add(body);
+        var buf = channel.buffer(0);
+        buf.writeBytes(body);
+        buf.sendToServer();
+        int payloads = channel.deliver();
+        check(payloads == body.length / MessageChannel.MAX_SERVERBOUND_PAYLOAD + 1, "payloads " + payloads);
+        channel.checkReceived(sent);
+
+        boolean thrown = false;
+        buf = channel.buffer(0);
+        buf.writeZero(MessageChannel.MAX_SERVERBOUND_MESSAGE);
+        try {
+            buf.sendToServer();
+        } catch (IllegalArgumentException e) {
+            thrown = true;
+        }
+        check(thrown, "oversized message was sent");
+        LOGGER.info("testFragments: {} bytes in {} payloads", body.length, payloads);
+    }
+
+    // a message not smaller than the threshold is deflated, the batch before it is sent first
+    static void testDeflate() {
+        var channel = new LoopbackChannel("test_deflate");
+        channel.setCompressionThreshold(1024);
+        var sent = new ArrayList<byte[]>();
+        byte[] small = {1, 2, 3};
+        sent.add(small);
+        var buf = channel.buffer(0);
+        buf.writeBytes(small);
+        buf.sendToServer();
+        byte[] body = new byte[500_000];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) (i % 251);
+        }
+        sent.add(body);
+        buf = channel.buffer(1);
+        buf.writeBytes(body);
+        buf.sendToServer();
+        int payloads = channel.deliver();
+        // the batch of the small message, and the deflated transfer
+        check(payloads >= 2 && payloads < body.length / MessageChannel.MAX_SERVERBOUND_PAYLOAD,
+                "payloads " + payloads);
+        channel.checkReceived(sent);
+        LOGGER.info("testDeflate: {} bytes in {} payloads", body.length, payloads);
+    }
+
+    // the receiver drops a transfer larger than the max message size without allocating it
+    static void testOversizedTransfer() {
+        var channel = new LoopbackChannel("test_oversized");
+        int total = MessageChannel.MAX_CLIENTBOUND_MESSAGE + 1;
+        channel.receiveRaw(fragment(0, true, total, new byte[1000]));
+        channel.receiveRaw(fragment(1, false, total, new byte[1000]));
+        check(channel.mReceived.isEmpty(), "oversized transfer was dispatched");
+
+        // the next transfer is still accepted
+        byte[] body = new byte[1000];
+        new Random(4).nextBytes(body);
+        byte[] message = new byte[body.length + 2];
+        System.arraycopy(body, 0, message, 2, body.length);
+        channel.receiveRaw(fragment(0, true, message.length, message));
+        var sent = new ArrayList<byte[]>();
+        sent.add(body);
+        channel.checkReceived(sent);
+        LOGGER.info("testOversizedTransfer: passed");
+    }
+
+    // a transfer with a missing fragment is dropped
+    static void testOutOfOrderFragment() {
+        var channel = new LoopbackChannel("test_out_of_order");
+        byte[] body = new byte[100_000];
+        new Random(5).nextBytes(body);
+        var buf = channel.buffer(0);
+        buf.writeBytes(body);
+        buf.sendToServer();
+        ByteBuf first = channel.mTransport.readOutbound();
+        ByteBuf second = channel.mTransport.readOutbound();
+        second.release();
+        channel.receiveRaw(first);
+        channel.deliver();
+        check(channel.mReceived.isEmpty(), "incomplete transfer was dispatched");
+        LOGGER.info("testOutOfOrderFragment: passed");
+    }
+
+    /*
+     * Fragment payload: [byte TYPE_FRAGMENT (1)][VarInt sequence]
+     * and the first fragment: [byte flags][VarInt transfer size][VarInt message size]
+     * followed by the data.
+     */
+    @Nonnull
+    static ByteBuf fragment(int sequence, boolean first, int total, byte[] data) {
+        ByteBuf payload = Unpooled.buffer();
+        payload.writeByte(1);
+        VarInt.write(payload, sequence);
+        if (first) {
+            payload.writeByte(0);
+            VarInt.write(payload, total);
+            VarInt.write(payload, total);
+        }
+        payload.writeBytes(data);
+        return payload;
+    }
+
+    static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    /**
+     * Sends to the server, and receives on the client side of the same channel, the
+     * encoding is the same in both directions.
+     */
+    static final class LoopbackChannel extends MessageChannel<Void> {
+
+        final EmbeddedChannel mTransport = new EmbeddedChannel();
+        final ArrayList<byte[]> mReceived = new ArrayList<>();
+        final ArrayList<Integer> mReceivedIndices = new ArrayList<>();
+
+        LoopbackChannel(String name) {
+            super(ModernUIMod.location(name));
+        }
+
+        @Nullable
+        @Override
+        protected BlockableEventLoop<?> getClientLooper() {
+            return LOOPER;
+        }
+
+        @Nullable
+        @Override
+        protected MinecraftServer getLocalServer() {
+            return null;
+        }
+
+        @Override
+        protected void sendPayload(@Nullable ServerPlayer player, @Nonnull FriendlyByteBuf payload) {
+            check(payload.readableBytes() <= MAX_SERVERBOUND_PAYLOAD, "payload size " + payload.readableBytes());
+            mTransport.writeOutbound(payload);
+        }
+
+        @Override
+        protected void handleClientMessage(int index,
+                                           @Nonnull FriendlyByteBuf payload,
+                                           @Nullable Void source,
+                                           @Nonnull BlockableEventLoop<?> looper) {
+            byte[] body = new byte[payload.readableBytes()];
+            payload.readBytes(body);
+            mReceivedIndices.add(index);
+            mReceived.add(body);
+        }
+
+        // passes the payloads written to the transport to the receiver
+        int deliver() {
+            int count = 0;
+            ByteBuf payload;
+            while ((payload = mTransport.readOutbound()) != null) {
+                receiveRaw(payload);
+                count++;
+            }
+            return count;
+        }
+
+        // this takes the ownership of the payload
+        void receiveRaw(@Nonnull ByteBuf payload) {
+            try {
+                receive(new FriendlyByteBuf(payload), null, LOOPER, null);
+            } finally {
+                payload.release();
+            }
+        }
+
+        void checkReceived(@Nonnull ArrayList<byte[]> sent) {
+            check(mReceived.size() == sent.size(), "received " + mReceived.size() + " of " + sent.size());
+            for (int i = 0; i < sent.size(); i++) {
+                check(mReceivedIndices.get(i) == i, "index " + mReceivedIndices.get(i) + " at " + i);
+                check(Arrays.equals(mReceived.get(i), sent.get(i)), "body mismatch at " + i);
+            }
+            mReceived.clear();
+            mReceivedIndices.clear();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2025 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.mc.text;
+
+import com.ibm.icu.text.Bidi;
+import com.ibm.icu.text.BidiRun;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Bidi analysis of chat lines with one RTL span, through the fast path, the run cache,
+ * and the full analysis with a reused or a new {@link Bidi}.
+ */
+@Fork(2)
+@Threads(2)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TestBidiBenchmark {
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TestBidiBenchmark.class.getSimpleName())
+                .shouldFailOnError(true).shouldDoGC(true)
+                .build())
+                .run();
+    }
+
+    @State(Scope.Thread)
+    public static class BidiState {
+
+        public final char[][] mTexts = new char[TestBidiFastPath.SINGLE_SPAN.length][];
+        // the processor looks up its builder, which holds a copy of the text
+        public final String[] mBuilders = TestBidiFastPath.SINGLE_SPAN.clone();
+        public final Bidi mBidi = new Bidi();
+        public final TextLayoutProcessor.BidiRunCache mCache = new TextLayoutProcessor.BidiRunCache();
+
+        @Setup
+        public void setup() {
+            for (int i = 0; i < mTexts.length; i++) {
+                char[] text = mBuilders[i].toCharArray();
+                mTexts[i] = text;
+                int hash = TextLayoutProcessor.BidiRunCache.hash(mBuilders[i]);
+                // a miss, sets the paragraph level of the cache
+                mCache.get(hash, mBuilders[i], Bidi.LTR);
+                mCache.put(hash, text, fullAnalysis(mBidi, text));
+            }
+        }
+    }
+
+    @Benchmark
+    public static void fastPath(BidiState state, Blackhole bh) {
+        for (char[] text : state.mTexts) {
+            bh.consume(TextLayoutProcessor.findSingleRtlSpan(text, false));
+        }
+    }
+
+    @Benchmark
+    public static void cacheHit(BidiState state, Blackhole bh) {
+        for (String builder : state.mBuilders) {
+            bh.consume(state.mCache.get(TextLayoutProcessor.BidiRunCache.hash(builder), builder, Bidi.LTR));
+        }
+    }
+
+    @Benchmark
+    public static void fullAnalysisReused(BidiState state, Blackhole bh) {
+        for (char[] text : state.mTexts) {
+            bh.consume(fullAnalysis(state.mBidi, text));
+        }
+    }
+
+    @Benchmark
+    public static void fullAnalysisNew(BidiState state, Blackhole bh) {
+        for (char[] text : state.mTexts) {
+            bh.consume(fullAnalysis(new Bidi(), text));
+        }
+    }
+
+    // visual runs packed as in the run cache
+    static int[] fullAnalysis(Bidi bidi, char[] text) {
+        bidi.setPara(text, Bidi.LTR, null);
+        int runCount = bidi.getRunCount();
+        int[] runs = new int[runCount << 1];
+        for (int i = 0; i < runCount; i++) {
+            BidiRun run = bidi.getVisualRun(i);
+            runs[i << 1] = run.getStart();
+            runs[i << 1 | 1] = run.getLimit() | (run.isOddRun() ? Integer.MIN_VALUE : 0);
+        }
+        return runs;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2025 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.mc.text;
+
+import com.ibm.icu.text.Bidi;
+import com.ibm.icu.text.BidiRun;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Checks the single RTL span fast path of {@link TextLayoutProcessor} against the full
+ * analysis of ICU {@link Bidi} on mixed-direction samples, no game is required.
+ */
+public class TestBidiFastPath {
+
+    public static final Logger LOGGER = LogManager.getLogger();
+
+    // LTR text with exactly one RTL span, handled by the fast path
+    static final String[] SINGLE_SPAN = {
+            "hello שלום world",
+            "<Steve> مرحبا بكم",
+            "joined: שָׁלוֹם!",
+            "gg 😀 שלום 😀",
+            "score: abc, אבג.",
+            "100 points to אבג",
+            "אבג דהו",
+    };
+
+    // texts that need the full algorithm
+    static final String[] FULL_ANALYSIS = {
+            "abc אבג 123",
+            "abc אבג (def)",
+            "abc אבג def דהו",
+            "abc \u202Bאבג\u202C",
+            "abc مرحبا ١٢٣",
+    };
+
+    public static void main(String[] args) {
+        testSingleSpan();
+        testFullAnalysis();
+        LOGGER.info("All passed");
+    }
+
+    // the fast path gives the same visual runs as ICU
+    static void testSingleSpan() {
+        final Bidi bidi = new Bidi();
+        int handled = 0;
+        for (String sample : SINGLE_SPAN) {
+            for (byte paraLevel : new byte[]{Bidi.LTR, Bidi.LEVEL_DEFAULT_LTR}) {
+                char[] text = sample.toCharArray();
+                long span = TextLayoutProcessor.findSingleRtlSpan(text,
+                        paraLevel == Bidi.LEVEL_DEFAULT_LTR);
+                if (span < 0) {
+                    // only an RTL paragraph is rejected
+                    check(paraLevel == Bidi.LEVEL_DEFAULT_LTR, "rejected " + sample);
+                    continue;
+                }
+                IntArrayList expected = icuRuns(bidi, text, paraLevel);
+                IntArrayList actual = fastPathRuns(text.length, span);
+                check(expected.equals(actual), "runs of " + sample +
+                        ", expected " + expected + ", actual " + actual);
+                handled++;
+            }
+        }
+        LOGGER.info("testSingleSpan: {} handled", handled);
+    }
+
+    // the fast path gives up on what it does not model
+    static void testFullAnalysis() {
+        for (String sample : FULL_ANALYSIS) {
+            check(TextLayoutProcessor.findSingleRtlSpan(sample.toCharArray(), false) < 0,
+                    "handled " + sample);
+        }
+        LOGGER.info("testFullAnalysis: {} rejected", FULL_ANALYSIS.length);
+    }
+
+    // visual runs as (start, limit, odd)
+    @Nonnull
+    static IntArrayList icuRuns(@Nonnull Bidi bidi, @Nonnull char[] text, byte paraLevel) {
+        bidi.setPara(text, paraLevel, null);
+        var runs = new IntArrayList();
+        for (int i = 0, e = bidi.getRunCount(); i < e; i++) {
+            BidiRun run = bidi.getVisualRun(i);
+            runs.add(run.getStart());
+            runs.add(run.getLimit());
+            runs.add(run.isOddRun() ? 1 : 0);
+        }
+        return runs;
+    }
+
+    @Nonnull
+    static IntArrayList fastPathRuns(int length, long span) {
+        final int spanStart = (int) (span >>> 32);
+        final int spanLimit = (int) span;
+        var runs = new IntArrayList();
+        if (spanStart > 0) {
+            runs.addAll(IntArrayList.of(0, spanStart, 0));
+        }
+        runs.addAll(IntArrayList.of(spanStart, spanLimit, 1));
+        if (spanLimit < length) {
+            runs.addAll(IntArrayList.of(spanLimit, length, 0));
+        }
+        return runs;
+    }
+
+    static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
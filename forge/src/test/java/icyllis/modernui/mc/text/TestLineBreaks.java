@@ -0,0 +1,98 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2025 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.mc.text;
+
+import icyllis.modernui.graphics.text.Font;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import net.minecraft.network.chat.Style;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+/**
+ * Line breaking of a chunked text, paragraph by paragraph, with synthetic layouts
+ * whose chars all have an advance of 1, no game is required.
+ */
+public class TestLineBreaks {
+
+    public static final Logger LOGGER = LogManager.getLogger();
+
+    public static void main(String[] args) {
+        testMultiParagraph();
+        LOGGER.info("All passed");
+    }
+
+    // a paragraph after a longer one is broken by its own break points,
+    // not the last break point of the previous paragraph
+    static void testMultiParagraph() {
+        String[] paragraphs = {
+                "aaaa bbbb cccc dddd eeee ffff",
+                "gggggggggggggg",
+                "hh ii"
+        };
+        String text = String.join("\n", paragraphs);
+        var lines = new IntArrayList();
+        int start = 0;
+        for (String paragraph : paragraphs) {
+            int end = start + paragraph.length();
+            int lineEnd = Math.min(end + 1, text.length());
+            ModernStringSplitter.computeParagraphLineBreaks(layout(paragraph), text,
+                    start, end, lineEnd, 10, Style.EMPTY, Style.EMPTY,
+                    (style, lineStart, lineLimit) -> {
+                        lines.add(lineStart);
+                        lines.add(lineLimit);
+                    });
+            start = lineEnd;
+        }
+        int[] expected = {
+                0, 10, 10, 20, 20, 30, // the line feed is in the last line
+                30, 40, 40, 45, // no line break opportunity, broken at grapheme bounds
+                45, 50
+        };
+        check(Arrays.equals(lines.toIntArray(), expected), "lines " + lines);
+        LOGGER.info("testMultiParagraph: {} lines", lines.size() / 2);
+    }
+
+    // a layout with line boundaries after each space
+    @Nonnull
+    static TextLayout layout(@Nonnull String paragraph) {
+        char[] textBuf = paragraph.toCharArray();
+        float[] advances = new float[textBuf.length];
+        Arrays.fill(advances, 1);
+        var lineBoundaries = new IntArrayList();
+        for (int i = 0; i < textBuf.length - 1; i++) {
+            if (textBuf[i] == ' ') {
+                lineBoundaries.add(i + 1);
+            }
+        }
+        lineBoundaries.add(textBuf.length);
+        return new TextLayout(textBuf, new int[0], new float[0], null, new Font[0],
+                advances, new int[0], lineBoundaries.toIntArray(), textBuf.length,
+                false, false, 2,
+                TextLayoutEngine.COMPUTE_ADVANCES | TextLayoutEngine.COMPUTE_LINE_BOUNDARIES);
+    }
+
+    static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -20,6 +20,7 @@ package icyllis.modernui.mc.neoforge;
 
 import icyllis.modernui.mc.Config;
 import icyllis.modernui.mc.ConfigItem;
+import icyllis.modernui.mc.EditBoxUndoHistory;
 import icyllis.modernui.mc.ModernUIMod;
 import icyllis.modernui.mc.text.TextLayout;
 import icyllis.modernui.mc.text.TextLayoutEngine;
@@ -220,6 +221,8 @@ public final class ConfigImpl {
         public static final float TOOLTIP_SHADOW_RADIUS_MAX = 32;
         public static final int TOOLTIP_ARROW_SCROLL_FACTOR_MIN = 0;
         public static final int TOOLTIP_ARROW_SCROLL_FACTOR_MAX = 320;
+        public static final int UI_FRAME_RATE_MIN = 0;
+        public static final int UI_FRAME_RATE_MAX = 1000;
 
         public final ModConfigSpec.BooleanValue mBlurEffect;
         //public final ModConfigSpec.BooleanValue mBlurWithBackground;
@@ -227,6 +230,7 @@ public final class ConfigImpl {
         public final ModConfigSpec.BooleanValue mOverrideVanillaBlur;
         public final ModConfigSpec.IntValue mBackgroundDuration;
         public final ModConfigSpec.IntValue mBlurRadius;
+        public final ModConfigSpec.EnumValue<Config.Client.BlurMode> mBlurMode;
         public final ModConfigSpec.ConfigValue<List<? extends String>> mBackgroundColor;
         public final ModConfigSpec.BooleanValue mInventoryPause;
         public final ModConfigSpec.BooleanValue mTooltip;
@@ -261,6 +265,7 @@ public final class ConfigImpl {
         //public final ModConfigSpec.IntValue mFramerateMinimized;
         public final ModConfigSpec.DoubleValue mMasterVolumeInactive;
         public final ModConfigSpec.DoubleValue mMasterVolumeMinimized;
+        public final ModConfigSpec.IntValue mUiFrameRate;
 
         public final ModConfigSpec.IntValue mScrollbarSize;
         public final ModConfigSpec.IntValue mTouchSlop;
@@ -284,6 +289,7 @@ public final class ConfigImpl {
         public final ModConfigSpec.BooleanValue mUseColorEmoji;
         public final ModConfigSpec.BooleanValue mLinearMetrics;
         public final ModConfigSpec.BooleanValue mEmojiShortcodes;
+        public final ModConfigSpec.IntValue mEditBoxUndoLimit;
 
         /*public final ModConfigSpec.BooleanValue mSkipGLCapsError;
         public final ModConfigSpec.BooleanValue mShowGLCapsError;*/
@@ -329,6 +335,11 @@ public final class ConfigImpl {
                             "The kernel radius for gaussian convolution blur effect, 0 = disable.",
                             "samples per pixel = ((radius * 2) + 1) * 2, sigma = radius / 2.")
                     .defineInRange("blurRadius", 7, BLUR_RADIUS_MIN, BLUR_RADIUS_MAX);
+            mBlurMode = builder.comment(
+                            "The blur algorithm, GAUSSIAN is a full-resolution separable gaussian blur,",
+                            "DUAL_FILTER progressively downsamples and upsamples the image, it is much cheaper",
+                            "at high resolutions and large radii with approximately the same strength.")
+                    .defineEnum("blurMode", Config.Client.BlurMode.GAUSSIAN);
             mBlurBlacklist = builder.comment(
                             "A list of GUI screen superclasses that won't activate blur effect when opened.")
                     .defineList("blurBlacklist", () -> {
@@ -353,6 +364,11 @@ public final class ConfigImpl {
                             "Master volume multiplier on window minimized, 1 = same as master volume inactive.",
                             "This value will be no greater than master volume inactive.")
                     .defineInRange("masterVolumeMinimized", 0.25, 0, 1);
+            mUiFrameRate = builder.comment(
+                            "Target frame rate of Modern UI screens, 0 = synchronized with the game.",
+                            "UI frames are only recorded when something changed, this limits how often they are.",
+                            "When set, a heavily loaded game no longer stalls UI animations and input.")
+                    .defineInRange("uiFrameRate", 0, UI_FRAME_RATE_MIN, UI_FRAME_RATE_MAX);
 
             builder.pop();
 
@@ -476,6 +492,11 @@ public final class ConfigImpl {
             mEmojiShortcodes = builder.comment(
                             "Allow Slack or Discord shortcodes to replace Unicode Emoji Sequences in chat.")
                     .define("emojiShortcodes", true);
+            mEditBoxUndoLimit = builder.comment(
+                            "The maximum memory used by the undo history of each text field, in kilobytes.",
+                            "The oldest edits are forgotten first when the limit is exceeded.")
+                    .defineInRange("editBoxUndoLimit", EditBoxUndoHistory.sMemoryLimit / 1024,
+                            EditBoxUndoHistory.MEMORY_LIMIT_MIN / 1024, EditBoxUndoHistory.MEMORY_LIMIT_MAX / 1024);
 
             builder.pop();
 
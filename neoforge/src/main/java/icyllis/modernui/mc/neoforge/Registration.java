@@ -170,6 +170,7 @@ final class Registration {
             // this event fired after ParticleFactoryRegisterEvent
             event.addListener(ModernUIMod.location("client"), (ResourceManagerReloadListener) manager -> {
                 ImageStore.getInstance().clear();
+                ItemIconCache.getInstance().invalidate();
                 Handler handler = Core.getUiHandlerAsync();
                 // FML may throw ex, so it can be null
                 if (handler != null) {